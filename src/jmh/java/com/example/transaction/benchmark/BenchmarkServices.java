@@ -0,0 +1,106 @@
+package com.example.transaction.benchmark;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.persistence.SnapshotStore;
+import com.example.transaction.persistence.WriteAheadLog;
+import com.example.transaction.service.BalanceLedger;
+import com.example.transaction.service.IngestionSequencer;
+import com.example.transaction.service.RefundIndex;
+import com.example.transaction.service.TransactionMetrics;
+import com.example.transaction.service.TransactionRollups;
+import com.example.transaction.service.TransactionServiceImpl;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.OffHeapTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import com.example.transaction.store.TransactionStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准共用的服务构造和预置数据。服务直接构造，不经过 Spring 代理，测到的是服务本身的开销，不含缓存。
+ */
+final class BenchmarkServices {
+
+    /** 预置数据分布在这些账户上 */
+    static final int ACCOUNTS = 1000;
+    /** 预置了足够余额、供取款使用的账户 */
+    static final String FUNDED_ACCOUNT = "bench-funded";
+
+    private static final int CHUNK = 10_000;
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * @param store heap 或 offheap
+     */
+    static TransactionServiceImpl create(String store) {
+        return create(store, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param store heap 或 offheap
+     * @param registry 服务指标注册到的注册表
+     */
+    static TransactionServiceImpl create(String store, MeterRegistry registry) {
+        TransactionStore transactions = "offheap".equals(store)
+                ? new OffHeapTransactionStore(ClusterTopology.standalone())
+                : new InMemoryTransactionStore();
+        TransactionServiceImpl service = new TransactionServiceImpl(transactions, new BalanceLedger(),
+                new TransactionIndex(), new TimeBucketIndex(Duration.ofMinutes(1)), new TransactionRollups(),
+                new RefundIndex(),
+                WriteAheadLog.disabled(), new SnapshotStore(Path.of("unused")), IngestionSequencer.direct(),
+                List.of(), new TransactionMetrics(registry), ClusterTopology.standalone());
+        service.start();
+        return service;
+    }
+
+    /**
+     * 以导入方式预置 ID 为 1..size 的交易，时间戳按秒递增，并为取款账户入账
+     */
+    static void populate(TransactionServiceImpl service, int size) {
+        LocalDateTime start = LocalDateTime.now().minusSeconds(size);
+        List<Transaction> chunk = new ArrayList<>(CHUNK);
+        for (int i = 1; i <= size; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setId((long) i);
+            transaction.setTimestamp(start.plusSeconds(i));
+            transaction.setAmount(BigDecimal.valueOf(i % 500 + 1));
+            transaction.setSourceAccount("acct-" + (i % ACCOUNTS));
+            transaction.setStatus(i % 3 == 0 ? TransactionStatus.COMPLETED : TransactionStatus.PENDING);
+            if (i % 4 == 0) {
+                transaction.setType(TransactionType.TRANSFER);
+                transaction.setTargetAccount("acct-" + ((i + 1) % ACCOUNTS));
+            } else {
+                transaction.setType(TransactionType.DEPOSIT);
+            }
+            chunk.add(transaction);
+            if (chunk.size() == CHUNK) {
+                service.importTransactions(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        service.importTransactions(chunk);
+        service.createTransaction(transaction(TransactionType.DEPOSIT, FUNDED_ACCOUNT,
+                new BigDecimal("1000000000000.00")));
+    }
+
+    static Transaction transaction(TransactionType type, String account, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setSourceAccount(account);
+        transaction.setAmount(amount);
+        return transaction;
+    }
+}
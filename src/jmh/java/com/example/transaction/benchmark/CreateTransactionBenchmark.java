@@ -0,0 +1,91 @@
+package com.example.transaction.benchmark;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.service.TransactionServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按交易类型测量单笔创建。取款类交易从预置了余额的账户扣款，退款关联一笔已有交易，均能通过校验
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CreateTransactionBenchmark {
+
+    private static final int REFUNDABLE = 1_000;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int storeSize;
+
+    @Param({"DEPOSIT", "WITHDRAWAL", "TRANSFER", "REFUND", "WITHDRAW",
+            "INTEREST_INCOME", "INTEREST_EXPENSE", "FEE_INCOME", "FEE_EXPENSE"})
+    TransactionType type;
+
+    @Param({"heap"})
+    String store;
+
+    private TransactionServiceImpl service;
+    /** 退款的原始交易：金额足够大的已完成存款，测量期间不会退完 */
+    private long[] refundable;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkServices.create(store);
+        BenchmarkServices.populate(service, storeSize);
+        if (type == TransactionType.REFUND) {
+            refundable = new long[REFUNDABLE];
+            for (int i = 0; i < REFUNDABLE; i++) {
+                Transaction original = BenchmarkServices.transaction(TransactionType.DEPOSIT, "acct-" + i,
+                        new BigDecimal("1000000000000.00"));
+                original.setStatus(TransactionStatus.COMPLETED);
+                refundable[i] = service.createTransaction(original).getId();
+            }
+        }
+    }
+
+    @Benchmark
+    public Transaction createTransaction() {
+        return service.createTransaction(newTransaction());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Transaction createTransactionThreads() {
+        return service.createTransaction(newTransaction());
+    }
+
+    private Transaction newTransaction() {
+        boolean debit = type == TransactionType.WITHDRAWAL || type == TransactionType.WITHDRAW;
+        String account = debit
+                ? BenchmarkServices.FUNDED_ACCOUNT
+                : "acct-" + ThreadLocalRandom.current().nextInt(BenchmarkServices.ACCOUNTS);
+        Transaction transaction = BenchmarkServices.transaction(type, account, BigDecimal.ONE);
+        if (type == TransactionType.TRANSFER) {
+            transaction.setTargetAccount("acct-0");
+        } else if (type == TransactionType.REFUND) {
+            transaction.setAmount(new BigDecimal("0.01"));
+            transaction.setOriginalTransactionId(refundable[ThreadLocalRandom.current().nextInt(REFUNDABLE)]);
+        }
+        return transaction;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.transaction.benchmark;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.service.TransactionServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标开销：同一读路径分别接 Prometheus 注册表（带百分位直方图）和拒绝所有指标的注册表。
+ * 配合 -prof gc 比较 gc.alloc.rate.norm，两者应一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MetricsOverheadBenchmark {
+
+    @Param({"10000"})
+    int storeSize;
+
+    @Param({"prometheus", "none"})
+    String registry;
+
+    private TransactionServiceImpl service;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meters;
+        if ("prometheus".equals(registry)) {
+            meters = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        } else {
+            meters = new SimpleMeterRegistry();
+            meters.config().meterFilter(MeterFilter.deny());
+        }
+        service = BenchmarkServices.create("heap", meters);
+        BenchmarkServices.populate(service, storeSize);
+    }
+
+    @Benchmark
+    public Optional<Transaction> getTransactionById() {
+        return service.getTransactionById(ThreadLocalRandom.current().nextLong(1, storeSize + 1));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.transaction.benchmark;
+
+import com.example.transaction.model.Page;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.service.TransactionServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读路径：按ID查询，分页查询的浅页和深页，以及同一深度的游标分页
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceReadBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int storeSize;
+
+    @Param({"heap"})
+    String store;
+
+    private TransactionServiceImpl service;
+    private int deepPage;
+    private long deepCursor;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkServices.create(store);
+        BenchmarkServices.populate(service, storeSize);
+        // 深页取在存储中部
+        deepPage = storeSize / PAGE_SIZE / 2;
+        deepCursor = (long) deepPage * PAGE_SIZE;
+    }
+
+    @Benchmark
+    public Optional<Transaction> getTransactionById() {
+        return service.getTransactionById(randomId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Transaction> getTransactionByIdThreads() {
+        return service.getTransactionById(randomId());
+    }
+
+    @Benchmark
+    public Page<Transaction> getAllTransactionsShallowPage() {
+        return service.getAllTransactions(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Transaction> getAllTransactionsDeepPage() {
+        return service.getAllTransactions(deepPage, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<Transaction> getTransactionsAfterDeepCursor() {
+        return service.getTransactionsAfter(deepCursor, PAGE_SIZE);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, storeSize + 1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.transaction.benchmark;
+
+import com.example.transaction.exception.InvalidTransactionException;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.service.TransactionServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写路径：更新、删除和取款余额校验。
+ * 删除后立即以导入方式放回同一条记录，使存储规模在测量期间保持不变，结果包含这次放回的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceWriteBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int storeSize;
+
+    @Param({"heap"})
+    String store;
+
+    private TransactionServiceImpl service;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkServices.create(store);
+        BenchmarkServices.populate(service, storeSize);
+    }
+
+    @Benchmark
+    public Transaction updateTransaction() {
+        return service.updateTransaction(randomId(), update());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Transaction updateTransactionThreads() {
+        return service.updateTransaction(randomId(), update());
+    }
+
+    @Benchmark
+    public Transaction deleteTransaction() {
+        long id = randomId();
+        Transaction removed = service.getTransactionById(id).orElseThrow();
+        service.deleteTransaction(id);
+        service.importTransactions(List.of(removed));
+        return removed;
+    }
+
+    /** 余额充足：校验与扣款在一次 CAS 中完成 */
+    @Benchmark
+    public Transaction withdrawalAccepted() {
+        return service.createTransaction(BenchmarkServices.transaction(
+                TransactionType.WITHDRAWAL, BenchmarkServices.FUNDED_ACCOUNT, BigDecimal.ONE));
+    }
+
+    /** 余额不足：校验失败并抛出异常，不写入存储 */
+    @Benchmark
+    public Object withdrawalRejected() {
+        try {
+            return service.createTransaction(BenchmarkServices.transaction(
+                    TransactionType.WITHDRAWAL, "bench-empty", BigDecimal.ONE));
+        } catch (InvalidTransactionException e) {
+            return e;
+        }
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, storeSize + 1);
+    }
+
+    private static Transaction update() {
+        Transaction transaction = BenchmarkServices.transaction(TransactionType.DEPOSIT,
+                "acct-" + ThreadLocalRandom.current().nextInt(BenchmarkServices.ACCOUNTS),
+                BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1, 500)));
+        transaction.setTimestamp(LocalDateTime.now());
+        return transaction;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.transaction.cluster;
+
+import com.example.transaction.service.BalanceLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分片拓扑：节点列表、本节点编号，以及交易ID和账户到所属节点的映射。
+ * <p>
+ * 分片部署时交易ID为 (序号 &lt;&lt; NODE_BITS) | 节点编号，各节点独立递增序号即可保证全局不冲突，
+ * 且从ID本身即可得知所属节点，无需查表。账户按哈希归属节点，同一账户的扣款都在其所属节点上校验余额。
+ * 未配置节点列表时为单节点部署，ID 即序号，与分片前一致。
+ */
+@Component
+public class ClusterTopology {
+
+    public static final int NODE_BITS = 10;
+    public static final int MAX_NODES = 1 << NODE_BITS;
+
+    private final int nodeId;
+    private final List<String> nodes;
+
+    public ClusterTopology(@Value("${transaction.cluster.node-id:0}") int nodeId,
+                           @Value("${transaction.cluster.nodes:}") String[] nodes) {
+        this.nodeId = nodeId;
+        this.nodes = Arrays.stream(nodes).map(String::trim).filter(node -> !node.isEmpty())
+                .map(node -> node.endsWith("/") ? node.substring(0, node.length() - 1) : node)
+                .toList();
+        if (this.nodes.size() > MAX_NODES) {
+            throw new IllegalArgumentException("At most " + MAX_NODES + " nodes are supported");
+        }
+        if (!this.nodes.isEmpty() && (nodeId < 0 || nodeId >= this.nodes.size())) {
+            throw new IllegalArgumentException("transaction.cluster.node-id must be between 0 and "
+                    + (this.nodes.size() - 1) + ", got " + nodeId);
+        }
+    }
+
+    /** 单节点部署，用于直接构造服务的测试和基准 */
+    public static ClusterTopology standalone() {
+        return new ClusterTopology(0, new String[0]);
+    }
+
+    public boolean isPartitioned() {
+        return !nodes.isEmpty();
+    }
+
+    public int nodeId() {
+        return nodeId;
+    }
+
+    public int size() {
+        return Math.max(1, nodes.size());
+    }
+
+    /** 节点的基础地址，如 http://host:8080 */
+    public String url(int node) {
+        return nodes.get(node);
+    }
+
+    public boolean isLocal(int node) {
+        return node == nodeId;
+    }
+
+    /** 本节点第 sequence 个分配的交易ID */
+    public long id(long sequence) {
+        return isPartitioned() ? (sequence << NODE_BITS) | nodeId : sequence;
+    }
+
+    /** ID 中的序号部分，用于恢复和导入时推进序号 */
+    public long sequence(long id) {
+        return isPartitioned() ? id >>> NODE_BITS : id;
+    }
+
+    /** 交易所属节点；导入的历史ID不含有效节点编号时按取模落到现有节点 */
+    public int ownerOfId(long id) {
+        return isPartitioned() ? (int) ((id & (MAX_NODES - 1)) % nodes.size()) : nodeId;
+    }
+
+    public int ownerOfAccount(String account) {
+        return isPartitioned() ? Math.floorMod(account.hashCode(), nodes.size()) : nodeId;
+    }
+
+    /**
+     * 新交易写入的节点：退款跟随原始交易，其余按来源账户，未指定账户时按默认账户
+     *
+     * @param refundedId 退款的原始交易ID，不是退款时为 null
+     */
+    public int ownerOfWrite(String sourceAccount, Long refundedId) {
+        if (refundedId != null) {
+            return ownerOfId(refundedId);
+        }
+        return ownerOfAccount(sourceAccount != null ? sourceAccount : BalanceLedger.DEFAULT_ACCOUNT);
+    }
+}
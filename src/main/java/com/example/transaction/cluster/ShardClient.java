@@ -0,0 +1,158 @@
+package com.example.transaction.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 节点间转发：把请求原样发给其他节点（分片的所属节点或复制的主库）并取回完整响应。
+ * 被转发的请求带上 {@link #FORWARDED_HEADER}，接收方只在本地处理，不再路由，因此最多一跳。并行请求各节点时每个请求一个虚拟线程。
+ */
+@Component
+public class ShardClient {
+
+    /** 标记节点间转发的请求，值为发出方的节点编号 */
+    public static final String FORWARDED_HEADER = "X-Shard-Forwarded";
+    /** 只包含单个节点数据的响应上标明节点编号 */
+    public static final String NODE_HEADER = "X-Shard-Node";
+
+    /** 需要随请求转发的头，其余如 Host、Content-Length 由客户端重新生成 */
+    private static final Set<String> REQUEST_HEADERS = Set.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH,
+            "Idempotency-Key");
+    /** 不回传的逐跳响应头 */
+    private static final Set<String> HOP_BY_HOP = Set.of(
+            HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, "Keep-Alive",
+            HttpHeaders.DATE);
+
+    /**
+     * 其他节点的响应；status 为 0 表示节点不可达
+     */
+    public record Response(int status, HttpHeaders headers, byte[] body) {
+
+        public boolean ok() {
+            return status / 100 == 2;
+        }
+
+        /** 把响应原样写回给调用方；节点不可达时返回 503 */
+        public void writeTo(HttpServletResponse response) throws IOException {
+            if (status == 0) {
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), new String(body, StandardCharsets.UTF_8));
+                return;
+            }
+            response.setStatus(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            response.getOutputStream().write(body);
+        }
+    }
+
+    /** 取出请求的全部头，转发时再按白名单筛选 */
+    public static HttpHeaders headers(HttpServletRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : Collections.list(request.getHeaderNames())) {
+            headers.addAll(name, Collections.list(request.getHeaders(name)));
+        }
+        return headers;
+    }
+
+    private final ClusterTopology topology;
+    private final RestClient client;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardClient(ClusterTopology topology,
+                       @Value("${transaction.cluster.timeout:PT5S}") Duration timeout) {
+        this.topology = topology;
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(timeout);
+        this.client = RestClient.builder().requestFactory(factory).build();
+    }
+
+    public Response send(int node, HttpMethod method, String pathAndQuery, HttpHeaders headers, byte[] body) {
+        return send(topology.url(node), method, pathAndQuery, headers, body);
+    }
+
+    /**
+     * @param baseUrl      目标节点的基础地址
+     * @param pathAndQuery 以 / 开头的路径，可带已编码的查询串
+     * @param body         请求体，没有时为 null
+     */
+    public Response send(String baseUrl, HttpMethod method, String pathAndQuery, HttpHeaders headers, byte[] body) {
+        try {
+            RestClient.RequestBodySpec request = client.method(method)
+                    .uri(URI.create(baseUrl + pathAndQuery))
+                    .headers(target -> {
+                        headers.forEach((name, values) -> {
+                            if (REQUEST_HEADERS.stream().anyMatch(name::equalsIgnoreCase)) {
+                                target.addAll(name, values);
+                            }
+                        });
+                        target.set(FORWARDED_HEADER, Integer.toString(topology.nodeId()));
+                    });
+            if (body != null) {
+                request.body(body);
+            }
+            return request.exchange((clientRequest, clientResponse) -> {
+                HttpHeaders responseHeaders = new HttpHeaders();
+                clientResponse.getHeaders().forEach((name, values) -> {
+                    if (HOP_BY_HOP.stream().noneMatch(name::equalsIgnoreCase)) {
+                        responseHeaders.addAll(name, values);
+                    }
+                });
+                return new Response(clientResponse.getStatusCode().value(), responseHeaders,
+                        clientResponse.getBody().readAllBytes());
+            });
+        } catch (RuntimeException e) {
+            return new Response(0, new HttpHeaders(), (baseUrl + " is unavailable: " + e.getMessage()).getBytes());
+        }
+    }
+
+    /**
+     * 并行向所有节点（含本节点）发送同一请求，按节点编号顺序返回响应
+     */
+    public List<Response> sendToAll(HttpMethod method, String pathAndQuery, HttpHeaders headers) {
+        List<CompletableFuture<Response>> futures = new ArrayList<>(topology.size());
+        for (int node = 0; node < topology.size(); node++) {
+            int target = node;
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> send(target, method, pathAndQuery, headers, null), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * 并行发送一组请求体不同的请求，按参数顺序返回响应
+     */
+    public List<Response> sendEach(List<Integer> nodes, HttpMethod method, String path, HttpHeaders headers,
+                                   List<byte[]> bodies) {
+        List<CompletableFuture<Response>> futures = new ArrayList<>(nodes.size());
+        for (int k = 0; k < nodes.size(); k++) {
+            int node = nodes.get(k);
+            byte[] body = bodies.get(k);
+            futures.add(CompletableFuture.supplyAsync(() -> send(node, method, path, headers, body), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.transaction.cluster;
+
+import com.example.transaction.model.BatchItemResult;
+import com.example.transaction.model.BatchResult;
+import com.example.transaction.model.Page;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.replication.ReplicationFilter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分片路由：按ID或账户找到所属节点，不属于本节点的请求原样转发过去，调用方可以连到任意节点。
+ * <ul>
+ *     <li>按ID的读取、更新和删除转发给ID所属节点</li>
+ *     <li>单笔创建按来源账户转发，未指定账户的按默认账户转发；退款按原始交易ID转发，
+ *     退款记入原始交易的账户，因此余额和退款额度都在账户所属节点上校验</li>
+ *     <li>批量创建按条目拆分给各节点，结果按原顺序合并；某个节点失败时只有发往该节点的条目失败</li>
+ *     <li>分页列表、账户余额和统计向所有节点分发后合并</li>
+ *     <li>导入由收到请求的节点按行转发给所属节点，见 {@link com.example.transaction.io.TransactionImporter}</li>
+ *     <li>导出只包含收到请求的节点上的交易，响应头 {@link ShardClient#NODE_HEADER} 标明节点，
+ *     需要全量时逐个节点导出</li>
+ * </ul>
+ * 导入任务只能在收到导入请求的节点上查询；更新不迁移交易，改动来源账户后仍留在原节点。
+ * 未配置节点列表时不做任何处理。在限流和复制分流之后执行。
+ */
+@Component
+@Order(ShardRoutingFilter.ORDER)
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    public static final int ORDER = ReplicationFilter.ORDER + 10;
+
+    private static final String BASE = "/api/transactions";
+    private static final Pattern BY_ID = Pattern.compile(BASE + "/(\\d+)");
+    private static final TypeReference<List<TransactionStats>> STATS_LIST = new TypeReference<>() {
+    };
+    private static final Pattern BALANCE = Pattern.compile(BASE + "/accounts/[^/]+/balance");
+    private static final Comparator<JsonNode> BY_ID_ORDER = Comparator.comparingLong(node -> node.get("id").asLong());
+    /** 与单节点统计的顺序一致：窗口起点、类型、状态 */
+    private static final Comparator<TransactionStats> STATS_ORDER = Comparator
+            .comparing(TransactionStats::getWindowStart)
+            .thenComparing(TransactionStats::getType)
+            .thenComparing(TransactionStats::getStatus);
+
+    private final ClusterTopology topology;
+    private final ShardClient client;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+
+    public ShardRoutingFilter(ClusterTopology topology, ShardClient client, ObjectMapper objectMapper,
+                              @Value("${transaction.batch.max-size:10000}") int maxBatchSize) {
+        this.topology = topology;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !topology.isPartitioned()
+                || request.getHeader(ShardClient.FORWARDED_HEADER) != null
+                || !request.getRequestURI().startsWith(BASE);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI();
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
+        Matcher byId = BY_ID.matcher(path);
+        if (byId.matches()) {
+            route(topology.ownerOfId(Long.parseLong(byId.group(1))), request, null, response, chain);
+        } else if (path.equals(BASE) && method == HttpMethod.POST) {
+            byte[] body = request.getInputStream().readAllBytes();
+            route(ownerOfCreate(body), request, body, response, chain);
+        } else if (path.equals(BASE + "/batch") && method == HttpMethod.POST) {
+            splitBatch(request, response, chain);
+        } else if (path.equals(BASE) && method == HttpMethod.GET) {
+            gatherPage(request, response, chain);
+        } else if (BALANCE.matcher(path).matches() && method == HttpMethod.GET) {
+            gatherBalance(request, response);
+        } else if (path.equals(BASE + "/stats") && method == HttpMethod.GET) {
+            gatherStats(request, response);
+        } else if (path.equals(BASE + "/export")) {
+            response.setHeader(ShardClient.NODE_HEADER, Integer.toString(topology.nodeId()));
+            chain.doFilter(request, response);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private void route(int owner, HttpServletRequest request, byte[] body, HttpServletResponse response,
+                       FilterChain chain) throws ServletException, IOException {
+        if (topology.isLocal(owner)) {
+            chain.doFilter(body == null ? request : new CachedBodyRequest(request, body), response);
+            return;
+        }
+        if (body == null) {
+            body = request.getInputStream().readAllBytes();
+        }
+        String query = request.getQueryString();
+        client.send(owner, HttpMethod.valueOf(request.getMethod()),
+                request.getRequestURI() + (query == null ? "" : "?" + query), ShardClient.headers(request),
+                body.length == 0 ? null : body).writeTo(response);
+    }
+
+    /**
+     * 退款跟随原始交易，其余按来源账户；请求体无法解析时交给本节点返回校验错误。
+     * 原始交易与其账户在同一节点，退款又只能记入原始交易的账户，退款入账同样落在账户所属节点
+     */
+    private int ownerOfCreate(byte[] body) {
+        JsonNode transaction = parse(body);
+        return transaction == null ? topology.nodeId() : ownerOf(transaction);
+    }
+
+    private int ownerOf(JsonNode transaction) {
+        JsonNode original = transaction.get("originalTransactionId");
+        JsonNode account = transaction.get("sourceAccount");
+        boolean refund = "REFUND".equals(transaction.path("type").asText())
+                && original != null && original.canConvertToLong();
+        return topology.ownerOfWrite(account != null && account.isTextual() ? account.asText() : null,
+                refund ? original.asLong() : null);
+    }
+
+    private void splitBatch(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        JsonNode items = parse(body);
+        // 格式错误或超过上限的请求交给本节点按原逻辑拒绝
+        if (items == null || !items.isArray() || items.size() > maxBatchSize) {
+            chain.doFilter(new CachedBodyRequest(request, body), response);
+            return;
+        }
+        Map<Integer, List<Integer>> indexesByOwner = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            indexesByOwner.computeIfAbsent(ownerOf(items.get(i)), owner -> new ArrayList<>()).add(i);
+        }
+        if (indexesByOwner.size() <= 1) {
+            route(indexesByOwner.isEmpty() ? topology.nodeId() : indexesByOwner.keySet().iterator().next(),
+                    request, body, response, chain);
+            return;
+        }
+
+        List<Integer> owners = new ArrayList<>(indexesByOwner.keySet());
+        List<byte[]> bodies = new ArrayList<>(owners.size());
+        for (int owner : owners) {
+            ArrayNode part = objectMapper.createArrayNode();
+            indexesByOwner.get(owner).forEach(i -> part.add(items.get(i)));
+            bodies.add(objectMapper.writeValueAsBytes(part));
+        }
+        List<ShardClient.Response> parts = client.sendEach(owners, HttpMethod.POST, BASE + "/batch",
+                ShardClient.headers(request), bodies);
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        for (int k = 0; k < owners.size(); k++) {
+            List<Integer> indexes = indexesByOwner.get(owners.get(k));
+            if (!parts.get(k).ok()) {
+                // 其他节点上的条目已经写入，整批报错会让调用方重试而重复写入，只把该节点的条目记为失败
+                String error = failure(owners.get(k), parts.get(k));
+                indexes.forEach(i -> results[i] = BatchItemResult.failed(i, error));
+                continue;
+            }
+            for (BatchItemResult result : objectMapper.readValue(parts.get(k).body(), BatchResult.class).getResults()) {
+                int i = indexes.get(result.getIndex());
+                result.setIndex(i);
+                results[i] = result;
+            }
+        }
+        writeJson(response, new BatchResult(List.of(results)));
+    }
+
+    private static String failure(int node, ShardClient.Response part) {
+        return part.status() == 0
+                ? "Node " + node + " is unavailable, outcome unknown: " + new String(part.body(), StandardCharsets.UTF_8)
+                : "Node " + node + " rejected the batch with status " + part.status();
+    }
+
+    /**
+     * 各节点返回本地前 page × size 条（游标分页时为 afterId 之后的 size 条），
+     * 按ID归并后取出请求的那一页；总数为各节点之和。偏移分页的代价随页码增长，深分页请使用游标。
+     */
+    private void gatherPage(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        int page;
+        int size;
+        try {
+            page = Integer.parseInt(parameter(request, "page", "1"));
+            size = Integer.parseInt(parameter(request, "size", "10"));
+        } catch (NumberFormatException e) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (size <= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean cursor = request.getParameter("afterId") != null;
+        int pageIndex = page > 0 ? page - 1 : 0;
+        long needed = cursor ? size : (long) (pageIndex + 1) * size;
+        if (needed > Integer.MAX_VALUE) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Page is too deep; use afterId instead");
+            return;
+        }
+
+        UriComponentsBuilder uri = UriComponentsBuilder.fromPath(BASE);
+        request.getParameterMap().forEach((name, values) -> {
+            if (!name.equals("page") && !name.equals("size")) {
+                uri.queryParam(name, (Object[]) values);
+            }
+        });
+        uri.queryParam("page", 1).queryParam("size", needed);
+        List<ShardClient.Response> parts = client.sendToAll(HttpMethod.GET, uri.encode().build().toUriString(),
+                ShardClient.headers(request));
+
+        List<JsonNode> content = new ArrayList<>();
+        long total = 0;
+        boolean more = false;
+        for (ShardClient.Response part : parts) {
+            if (!part.ok()) {
+                part.writeTo(response);
+                return;
+            }
+            JsonNode tree = objectMapper.readTree(part.body());
+            tree.get("content").forEach(content::add);
+            long nodeTotal = tree.get("totalElements").asLong();
+            total = total < 0 || nodeTotal < 0 ? -1 : total + nodeTotal;
+            more |= !tree.path("nextAfterId").isNull();
+        }
+        content.sort(BY_ID_ORDER);
+        int from = cursor ? 0 : (int) Math.min((long) pageIndex * size, content.size());
+        List<JsonNode> slice = content.subList(from, Math.min(from + size, content.size()));
+        Long nextAfterId = (more || content.size() > from + size) && !slice.isEmpty()
+                ? slice.get(slice.size() - 1).get("id").asLong() : null;
+        int totalPages = total < 0 ? -1 : (int) Math.ceil((double) total / size);
+        writeJson(response, new Page<>(slice, cursor ? 0 : pageIndex + 1, totalPages, total, nextAfterId));
+    }
+
+    /**
+     * 余额是账户在各节点上入账金额之和：扣款都在账户所属节点，但转入可能记在转出方所在的节点
+     */
+    private void gatherBalance(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (ShardClient.Response part : client.sendToAll(HttpMethod.GET, request.getRequestURI(), ShardClient.headers(request))) {
+            if (!part.ok()) {
+                part.writeTo(response);
+                return;
+            }
+            balance = balance.add(objectMapper.readValue(part.body(), BigDecimal.class));
+        }
+        writeJson(response, balance);
+    }
+
+    /**
+     * 各节点按相同的窗口划分汇总，同一窗口、类型、状态的计数和金额相加
+     */
+    private void gatherStats(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getQueryString();
+        TreeMap<TransactionStats, TransactionStats> merged = new TreeMap<>(STATS_ORDER);
+        for (ShardClient.Response part : client.sendToAll(HttpMethod.GET,
+                request.getRequestURI() + (query == null ? "" : "?" + query), ShardClient.headers(request))) {
+            if (!part.ok()) {
+                part.writeTo(response);
+                return;
+            }
+            for (TransactionStats stats : objectMapper.readValue(part.body(), STATS_LIST)) {
+                TransactionStats existing = merged.putIfAbsent(stats, stats);
+                if (existing != null) {
+                    existing.setCount(existing.getCount() + stats.getCount());
+                    existing.setTotalAmount(existing.getTotalAmount().add(stats.getTotalAmount()));
+                }
+            }
+        }
+        writeJson(response, new ArrayList<>(merged.values()));
+    }
+
+    /** 无法解析时返回 null */
+    private JsonNode parse(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String parameter(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private void writeJson(HttpServletResponse response, Object value) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(value));
+    }
+
+    /**
+     * 已读出请求体的请求，本地处理时从缓存的字节重新读取
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.transaction.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易接口前的负载保护：读请求和写请求各有一个 {@link ConcurrencyLimiter}，
+ * 在途请求达到当前上限时立即返回 503 和 Retry-After，而不是在 Tomcat 队列中排队。
+ * 过载时少数请求被快速拒绝，其余请求的延迟保持在无排队时的水平附近。
+ * <p>
+ * 各上限、在途数、RTT 和拒绝数以 transaction.limiter.* 指标导出，按 kind=read|write 区分。
+ * <p>
+ * 排在复制和分片过滤器之前：过载的节点在转发前就拒绝，不为注定失败的请求占用转发连接。
+ */
+@Component
+@Order(ConcurrencyLimitFilter.ORDER)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /** 交易接口各过滤器的顺序以此为基准，排在 Spring 的字符编码等基础过滤器之后 */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 100;
+
+    private static final String BASE = "/api/transactions";
+    /** 流式导入导出耗时与数据量成正比，不计入延迟采样也不限流 */
+    private static final String IMPORT = BASE + "/import";
+    private static final String EXPORT = BASE + "/export";
+    /** 批量请求占用名额，但耗时随条目数变化，不计入延迟采样，以免把单笔请求的上限压低 */
+    private static final String BATCH = BASE + "/batch";
+    private static final byte[] OVERLOADED = ("{\"status\":503,\"error\":\"Service Unavailable\","
+            + "\"message\":\"Server is overloaded, retry later\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final boolean enabled;
+    private final String retryAfter;
+    private final Kind read;
+    private final Kind write;
+
+    /**
+     * 一类请求的限流器及其计数器
+     */
+    private record Kind(ConcurrencyLimiter limiter, Counter accepted, Counter rejected) {
+    }
+
+    public ConcurrencyLimitFilter(@Value("${transaction.limiter.enabled:false}") boolean enabled,
+                                  @Value("${transaction.limiter.initial-limit:20}") int initialLimit,
+                                  @Value("${transaction.limiter.min-limit:4}") int minLimit,
+                                  @Value("${transaction.limiter.max-limit:200}") int maxLimit,
+                                  @Value("${transaction.limiter.tolerance:1.5}") double tolerance,
+                                  @Value("${transaction.limiter.window:PT0.1S}") Duration window,
+                                  @Value("${transaction.limiter.window-samples:10}") int windowSamples,
+                                  @Value("${transaction.limiter.retry-after:PT1S}") Duration retryAfter,
+                                  MeterRegistry registry) {
+        this.enabled = enabled;
+        this.retryAfter = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        this.read = kind("read", new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance,
+                window.toNanos(), windowSamples), registry);
+        this.write = kind("write", new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance,
+                window.toNanos(), windowSamples), registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !path.startsWith(BASE) || path.equals(IMPORT) || path.equals(EXPORT);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Kind kind = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())
+                ? read : write;
+        if (!kind.limiter().tryAcquire()) {
+            // 直接写出，不经过错误页转发，拒绝本身尽量不消耗资源
+            kind.rejected().increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(OVERLOADED);
+            return;
+        }
+        kind.accepted().increment();
+        boolean sampled = !request.getRequestURI().equals(BATCH);
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (sampled) {
+                kind.limiter().release(System.nanoTime() - start);
+            } else {
+                kind.limiter().release();
+            }
+        }
+    }
+
+    private static Kind kind(String name, ConcurrencyLimiter limiter, MeterRegistry registry) {
+        Gauge.builder("transaction.limiter.limit", limiter, ConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit")
+                .tag("kind", name)
+                .register(registry);
+        Gauge.builder("transaction.limiter.inflight", limiter, ConcurrencyLimiter::inflight)
+                .description("Requests currently holding a concurrency permit")
+                .tag("kind", name)
+                .register(registry);
+        TimeGauge.builder("transaction.limiter.rtt", limiter, TimeUnit.NANOSECONDS, ConcurrencyLimiter::shortRtt)
+                .description("Average request latency in the latest sampling window")
+                .tags("kind", name, "window", "short")
+                .register(registry);
+        TimeGauge.builder("transaction.limiter.rtt", limiter, TimeUnit.NANOSECONDS, ConcurrencyLimiter::baselineRtt)
+                .description("Estimated no-queueing latency the limiter compares against")
+                .tags("kind", name, "window", "baseline")
+                .register(registry);
+        return new Kind(limiter, counter(name, "accepted", registry), counter(name, "rejected", registry));
+    }
+
+    private static Counter counter(String kind, String outcome, MeterRegistry registry) {
+        return Counter.builder("transaction.limiter.requests")
+                .description("Requests admitted or shed by the concurrency limiter")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.transaction.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按延迟自适应的并发上限（梯度算法）：基准 RTT 近似无排队时的延迟，
+ * 每个采样窗口用窗口内的平均 RTT 与之比较。延迟上升说明请求开始排队，按比例收缩上限；
+ * 延迟平稳时每个窗口放宽 sqrt(limit) 个名额，以探测更高的并发。
+ * <p>
+ * 基准遇到更低的 RTT 时迅速下降；上升只跟随并发未用满（没有排队）的窗口，
+ * 避免把过载时的排队延迟当作新的基准而让上限一路放宽。持续满载且上限已降到下限时，
+ * 延迟仍高说明服务本身变慢，此时基准同样跟随上移。
+ * 在途请求不到上限一半时不调整上限，避免空闲时上限无限增长。
+ * <p>
+ * 每次释放只向当前窗口的 LongAdder 累加样本，不加锁；窗口到期时由一个线程以 tryLock
+ * 换上新窗口并重算上限，其余线程不等待，请求路径上不会在锁上排队，也不会钉住虚拟线程的载体线程。
+ * 换窗口的瞬间仍写入旧窗口的少量样本会被丢弃。
+ */
+class ConcurrencyLimiter {
+
+    /** 基准 RTT 上移的平滑窗口（以采样窗口计） */
+    private static final int BASELINE_WINDOW = 10;
+    /** 每个窗口上限最多收缩到原来的一半 */
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+    private final int windowSamples;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile Window window = new Window(System.nanoTime());
+    /** 只用 tryLock：结束窗口、重算上限的线程独占，其余线程直接返回 */
+    private final ReentrantLock updating = new ReentrantLock();
+
+    // 以下只在持有 updating 时修改
+    private volatile double limit;
+    private volatile double baselineRtt;
+    private volatile double shortRtt;
+
+    /**
+     * 一个采样窗口内累计的样本
+     */
+    private static final class Window {
+        final long start;
+        final LongAdder rttSum = new LongAdder();
+        final LongAdder count = new LongAdder();
+        final LongAccumulator maxInflight = new LongAccumulator(Math::max, 0);
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * @param tolerance     窗口平均 RTT 超过基准 RTT 多少倍后才开始收缩上限
+     * @param windowNanos   采样窗口的最短时长
+     * @param windowSamples 采样窗口的最少样本数
+     */
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, long windowNanos,
+                       int windowSamples) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min-limit <= max-limit");
+        }
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = windowNanos;
+        this.windowSamples = windowSamples;
+    }
+
+    /**
+     * 占用一个名额
+     *
+     * @return 已达到上限时返回 false，调用方应直接拒绝请求
+     */
+    boolean tryAcquire() {
+        int limit = (int) this.limit;
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并记录本次请求的处理时长
+     */
+    void release(long rttNanos) {
+        int inflightBefore = inflight.getAndDecrement();
+        Window current = window;
+        current.rttSum.add(rttNanos);
+        current.count.increment();
+        current.maxInflight.accumulate(inflightBefore);
+        long now = System.nanoTime();
+        if (now - current.start < windowNanos || current.count.sum() < windowSamples || !updating.tryLock()) {
+            return;
+        }
+        try {
+            if (window == current) {
+                window = new Window(now);
+                long count = current.count.sum();
+                update((double) current.rttSum.sum() / count, (int) current.maxInflight.get());
+            }
+        } finally {
+            updating.unlock();
+        }
+    }
+
+    /**
+     * 释放名额，不记录处理时长，用于耗时与负载无关的请求
+     */
+    void release() {
+        inflight.decrementAndGet();
+    }
+
+    private void update(double rtt, int maxInflight) {
+        shortRtt = rtt;
+        boolean saturated = maxInflight >= limit / 2;
+        if (baselineRtt == 0 || rtt < baselineRtt) {
+            baselineRtt = baselineRtt == 0 ? rtt : (baselineRtt + rtt) / 2;
+        } else if (!saturated || limit <= minLimit) {
+            baselineRtt += (rtt - baselineRtt) / BASELINE_WINDOW;
+        }
+        if (!saturated) {
+            return;
+        }
+        double gradient = Math.clamp(tolerance * baselineRtt / rtt, MIN_GRADIENT, 1.0);
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.clamp(limit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    /** 最近一个采样窗口的平均 RTT，纳秒 */
+    double shortRtt() {
+        return shortRtt;
+    }
+
+    /** 基准 RTT，纳秒 */
+    double baselineRtt() {
+        return baselineRtt;
+    }
+}
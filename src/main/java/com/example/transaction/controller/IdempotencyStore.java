@@ -0,0 +1,166 @@
+package com.example.transaction.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key 的响应存储：同一个键第一次请求时执行并保存序列化后的响应，之后的重试直接重放，
+ * 不再校验和写入。并发的重复请求等待同一个执行中的 future，不会各自执行。
+ * <p>
+ * 条目按响应大小计权重，总量受 max-memory 限制并在 ttl 后过期。执行中的条目只计键的大小，
+ * 完成后重新写入一次以按响应大小计入。业务校验失败（ResponseStatusException）同样保存并重放；
+ * 其他异常不保存，重试时重新执行。同一个键对应的请求内容不同时返回 422。
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    /** 重放的响应带上此头，便于客户端和排查时区分 */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    /** 条目、future 和摘要等对象的大致开销 */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * 保存的响应：成功时为状态码和响应体，业务校验失败时 body 为 null，只有状态码和原因
+     */
+    public record StoredResponse(HttpStatusCode status, byte[] body, String reason) {
+
+        public boolean failed() {
+            return body == null;
+        }
+    }
+
+    /**
+     * @param replayed 是否来自之前的执行
+     */
+    public record Result(StoredResponse response, boolean replayed) {
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<StoredResponse> response) {
+    }
+
+    private final Cache<String, Entry> entries;
+    private final ObjectMapper objectMapper;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter coalesced;
+    private final Counter mismatched;
+
+    public IdempotencyStore(ObjectMapper objectMapper, MeterRegistry registry,
+                            @Value("${transaction.idempotency.ttl:PT1H}") Duration ttl,
+                            @Value("${transaction.idempotency.max-memory:64MB}") DataSize maxMemory) {
+        this.objectMapper = objectMapper;
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxMemory.toBytes())
+                .weigher(IdempotencyStore::weigh)
+                .build();
+        this.executed = outcome(registry, "executed");
+        this.replayed = outcome(registry, "replayed");
+        this.coalesced = outcome(registry, "coalesced");
+        this.mismatched = outcome(registry, "mismatched");
+        Gauge.builder("transaction.idempotency.store.size", entries, Cache::estimatedSize)
+                .description("Number of stored idempotency keys")
+                .register(registry);
+        Gauge.builder("transaction.idempotency.store.memory", entries,
+                        cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Estimated memory held by stored idempotent responses")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * 按键执行一次 action 并保存其结果；键已存在时等待并重放之前的结果
+     *
+     * @param request 请求内容，用于发现同一个键被用于不同的请求
+     */
+    public Result execute(String key, Object request, Supplier<Object> action) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String fingerprint = DigestUtils.md5DigestAsHex(serialize(request));
+        while (true) {
+            Entry created = new Entry(fingerprint, new CompletableFuture<>());
+            Entry existing = entries.asMap().putIfAbsent(key, created);
+            if (existing == null) {
+                executed.increment();
+                return new Result(run(key, created, action), false);
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                mismatched.increment();
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        HEADER + " has already been used with a different request");
+            }
+            (existing.response().isDone() ? replayed : coalesced).increment();
+            try {
+                return new Result(existing.response().join(), true);
+            } catch (CompletionException e) {
+                // 首次执行意外失败时条目已被移除，重新竞争执行权
+            }
+        }
+    }
+
+    private StoredResponse run(String key, Entry entry, Supplier<Object> action) {
+        StoredResponse response;
+        try {
+            response = new StoredResponse(HttpStatus.CREATED, serialize(action.get()), null);
+        } catch (ResponseStatusException e) {
+            response = new StoredResponse(e.getStatusCode(), null, e.getReason());
+        } catch (RuntimeException | Error e) {
+            entries.asMap().remove(key, entry);
+            entry.response().completeExceptionally(e);
+            throw e;
+        }
+        entry.response().complete(response);
+        // 以同一个条目替换自身，按完成后的大小重新计算权重
+        entries.asMap().replace(key, entry, entry);
+        return response;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int weigh(String key, Entry entry) {
+        StoredResponse response = entry.response().getNow(null);
+        int size = ENTRY_OVERHEAD + 2 * (key.length() + entry.fingerprint().length());
+        if (response != null) {
+            size += response.failed()
+                    ? (response.reason() == null ? 0 : 2 * response.reason().length())
+                    : response.body().length;
+        }
+        return size;
+    }
+
+    private static Counter outcome(MeterRegistry registry, String outcome) {
+        return Counter.builder("transaction.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key, by whether they executed or reused a stored response")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -1,18 +1,56 @@
 package com.example.transaction.controller;
 
 import com.example.transaction.exception.InvalidTransactionException;
+import com.example.transaction.exception.TransactionConflictException;
 import com.example.transaction.exception.TransactionNotFoundException;
+import com.example.transaction.io.TransactionCsv;
+import com.example.transaction.io.TransactionImporter;
+import com.example.transaction.model.BatchItemResult;
+import com.example.transaction.model.BatchResult;
+import com.example.transaction.model.ImportJob;
 import com.example.transaction.model.Page;
 import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
 import com.example.transaction.service.TransactionService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -20,47 +58,283 @@ import org.springframework.web.server.ResponseStatusException;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionImporter importer;
+    private final TransactionResponseCache responseCache;
+    private final IdempotencyStore idempotencyStore;
+    private final int maxBatchSize;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, Validator validator, ObjectMapper objectMapper,
+                                 TransactionImporter importer, TransactionResponseCache responseCache,
+                                 IdempotencyStore idempotencyStore,
+                                 @Value("${transaction.batch.max-size:10000}") int maxBatchSize) {
         this.transactionService = transactionService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.importer = importer;
+        this.responseCache = responseCache;
+        this.idempotencyStore = idempotencyStore;
+        this.maxBatchSize = maxBatchSize;
     }
 
     @PostMapping(produces = "application/json")
-    @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Create a new transaction")
-    public Transaction createTransaction(@Valid @RequestBody Transaction transaction) {
-        return transactionService.createTransaction(transaction);
+    @ApiResponse(responseCode = "201", content = @Content(schema = @Schema(implementation = Transaction.class)))
+    public ResponseEntity<?> createTransaction(
+            @Valid @RequestBody Transaction transaction,
+            @Parameter(description = "Retries with the same key replay the first response instead of creating a duplicate")
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(create(transaction));
+        }
+        IdempotencyStore.Result result = idempotencyStore.execute(idempotencyKey, transaction, () -> create(transaction));
+        IdempotencyStore.StoredResponse response = result.response();
+        if (response.failed()) {
+            throw new ResponseStatusException(response.status(), response.reason());
+        }
+        return ResponseEntity.status(response.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(IdempotencyStore.REPLAYED_HEADER, Boolean.toString(result.replayed()))
+                .body(response.body());
+    }
+
+    private Transaction create(Transaction transaction) {
+        try {
+            return transactionService.createTransaction(transaction);
+        } catch (InvalidTransactionException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(path = "/batch", produces = "application/json")
+    @Operation(summary = "Create transactions in bulk, reporting success or failure per item")
+    public BatchResult createTransactions(@RequestBody List<Transaction> transactions) {
+        if (transactions.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size exceeds the limit of " + maxBatchSize);
+        }
+        // 逐条做 Bean Validation，失败的条目直接记录结果，其余交给服务层整批处理
+        BatchItemResult[] results = new BatchItemResult[transactions.size()];
+        List<Transaction> valid = new ArrayList<>(transactions.size());
+        List<Integer> validIndexes = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i) == null) {
+                results[i] = BatchItemResult.failed(i, "Transaction must not be null");
+                continue;
+            }
+            Set<ConstraintViolation<Transaction>> violations = validator.validate(transactions.get(i));
+            if (violations.isEmpty()) {
+                valid.add(transactions.get(i));
+                validIndexes.add(i);
+            } else {
+                results[i] = BatchItemResult.failed(i, violations.iterator().next().getMessage());
+            }
+        }
+        List<BatchItemResult> serviceResults = transactionService.createTransactions(valid);
+        for (int k = 0; k < serviceResults.size(); k++) {
+            BatchItemResult result = serviceResults.get(k);
+            int i = validIndexes.get(k);
+            result.setIndex(i);
+            results[i] = result;
+        }
+        return new BatchResult(Arrays.asList(results));
+    }
+
+    @GetMapping(path = "/export")
+    @Operation(summary = "Stream all matching transactions as NDJSON or CSV without buffering pages")
+    public void exportTransactions(
+            @Parameter(description = "Output format: ndjson or csv") @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "Lowest id to export (inclusive)") @RequestParam(required = false) Long fromId,
+            @Parameter(description = "Highest id to export (inclusive)") @RequestParam(required = false) Long toId,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) String targetAccount,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        Iterator<Transaction> transactions = transactionService.exportTransactions(
+                new TransactionFilter(type, status, targetAccount, from, to), fromId, toId);
+
+        // 边遍历边写入响应流，内存占用与导出总量无关
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"transactions." + (csv ? "csv" : "ndjson") + "\"");
+        if (csv) {
+            response.setContentType("text/csv");
+            Writer writer = response.getWriter();
+            TransactionCsv.writeHeader(writer);
+            while (transactions.hasNext()) {
+                TransactionCsv.write(writer, transactions.next());
+            }
+            writer.flush();
+        } else {
+            response.setContentType("application/x-ndjson");
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                while (transactions.hasNext()) {
+                    generator.writeObject(transactions.next());
+                }
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    @PostMapping(path = "/import", consumes = {"application/x-ndjson", "text/csv"}, produces = "application/json")
+    @Operation(summary = "Stream-import NDJSON or CSV, keeping original ids and timestamps when provided")
+    public ImportJob importTransactions(HttpServletRequest request) throws IOException {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith("text/csv")) {
+            return importer.importCsv(request.getInputStream());
+        }
+        return importer.importNdjson(request.getInputStream());
+    }
+
+    @GetMapping(path = "/imports", produces = "application/json")
+    @Operation(summary = "List recent import jobs and their progress")
+    public Collection<ImportJob> getImportJobs() {
+        return importer.getJobs();
+    }
+
+    @GetMapping(path = "/imports/{jobId}", produces = "application/json")
+    @Operation(summary = "Get the progress of an import job")
+    public ImportJob getImportJob(@PathVariable String jobId) {
+        ImportJob job = importer.getJob(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found: " + jobId);
+        }
+        return job;
+    }
+
+    @GetMapping(path = "/stats", produces = "application/json")
+    @Operation(summary = "Get pre-aggregated transaction counts and totals per time window, type and status")
+    public List<TransactionStats> getStatistics(
+            @Parameter(description = "Window size: HOUR or DAY") @RequestParam(defaultValue = "HOUR")
+            TransactionStats.Granularity granularity,
+            @Parameter(description = "Filter by transaction type") @RequestParam(required = false) TransactionType type,
+            @Parameter(description = "Filter by transaction status") @RequestParam(required = false) TransactionStatus status,
+            @Parameter(description = "Only windows at or after this time, rounded down to the hour (ISO-8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Only windows before this time (ISO-8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        return transactionService.getStatistics(from, to, granularity, type, status);
     }
 
     @GetMapping(path = "/{id}",produces = "application/json")
     @Operation(summary = "Get transaction by ID")
-    public Transaction getTransactionById(@PathVariable Long id) {
-        return transactionService.getTransactionById(id)
-                .orElseThrow(() -> new TransactionNotFoundException(id));
+    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = Transaction.class)))
+    public ResponseEntity<byte[]> getTransactionById(@PathVariable Long id) {
+        TransactionResponseCache.CachedResponse response =
+                responseCache.transaction(id, () -> transactionService.getTransactionById(id));
+        if (response == null) {
+            throw new TransactionNotFoundException(id);
+        }
+        return cached(response);
     }
 
     @GetMapping
     @Operation(summary = "Get all transactions with pagination")
-    public Page<Transaction> getAllTransactions(
+    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = Page.class)))
+    public ResponseEntity<?> getAllTransactions(
             @Parameter(description = "Page number (1-based)") @RequestParam(defaultValue = "1") int page,
-            @Parameter(description = "Number of items per page") @RequestParam(defaultValue = "10") int size) {
+            @Parameter(description = "Number of items per page") @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "Cursor: return transactions with id greater than this (overrides page)")
+            @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Filter by transaction type") @RequestParam(required = false) TransactionType type,
+            @Parameter(description = "Filter by transaction status") @RequestParam(required = false) TransactionStatus status,
+            @Parameter(description = "Filter by target account") @RequestParam(required = false) String targetAccount,
+            @Parameter(description = "Only transactions at or after this time (ISO-8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Only transactions before this time (ISO-8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be greater than 0");
+        }
+        TransactionFilter filter = new TransactionFilter(type, status, targetAccount, from, to);
+        if (!filter.isEmpty()) {
+            return ResponseEntity.ok(
+                    transactionService.findTransactions(filter, afterId, page > 0 ? page - 1 : 0, size));
+        }
+        if (afterId != null) {
+            return ResponseEntity.ok(transactionService.getTransactionsAfter(afterId, size));
+        }
         // Convert 1-based page to 0-based for service layer
         int zeroBasedPage = page > 0 ? page - 1 : 0;
-        return transactionService.getAllTransactions(zeroBasedPage, size);
+        if (zeroBasedPage == 0) {
+            // 页面轮询的首页走响应缓存
+            return cached(responseCache.firstPage(size, () -> transactionService.getAllTransactions(0, size)));
+        }
+        return ResponseEntity.ok(transactionService.getAllTransactions(zeroBasedPage, size));
+    }
+
+    /**
+     * 直接写出缓存的字节；If-None-Match 与 ETag 相同时由 Spring 改为返回 304，不写响应体。
+     * no-cache 让浏览器每次带 ETag 重新验证，页面轮询无需额外处理
+     */
+    private static ResponseEntity<byte[]> cached(TransactionResponseCache.CachedResponse response) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(response.etag())
+                .body(response.body());
     }
 
     @PutMapping("/{id}")
     @Operation(summary = "Update an existing transaction")
-    public Transaction updateTransaction(@PathVariable Long id, @Valid @RequestBody Transaction transaction) {
+    public Transaction updateTransaction(
+            @PathVariable Long id, @Valid @RequestBody Transaction transaction,
+            @Parameter(description = "ETag from a previous GET; the update fails with 412 if the transaction has changed")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            return transactionService.updateTransaction(id, transaction);
+            if (ifMatch == null) {
+                return transactionService.updateTransaction(id, transaction);
+            }
+            // 按当前表示的 ETag 比较，比较通过后以对应的版本号做条件更新，期间被并发修改同样返回 412
+            TransactionResponseCache.CachedResponse current =
+                    responseCache.transaction(id, () -> transactionService.getTransactionById(id));
+            if (current == null) {
+                throw new TransactionNotFoundException(id);
+            }
+            if (!matches(ifMatch, current.etag())) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                        "Transaction " + id + " has been modified");
+            }
+            return transactionService.updateTransaction(id, transaction, current.version());
         } catch (TransactionNotFoundException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (TransactionConflictException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage());
         } catch (InvalidTransactionException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    /**
+     * If-Match 使用强比较：弱 ETag 不匹配，* 匹配任何现存的表示
+     */
+    private static boolean matches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GetMapping(path = "/accounts/{account}/balance", produces = "application/json")
+    @Operation(summary = "Get the current balance of an account")
+    public BigDecimal getAccountBalance(@PathVariable String account) {
+        return transactionService.getAccountBalance(account);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @Operation(summary = "Delete a transaction")
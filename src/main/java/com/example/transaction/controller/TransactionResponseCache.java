@@ -0,0 +1,123 @@
+package com.example.transaction.controller;
+
+import com.example.transaction.model.Page;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.service.TransactionListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 单笔交易和首页响应的序列化结果缓存，命中时直接写出字节，不再经过 Jackson；
+ * 强 ETag 取自响应内容的摘要，客户端带 If-None-Match 重复请求时可直接得到 304。
+ * <p>
+ * 单笔条目在更新和删除时逐个失效。首页包含总条数，任何变更都会改变它，
+ * 因此首页条目记下生成时的变更代数，代数不一致即视为过期，写入方只需递增一次计数。
+ * 不存在的 ID 不缓存。
+ */
+@Component
+public class TransactionResponseCache implements TransactionListener {
+
+    /**
+     * 缓存的响应体及其 ETag；generation 为生成时的变更代数，version 为单笔交易的版本号，页面为 0
+     */
+    public record CachedResponse(byte[] body, String etag, long generation, long version) {
+    }
+
+    private record FirstPage(int size) {
+    }
+
+    private final Cache cache;
+    private final ObjectMapper objectMapper;
+    /** 每次存储变更递增，用于判断首页是否过期，以及丢弃与变更并发生成的条目 */
+    private final AtomicLong generation = new AtomicLong();
+
+    public TransactionResponseCache(CacheManager cacheManager, ObjectMapper objectMapper) {
+        this.cache = cacheManager.getCache("transactions");
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 返回单笔交易的缓存响应，未命中时从 loader 读取并序列化；交易不存在时返回 null
+     */
+    public CachedResponse transaction(long id, Supplier<Optional<Transaction>> loader) {
+        CachedResponse cached = cache.get(id, CachedResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+        long seen = generation.get();
+        Optional<Transaction> transaction = loader.get();
+        if (transaction.isEmpty()) {
+            return null;
+        }
+        return store(id, serialize(transaction.get(), seen, transaction.get().getVersion()));
+    }
+
+    /**
+     * 返回首页（不带过滤条件和游标）的缓存响应，未命中或已过期时从 loader 读取并序列化
+     */
+    public CachedResponse firstPage(int size, Supplier<Page<Transaction>> loader) {
+        FirstPage key = new FirstPage(size);
+        long seen = generation.get();
+        CachedResponse cached = cache.get(key, CachedResponse.class);
+        if (cached != null && cached.generation() == seen) {
+            return cached;
+        }
+        return store(key, serialize(loader.get(), seen, 0));
+    }
+
+    /**
+     * 生成期间发生过变更的条目不写入；写入之后再复核一次，
+     * 避免与失效操作交错时把旧内容留在缓存里
+     */
+    private CachedResponse store(Object key, CachedResponse response) {
+        if (generation.get() == response.generation()) {
+            cache.put(key, response);
+            if (generation.get() != response.generation()) {
+                cache.evict(key);
+            }
+        }
+        return response;
+    }
+
+    private CachedResponse serialize(Object value, long generation, long version) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            return new CachedResponse(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"", generation, version);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void inserted(TransactionRecord record) {
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public void updated(TransactionRecord previous, TransactionRecord current) {
+        generation.incrementAndGet();
+        cache.evict(current.id());
+    }
+
+    @Override
+    public void removed(TransactionRecord removed) {
+        generation.incrementAndGet();
+        cache.evict(removed.id());
+    }
+
+    @Override
+    public void reset() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.transaction.exception;
+
+public class TransactionConflictException extends TransactionException {
+    public TransactionConflictException(Long id, long expectedVersion, long currentVersion) {
+        super("Transaction " + id + " is at version " + currentVersion + ", expected version " + expectedVersion);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.transaction.io;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 交易的 CSV 格式：固定列顺序，首行为表头，字段按 RFC 4180 规则转义。
+ */
+public final class TransactionCsv {
+
+    public static final String HEADER =
+            "id,type,amount,description,timestamp,status,sourceAccount,targetAccount,originalTransactionId,initiatedBy";
+
+    private TransactionCsv() {
+    }
+
+    public static void writeHeader(Writer out) throws IOException {
+        out.write(HEADER);
+        out.write('\n');
+    }
+
+    public static void write(Writer out, Transaction t) throws IOException {
+        writeField(out, t.getId());
+        out.write(',');
+        writeField(out, t.getType());
+        out.write(',');
+        writeField(out, t.getAmount() == null ? null : t.getAmount().toPlainString());
+        out.write(',');
+        writeField(out, t.getDescription());
+        out.write(',');
+        writeField(out, t.getTimestamp());
+        out.write(',');
+        writeField(out, t.getStatus());
+        out.write(',');
+        writeField(out, t.getSourceAccount());
+        out.write(',');
+        writeField(out, t.getTargetAccount());
+        out.write(',');
+        writeField(out, t.getOriginalTransactionId());
+        out.write(',');
+        writeField(out, t.getInitiatedBy());
+        out.write('\n');
+    }
+
+    private static void writeField(Writer out, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            out.write(text);
+            return;
+        }
+        out.write('"');
+        out.write(text.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * 按表头解析一条记录，列顺序以表头为准，未知列忽略，空字段视为未提供
+     * @throws IllegalArgumentException 字段格式不合法
+     */
+    public static Transaction parse(List<String> header, List<String> fields) {
+        Transaction t = new Transaction();
+        for (int i = 0; i < header.size() && i < fields.size(); i++) {
+            String value = fields.get(i);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            switch (header.get(i)) {
+                case "id" -> t.setId(Long.parseLong(value));
+                case "type" -> t.setType(TransactionType.valueOf(value));
+                case "amount" -> t.setAmount(new BigDecimal(value));
+                case "description" -> t.setDescription(value);
+                case "timestamp" -> t.setTimestamp(LocalDateTime.parse(value));
+                case "status" -> t.setStatus(TransactionStatus.valueOf(value));
+                case "sourceAccount" -> t.setSourceAccount(value);
+                case "targetAccount" -> t.setTargetAccount(value);
+                case "originalTransactionId" -> t.setOriginalTransactionId(Long.parseLong(value));
+                case "initiatedBy" -> t.setInitiatedBy(value);
+                default -> {
+                    // 未知列忽略
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 增量读取 CSV 记录，支持引号内的逗号、转义引号和换行，只缓冲当前一条记录
+     */
+    public static final class RecordReader {
+        private final BufferedReader in;
+        private long line = 1;
+        private long recordLine;
+
+        public RecordReader(Reader in) {
+            this.in = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in);
+        }
+
+        /** 当前记录起始的行号（从1开始） */
+        public long recordLine() {
+            return recordLine;
+        }
+
+        /**
+         * 读取下一条非空记录
+         * @return 字段列表，输入结束时返回 null
+         */
+        public List<String> next() throws IOException {
+            List<String> fields;
+            do {
+                fields = readRecord();
+            } while (fields != null && fields.size() == 1 && fields.get(0) == null);
+            return fields;
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean any = false;
+            recordLine = line;
+            int c;
+            while ((c = in.read()) != -1) {
+                any = true;
+                if (inQuotes) {
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                            in.reset();
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(fieldValue(field, quoted));
+                    field.setLength(0);
+                    quoted = false;
+                } else if (c == '\n') {
+                    line++;
+                    fields.add(fieldValue(field, quoted));
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            fields.add(fieldValue(field, quoted));
+            return fields;
+        }
+
+        private static String fieldValue(StringBuilder field, boolean quoted) {
+            return field.length() == 0 && !quoted ? null : field.toString();
+        }
+    }
+}
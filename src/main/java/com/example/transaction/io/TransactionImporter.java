@@ -0,0 +1,298 @@
+package com.example.transaction.io;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.cluster.ShardClient;
+import com.example.transaction.model.BatchItemResult;
+import com.example.transaction.model.ImportJob;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.service.TransactionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式导入：边读边解析 NDJSON 或 CSV，按块提交到有界线程池写入。
+ * <p>
+ * 线程池队列满时由读取线程自己执行写入，读取随之放慢，
+ * 因此同一时刻在内存中的只有 (线程数 + 队列容量 + 1) 个块，与文件大小无关。
+ * <p>
+ * 分片部署时每块按行拆分给所属节点，与批量创建的路由规则相同；发往其他节点的部分以 NDJSON
+ * 同步导入，结果按原行号计入本任务。保留的ID须与账户属于同一节点，否则该行失败。
+ */
+@Component
+public class TransactionImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionImporter.class);
+    private static final String IMPORT_PATH = "/api/transactions/import";
+
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final ClusterTopology topology;
+    private final ShardClient client;
+    private final ExecutorService workers;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+    private final Cache<String, ImportJob> jobs = Caffeine.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(Duration.ofHours(24))
+            .build();
+
+    public TransactionImporter(TransactionService transactionService, ObjectMapper objectMapper,
+                               ClusterTopology topology, ShardClient client,
+                               @Value("${transaction.import.workers:2}") int workerCount,
+                               @Value("${transaction.import.queue-capacity:4}") int queueCapacity,
+                               @Value("${transaction.import.chunk-size:1000}") int chunkSize,
+                               @Value("${transaction.import.max-reported-errors:1000}") int maxReportedErrors,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.topology = topology;
+        this.client = client;
+        // 虚拟线程模式下线程数和队列仍然有界，保持导入的内存上限
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("import-", 0).factory()
+                : Thread.ofPlatform().name("import-", 0).factory();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threads, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ImportJob importNdjson(InputStream input) {
+        ImportJob job = newJob("ndjson");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        run(job, chunks -> {
+            Chunk chunk = new Chunk(chunkSize);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                job.lineRead();
+                try {
+                    chunk.add(lineNumber, objectMapper.readValue(line, Transaction.class));
+                } catch (JsonProcessingException e) {
+                    job.failed(lineNumber, "Malformed JSON: " + e.getOriginalMessage());
+                    continue;
+                }
+                if (chunk.isFull()) {
+                    chunks.add(submit(job, chunk));
+                    chunk = new Chunk(chunkSize);
+                }
+            }
+            chunks.add(submit(job, chunk));
+        });
+        return job;
+    }
+
+    public ImportJob importCsv(InputStream input) {
+        ImportJob job = newJob("csv");
+        TransactionCsv.RecordReader reader = new TransactionCsv.RecordReader(
+                new InputStreamReader(input, StandardCharsets.UTF_8));
+        run(job, chunks -> {
+            List<String> header = reader.next();
+            if (header == null) {
+                return;
+            }
+            Chunk chunk = new Chunk(chunkSize);
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                job.lineRead();
+                try {
+                    chunk.add(reader.recordLine(), TransactionCsv.parse(header, fields));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    job.failed(reader.recordLine(), "Malformed CSV record: " + e.getMessage());
+                    continue;
+                }
+                if (chunk.isFull()) {
+                    chunks.add(submit(job, chunk));
+                    chunk = new Chunk(chunkSize);
+                }
+            }
+            chunks.add(submit(job, chunk));
+        });
+        return job;
+    }
+
+    public ImportJob getJob(String id) {
+        return jobs.getIfPresent(id);
+    }
+
+    public Collection<ImportJob> getJobs() {
+        return jobs.asMap().values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private ImportJob newJob(String format) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), format, maxReportedErrors);
+        jobs.put(job.getId(), job);
+        log.info("Import {} started ({})", job.getId(), format);
+        return job;
+    }
+
+    private void run(ImportJob job, ChunkProducer producer) {
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        try {
+            producer.produce(chunks);
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+            job.finish(ImportJob.State.COMPLETED, null);
+        } catch (IOException | RuntimeException e) {
+            // 读取中断时已提交的块仍会完成，等待它们以保证计数准确
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).exceptionally(ex -> null).join();
+            job.finish(ImportJob.State.FAILED, e.getMessage());
+            log.warn("Import {} failed after {} lines", job.getId(), job.getLinesRead(), e);
+            return;
+        }
+        log.info("Import {} finished: {} lines, {} imported, {} failed",
+                job.getId(), job.getLinesRead(), job.getImported(), job.getFailed());
+    }
+
+    private CompletableFuture<Void> submit(ImportJob job, Chunk chunk) {
+        if (chunk.transactions.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            if (!topology.isPartitioned()) {
+                importLocally(job, chunk);
+                return;
+            }
+            Map<Integer, Chunk> chunksByOwner = new LinkedHashMap<>();
+            for (int i = 0; i < chunk.transactions.size(); i++) {
+                Transaction transaction = chunk.transactions.get(i);
+                int owner = topology.ownerOfWrite(transaction.getSourceAccount(),
+                        transaction.getType() == TransactionType.REFUND ? transaction.getOriginalTransactionId() : null);
+                chunksByOwner.computeIfAbsent(owner, k -> new Chunk(chunk.transactions.size()))
+                        .add(chunk.lines[i], transaction);
+            }
+            chunksByOwner.forEach((owner, part) -> {
+                if (topology.isLocal(owner)) {
+                    importLocally(job, part);
+                } else {
+                    importRemotely(job, owner, part);
+                }
+            });
+        }, workers);
+    }
+
+    private void importLocally(ImportJob job, Chunk chunk) {
+        List<BatchItemResult> results = transactionService.importTransactions(chunk.transactions);
+        int imported = 0;
+        for (BatchItemResult result : results) {
+            if (result.isSuccess()) {
+                imported++;
+            } else {
+                job.failed(chunk.lines[result.getIndex()], result.getError());
+            }
+        }
+        job.imported(imported);
+    }
+
+    /**
+     * 以 NDJSON 发给所属节点导入，对方返回的行号即本块中的顺序（从1开始）。
+     * 对方未给出明细的失败行无法对应到原行号，以行号 0 计入
+     */
+    private void importRemotely(ImportJob job, int owner, Chunk chunk) {
+        ShardClient.Response response;
+        JsonNode result = null;
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (Transaction transaction : chunk.transactions) {
+                body.write(objectMapper.writeValueAsBytes(transaction));
+                body.write('\n');
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.CONTENT_TYPE, "application/x-ndjson");
+            response = client.send(owner, HttpMethod.POST, IMPORT_PATH, headers, body.toByteArray());
+            if (response.ok()) {
+                result = objectMapper.readTree(response.body());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (result == null) {
+            String error = response.status() == 0
+                    ? "Node " + owner + " is unavailable, outcome unknown"
+                    : "Node " + owner + " rejected the import with status " + response.status();
+            for (int i = 0; i < chunk.transactions.size(); i++) {
+                job.failed(chunk.lines[i], error);
+            }
+            return;
+        }
+        job.imported(result.path("imported").asInt());
+        JsonNode errors = result.path("errors");
+        for (JsonNode error : errors) {
+            job.failed(chunk.lines[error.path("line").asInt() - 1], error.path("message").asText());
+        }
+        long unreported = chunk.transactions.size() - result.path("imported").asLong() - errors.size();
+        String error = "Node " + owner + " did not import this record"
+                + (result.path("message").isTextual() ? ": " + result.path("message").asText() : "");
+        for (long i = 0; i < unreported; i++) {
+            job.failed(0, error);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkProducer {
+        void produce(List<CompletableFuture<Void>> chunks) throws IOException;
+    }
+
+    /**
+     * 一块待写入的交易及其对应的输入行号
+     */
+    private static final class Chunk {
+        private final List<Transaction> transactions;
+        private final long[] lines;
+
+        Chunk(int capacity) {
+            this.transactions = new ArrayList<>(capacity);
+            this.lines = new long[capacity];
+        }
+
+        void add(long line, Transaction transaction) {
+            lines[transactions.size()] = line;
+            transactions.add(transaction);
+        }
+
+        boolean isFull() {
+            return transactions.size() == lines.length;
+        }
+    }
+}
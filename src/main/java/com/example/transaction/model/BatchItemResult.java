@@ -0,0 +1,65 @@
+package com.example.transaction.model;
+
+/**
+ * 批量创建中单条交易的处理结果
+ */
+public class BatchItemResult {
+    /** 在请求列表中的下标 */
+    private int index;
+    private boolean success;
+    /** 成功时为新交易的ID */
+    private Long id;
+    /** 失败原因 */
+    private String error;
+
+    public BatchItemResult() {
+    }
+
+    private BatchItemResult(int index, boolean success, Long id, String error) {
+        this.index = index;
+        this.success = success;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static BatchItemResult succeeded(int index, long id) {
+        return new BatchItemResult(index, true, id, null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, false, null, error);
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
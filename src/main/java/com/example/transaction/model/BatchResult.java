@@ -0,0 +1,51 @@
+package com.example.transaction.model;
+
+import java.util.List;
+
+/**
+ * 批量创建的汇总结果，results 与请求列表一一对应
+ */
+public class BatchResult {
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResult> results;
+
+    public BatchResult() {
+    }
+
+    public BatchResult(List<BatchItemResult> results) {
+        this.results = results;
+        for (BatchItemResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+        }
+    }
+
+    // Getters and Setters
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchItemResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchItemResult> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.transaction.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量导入任务的进度与结果，导入过程中各计数实时更新，可随时查询
+ */
+public class ImportJob {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String format;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final int maxReportedErrors;
+    private final AtomicLong linesRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ConcurrentLinkedQueue<LineError> errors = new ConcurrentLinkedQueue<>();
+    private volatile State state = State.RUNNING;
+    private volatile LocalDateTime finishedAt;
+    private volatile String message;
+
+    public ImportJob(String id, String format, int maxReportedErrors) {
+        this.id = id;
+        this.format = format;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void lineRead() {
+        linesRead.incrementAndGet();
+    }
+
+    public void imported(int count) {
+        imported.addAndGet(count);
+    }
+
+    /** 记录一行失败；只保留前 maxReportedErrors 条明细，计数不受限 */
+    public void failed(long line, String error) {
+        if (failed.incrementAndGet() <= maxReportedErrors) {
+            errors.add(new LineError(line, error));
+        }
+    }
+
+    public void finish(State state, String message) {
+        this.state = state;
+        this.message = message;
+        this.finishedAt = LocalDateTime.now();
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getLinesRead() {
+        return linesRead.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public List<LineError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * 单行错误，line 为输入中的行号（从1开始）
+     */
+    public record LineError(long line, String message) {
+    }
+}
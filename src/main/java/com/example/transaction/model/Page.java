@@ -7,12 +7,19 @@ public class Page<T> {
     private int currentPage;
     private int totalPages;
     private long totalElements;
+    /** 下一页游标：作为 afterId 传入即可继续读取，没有更多数据时为 null */
+    private Long nextAfterId;
 
     public Page(List<T> content, int currentPage, int totalPages, long totalElements) {
+        this(content, currentPage, totalPages, totalElements, null);
+    }
+
+    public Page(List<T> content, int currentPage, int totalPages, long totalElements, Long nextAfterId) {
         this.content = content;
         this.currentPage = currentPage;
         this.totalPages = totalPages;
         this.totalElements = totalElements;
+        this.nextAfterId = nextAfterId;
     }
 
     // Getters and Setters
@@ -47,4 +54,12 @@ public class Page<T> {
     public void setTotalElements(long totalElements) {
         this.totalElements = totalElements;
     }
+
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
+
+    public void setNextAfterId(Long nextAfterId) {
+        this.nextAfterId = nextAfterId;
+    }
 }
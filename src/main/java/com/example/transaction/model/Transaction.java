@@ -3,6 +3,7 @@ package com.example.transaction.model;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
 
 public class Transaction {
@@ -16,9 +17,11 @@ public class Transaction {
      * 交易金额
      * @NotNull 金额不能为空
      * @DecimalMin 金额必须大于0
+     * @Digits 内部以分为单位存储，最多两位小数
      */
     @NotNull(message = "Transaction amount is required")
     @DecimalMin(value = "0.01", message = "Transaction amount must be greater than 0")
+    @Digits(integer = 16, fraction = 2, message = "Transaction amount must have at most 2 decimal places")
     private BigDecimal amount;
     
     /** 交易描述 */
@@ -30,6 +33,9 @@ public class Transaction {
     /** 交易状态，默认为PENDING */
     private TransactionStatus status = TransactionStatus.PENDING;
     
+    /** 来源账户（余额按账户记账，为空时记入默认账户） */
+    private String sourceAccount;
+
     /** 目标账户（用于转账交易） */
     private String targetAccount;
     
@@ -39,7 +45,21 @@ public class Transaction {
     /** 交易发起方（用于系统交易） */
     private String initiatedBy;
 
+    /** 版本号，由服务维护，每次更新加一；请求中的值会被忽略 */
+    private Long version;
+
+    public Transaction() {
+    }
+
     // Getters and Setters
+    public String getSourceAccount() {
+        return sourceAccount;
+    }
+
+    public void setSourceAccount(String sourceAccount) {
+        this.sourceAccount = sourceAccount;
+    }
+
     public String getTargetAccount() {
         return targetAccount;
     }
@@ -64,6 +84,14 @@ public class Transaction {
         this.initiatedBy = initiatedBy;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
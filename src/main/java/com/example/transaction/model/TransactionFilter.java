@@ -0,0 +1,116 @@
+package com.example.transaction.model;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * 交易查询条件，各字段为空表示不限制。
+ */
+public class TransactionFilter {
+    private TransactionType type;
+    private TransactionStatus status;
+    private String targetAccount;
+    /** 时间范围起点（含） */
+    private LocalDateTime from;
+    /** 时间范围终点（不含） */
+    private LocalDateTime to;
+
+    public TransactionFilter() {
+    }
+
+    public TransactionFilter(TransactionType type, TransactionStatus status, String targetAccount) {
+        this.type = type;
+        this.status = status;
+        this.targetAccount = targetAccount;
+    }
+
+    public TransactionFilter(TransactionType type, TransactionStatus status, String targetAccount,
+                             LocalDateTime from, LocalDateTime to) {
+        this(type, status, targetAccount);
+        this.from = from;
+        this.to = to;
+    }
+
+    public boolean isEmpty() {
+        return type == null && status == null && targetAccount == null && !hasTimeRange();
+    }
+
+    public boolean hasTimeRange() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Transaction transaction) {
+        return matches(transaction.getType(), transaction.getStatus(), transaction.getTargetAccount(),
+                transaction.getTimestamp());
+    }
+
+    public boolean matches(TransactionRecord transaction) {
+        return matches(transaction.type(), transaction.status(), transaction.targetAccount(),
+                transaction.timestamp());
+    }
+
+    private boolean matches(TransactionType type, TransactionStatus status, String targetAccount,
+                            LocalDateTime timestamp) {
+        return (this.type == null || this.type == type)
+                && (this.status == null || this.status == status)
+                && (this.targetAccount == null || this.targetAccount.equals(targetAccount))
+                && matchesTime(timestamp);
+    }
+
+    private boolean matchesTime(LocalDateTime timestamp) {
+        if (!hasTimeRange()) {
+            return true;
+        }
+        return timestamp != null
+                && (from == null || !timestamp.isBefore(from))
+                && (to == null || timestamp.isBefore(to));
+    }
+
+    // Getters and Setters
+    public TransactionType getType() {
+        return type;
+    }
+
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    public String getTargetAccount() {
+        return targetAccount;
+    }
+
+    public void setTargetAccount(String targetAccount) {
+        this.targetAccount = targetAccount;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionFilter{type=" + type + ", status=" + status
+                + ", targetAccount=" + Objects.toString(targetAccount)
+                + ", from=" + from + ", to=" + to + "}";
+    }
+}
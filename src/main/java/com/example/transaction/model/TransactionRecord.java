@@ -0,0 +1,108 @@
+package com.example.transaction.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * 交易的内部不可变表示，存储、索引、台账和日志都只使用它。
+ * 金额以最小货币单位（分）的 long 保存，固定两位小数；
+ * 与 {@link Transaction} 的互相转换只发生在服务边界。
+ *
+ * @param amount                金额，单位为分
+ * @param originalTransactionId 原始交易ID，无关联时为 {@link #NONE}
+ * @param version               版本号，新建时为 {@link #FIRST_VERSION}，每次更新加一
+ */
+public record TransactionRecord(long id,
+                                TransactionType type,
+                                long amount,
+                                String description,
+                                LocalDateTime timestamp,
+                                TransactionStatus status,
+                                String sourceAccount,
+                                String targetAccount,
+                                long originalTransactionId,
+                                String initiatedBy,
+                                long version) {
+
+    /** 金额的固定小数位数 */
+    public static final int SCALE = 2;
+
+    /** 表示未设置的 ID；分配的 ID 从 1 开始 */
+    public static final long NONE = 0;
+
+    public static final long FIRST_VERSION = 1;
+
+    /**
+     * 从请求对象转换；ID 为空时记为 {@link #NONE}，由服务分配，请求中的版本号不采用
+     *
+     * @throws ArithmeticException 金额超过两位小数或超出 long 范围
+     */
+    public static TransactionRecord from(Transaction t) {
+        return new TransactionRecord(
+                t.getId() == null ? NONE : t.getId(),
+                t.getType(),
+                toMinorUnits(t.getAmount()),
+                t.getDescription(),
+                t.getTimestamp(),
+                t.getStatus(),
+                t.getSourceAccount(),
+                t.getTargetAccount(),
+                t.getOriginalTransactionId() == null ? NONE : t.getOriginalTransactionId(),
+                t.getInitiatedBy(),
+                FIRST_VERSION);
+    }
+
+    public Transaction toTransaction() {
+        Transaction t = new Transaction();
+        t.setId(id);
+        t.setType(type);
+        t.setAmount(toDecimal(amount));
+        t.setDescription(description);
+        t.setTimestamp(timestamp);
+        t.setStatus(status);
+        t.setSourceAccount(sourceAccount);
+        t.setTargetAccount(targetAccount);
+        t.setOriginalTransactionId(originalTransactionId == NONE ? null : originalTransactionId);
+        t.setInitiatedBy(initiatedBy);
+        t.setVersion(version);
+        return t;
+    }
+
+    public TransactionRecord withId(long id) {
+        return new TransactionRecord(id, type, amount, description, timestamp, status,
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    public TransactionRecord withIdAndTimestamp(long id, LocalDateTime timestamp) {
+        return new TransactionRecord(id, type, amount, description, timestamp, status,
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    public TransactionRecord withStatus(TransactionStatus status) {
+        return new TransactionRecord(id, type, amount, description, timestamp, status,
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    public TransactionRecord withSourceAccount(String sourceAccount) {
+        return new TransactionRecord(id, type, amount, description, timestamp, status,
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    public TransactionRecord withVersion(long version) {
+        return new TransactionRecord(id, type, amount, description, timestamp, status,
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    public boolean hasOriginalTransaction() {
+        return originalTransactionId != NONE;
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+}
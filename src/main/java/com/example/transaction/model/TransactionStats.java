@@ -0,0 +1,77 @@
+package com.example.transaction.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 一个时间窗口内某类型、某状态交易的汇总
+ */
+public class TransactionStats {
+
+    /** 汇总的时间粒度 */
+    public enum Granularity {
+        HOUR,
+        DAY
+    }
+
+    /** 窗口起点（含） */
+    private LocalDateTime windowStart;
+    private TransactionType type;
+    private TransactionStatus status;
+    private long count;
+    /** 金额合计（不区分收支方向） */
+    private BigDecimal totalAmount;
+
+    public TransactionStats() {
+    }
+
+    public TransactionStats(LocalDateTime windowStart, TransactionType type, TransactionStatus status,
+                            long count, BigDecimal totalAmount) {
+        this.windowStart = windowStart;
+        this.type = type;
+        this.status = status;
+        this.count = count;
+        this.totalAmount = totalAmount;
+    }
+
+    // Getters and Setters
+    public LocalDateTime getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(LocalDateTime windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+}
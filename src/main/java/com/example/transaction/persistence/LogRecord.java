@@ -0,0 +1,13 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.model.TransactionRecord;
+
+/**
+ * 一条变更日志：PUT 携带变更后的完整交易，DELETE 只携带ID
+ */
+public record LogRecord(long sequence, Operation operation, long id, TransactionRecord transaction) {
+
+    public enum Operation {
+        PUT, DELETE
+    }
+}
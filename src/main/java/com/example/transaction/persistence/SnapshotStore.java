@@ -0,0 +1,184 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.model.TransactionRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 存储快照：头部记录快照覆盖到的日志序号和下一个待分配ID，之后是按ID升序的交易记录，
+ * 以结束标记和记录数收尾。先写临时文件、fsync 后原子改名，目录中只保留最新一份。
+ * <p>
+ * 加载时按窗口做只读内存映射，直接从映射区解码，不经过流和中间缓冲。
+ */
+@Component
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final long MAGIC = 0x54584E534E415031L;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int END_OF_RECORDS = -1;
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final Path directory;
+
+    public SnapshotStore(@Value("${transaction.snapshot.directory:data/snapshots}") Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 快照头部：sequence 之前（含）的日志已被快照覆盖；nextId 为下一个待分配的ID序号，单节点部署时即下一个ID
+     */
+    public record Header(long sequence, long nextId, long records) {
+    }
+
+    /**
+     * 写出一份快照并删除更早的快照，返回写入的记录数
+     */
+    public long write(long sequence, long nextId, Iterator<TransactionRecord> transactions) {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream file = Channels.newOutputStream(channel);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 20));
+                out.writeLong(MAGIC);
+                out.writeLong(sequence);
+                out.writeLong(nextId);
+                ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+                DataOutputStream recordOut = new DataOutputStream(record);
+                while (transactions.hasNext()) {
+                    record.reset();
+                    TransactionCodec.write(recordOut, transactions.next());
+                    out.writeInt(record.size());
+                    record.writeTo(out);
+                    count++;
+                }
+                out.writeInt(END_OF_RECORDS);
+                out.writeLong(count);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path old : snapshots()) {
+                if (!old.equals(target)) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + target, e);
+        }
+        return count;
+    }
+
+    /**
+     * 加载最新的快照，逐条交给 consumer；没有快照时返回 null
+     */
+    public Header load(Consumer<TransactionRecord> consumer) {
+        Path latest;
+        try {
+            if (!Files.isDirectory(directory)) {
+                return null;
+            }
+            List<Path> snapshots = snapshots();
+            if (snapshots.isEmpty()) {
+                return null;
+            }
+            latest = snapshots.get(snapshots.size() - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list snapshots in " + directory, e);
+        }
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.READ)) {
+            MappedReader in = new MappedReader(channel);
+            ByteBuffer header = in.require(24);
+            if (header.getLong() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            long sequence = header.getLong();
+            long nextId = header.getLong();
+            long count = 0;
+            while (true) {
+                int length = in.require(4).getInt();
+                if (length == END_OF_RECORDS) {
+                    break;
+                }
+                ByteBuffer record = in.require(length);
+                consumer.accept(TransactionCodec.read(record, record.position() + length));
+                count++;
+            }
+            long expected = in.require(8).getLong();
+            if (expected != count) {
+                throw new IOException("Snapshot declares " + expected + " records but contains " + count);
+            }
+            log.info("Loaded snapshot {} with {} transactions", latest.getFileName(), count);
+            return new Header(sequence, nextId, count);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Failed to load snapshot " + latest, e);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * 以不超过 1GB 的窗口顺序映射文件；剩余字节不够一条记录时从当前位置重新映射
+     */
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            remap(0);
+        }
+
+        ByteBuffer require(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                remap(windowStart + window.position());
+                if (window.remaining() < bytes) {
+                    throw new IOException("Snapshot truncated at offset " + (windowStart + window.position()));
+                }
+            }
+            return window;
+        }
+
+        private void remap(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, size - start));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 交易的紧凑二进制编码，供预写日志和快照共用。
+ * 写入走 DataOutput，读取直接解析 ByteBuffer，便于从内存映射文件加载。
+ * 枚举按序号编码：新增枚举值只能追加在末尾。
+ * 新字段追加在末尾，读取时按剩余字节判断：日志和快照中每条记录都有长度前缀，旧格式的记录仍可读取。
+ */
+public final class TransactionCodec {
+
+    private static final int NULL = -1;
+
+    private TransactionCodec() {
+    }
+
+    public static void write(DataOutput out, TransactionRecord t) throws IOException {
+        out.writeLong(t.id());
+        out.writeByte(t.type() == null ? NULL : t.type().ordinal());
+        out.writeLong(t.amount());
+        writeString(out, t.description());
+        writeTimestamp(out, t.timestamp());
+        out.writeByte(t.status() == null ? NULL : t.status().ordinal());
+        writeString(out, t.sourceAccount());
+        writeString(out, t.targetAccount());
+        out.writeLong(t.originalTransactionId());
+        writeString(out, t.initiatedBy());
+        out.writeLong(t.version());
+    }
+
+    public static TransactionRecord read(ByteBuffer in) {
+        return read(in, in.limit());
+    }
+
+    /**
+     * @param end 本条记录结束的绝对位置，缓冲区在其后还有其他数据时使用
+     */
+    public static TransactionRecord read(ByteBuffer in, int end) {
+        long id = in.getLong();
+        byte type = in.get();
+        long amount = in.getLong();
+        String description = readString(in);
+        LocalDateTime timestamp = readTimestamp(in);
+        byte status = in.get();
+        String sourceAccount = readString(in);
+        String targetAccount = readString(in);
+        long originalTransactionId = in.getLong();
+        String initiatedBy = readString(in);
+        // 加入版本号之前写入的记录没有这一字段
+        long version = end - in.position() >= Long.BYTES ? in.getLong() : TransactionRecord.FIRST_VERSION;
+        return new TransactionRecord(id, type == NULL ? null : TransactionType.values()[type], amount,
+                description, timestamp, status == NULL ? null : TransactionStatus.values()[status],
+                sourceAccount, targetAccount, originalTransactionId, initiatedBy, version);
+    }
+
+    private static void writeTimestamp(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.model.TransactionRecord;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 追加写的预写日志，采用组提交：写入方只负责编码并按序号入队，
+ * 由单个刷盘线程把积攒的记录一次写出并 fsync，多个写入方共享一次 fsync。
+ * <p>
+ * 记录格式为 [长度][CRC32C][序号, 操作, ID, 交易]，按序号递增分段存放，
+ * 文件名为段内首条记录的序号。重启时按段顺序重放；末尾写了一半的记录被截掉。
+ */
+@Component
+public class WriteAheadLog {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int HEADER_BYTES = 8;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final long segmentBytes;
+
+    /** 已分配的最大序号；入队记录按序号排列，刷盘线程只写出连续的前缀 */
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong durable = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, byte[]> pending = new ConcurrentSkipListMap<>();
+
+    /** 等待落盘的写入方；每次刷盘后只唤醒目标序号已落盘的那些，避免惊群 */
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread flusher;
+    private volatile boolean running;
+    private volatile boolean rollRequested;
+    private volatile IOException failure;
+    private FileChannel segment;
+    private long segmentSize;
+
+    public WriteAheadLog(@Value("${transaction.wal.enabled:false}") boolean enabled,
+                         @Value("${transaction.wal.directory:data/wal}") Path directory,
+                         @Value("${transaction.wal.flush-interval:PT0S}") Duration flushInterval,
+                         @Value("${transaction.wal.batch-size:1024}") int batchSize,
+                         @Value("${transaction.wal.segment-size:64MB}") DataSize segmentSize) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.batchSize = batchSize;
+        this.segmentBytes = segmentSize.toBytes();
+    }
+
+    /** 不落盘的实例，供直接构造服务的测试使用 */
+    public static WriteAheadLog disabled() {
+        return new WriteAheadLog(false, Path.of("."), Duration.ZERO, 1, DataSize.ofBytes(1));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 按序重放序号大于 afterSequence 的日志并打开新段开始追加；必须在第一次写入前调用一次。
+     * afterSequence 为已加载快照覆盖到的序号，没有快照时为 0。
+     */
+    public void recover(long afterSequence, Consumer<LogRecord> replay) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments();
+            // 被快照覆盖的段可能已全部删除，序号需从快照处继续
+            long last = afterSequence;
+            for (int i = 0; i < segments.size(); i++) {
+                last = Math.max(last, replay(segments.get(i), i == segments.size() - 1, afterSequence, replay));
+            }
+            sequence.set(last);
+            durable.set(last);
+            openSegment(last + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover write-ahead log from " + directory, e);
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** 记录交易的当前值；调用方须持有该 ID 的顺序锁，保证同一 ID 的日志顺序与内存一致 */
+    public void put(TransactionRecord transaction) {
+        if (enabled) {
+            append(LogRecord.Operation.PUT, transaction.id(), transaction);
+        }
+    }
+
+    /** 记录删除；顺序要求同 {@link #put} */
+    public void delete(long id) {
+        if (enabled) {
+            append(LogRecord.Operation.DELETE, id, null);
+        }
+    }
+
+    /**
+     * 等待到目前为止入队的全部记录落盘。
+     * 在顺序锁之外调用，等待期间其他写入方可以继续入队并搭上同一次 fsync。
+     */
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        long target = sequence.get();
+        if (durable.get() >= target) {
+            return;
+        }
+        Waiter waiter = new Waiter(target, Thread.currentThread());
+        waiters.add(waiter);
+        while (durable.get() < target) {
+            if (failure != null) {
+                waiters.remove(waiter);
+                throw new UncheckedIOException("Write-ahead log is unavailable", failure);
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    /** 已落盘的最大序号 */
+    public long durableSequence() {
+        return durable.get();
+    }
+
+    /**
+     * 已分配的最大序号。序号在存储变更之后分配，
+     * 因此此刻读到的序号之前的变更都已在存储中可见。
+     */
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    /** 请求刷盘线程在下一次写入前切换到新段，使旧段可以被快照整体覆盖 */
+    public void roll() {
+        rollRequested = true;
+    }
+
+    /**
+     * 删除记录全部不大于 sequence 的段。段的范围由下一段的起始序号确定，
+     * 当前正在写入的段没有后继，不会被删除。
+     */
+    public int truncateBefore(long sequence) {
+        if (!enabled) {
+            return 0;
+        }
+        int deleted = 0;
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (firstSequence(segments.get(i + 1)) > sequence + 1) {
+                    break;
+                }
+                Files.deleteIfExists(segments.get(i));
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to truncate write-ahead log before sequence {}", sequence, e);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void close() {
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Failed to close write-ahead log segment", e);
+        }
+    }
+
+    private void append(LogRecord.Operation operation, long id, TransactionRecord transaction) {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log is unavailable", failure);
+        }
+        // 编码在调用线程完成，刷盘线程只做拷贝和 fsync
+        long seq = sequence.incrementAndGet();
+        pending.put(seq, encode(seq, operation, id, transaction));
+        LockSupport.unpark(flusher);
+    }
+
+    private static byte[] encode(long seq, LogRecord.Operation operation, long id, TransactionRecord transaction) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeLong(seq);
+            out.writeByte(operation.ordinal());
+            out.writeLong(id);
+            if (transaction != null) {
+                TransactionCodec.write(out, transaction);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(record, HEADER_BYTES, record.length - HEADER_BYTES);
+        ByteBuffer.wrap(record).putInt(record.length - HEADER_BYTES).putInt((int) crc.getValue());
+        return record;
+    }
+
+    private void flushLoop() {
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        long next = durable.get() + 1;
+        while (true) {
+            drain(batch, next);
+            if (batch.isEmpty()) {
+                if (!running && pending.isEmpty()) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                continue;
+            }
+            // 批次未满时再等一个刷盘间隔，让更多写入方搭上这次 fsync
+            if (batch.size() < batchSize && flushIntervalNanos > 0 && running) {
+                LockSupport.parkNanos(flushIntervalNanos);
+                drain(batch, next + batch.size());
+            }
+            try {
+                write(batch);
+            } catch (IOException e) {
+                log.error("Write-ahead log flush failed, rejecting further writes", e);
+                failure = e;
+                signalFlushed();
+                return;
+            }
+            next += batch.size();
+            durable.set(next - 1);
+            batch.clear();
+            signalFlushed();
+        }
+    }
+
+    private void drain(List<byte[]> batch, long next) {
+        byte[] record;
+        while (batch.size() < batchSize && (record = pending.remove(next)) != null) {
+            batch.add(record);
+            next++;
+        }
+    }
+
+    private void write(List<byte[]> batch) throws IOException {
+        if (segmentSize >= segmentBytes || (rollRequested && segmentSize > 0)) {
+            rollRequested = false;
+            segment.force(false);
+            segment.close();
+            openSegment(durable.get() + 1);
+        }
+        int total = 0;
+        for (byte[] record : batch) {
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : batch) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        segmentSize += total;
+    }
+
+    private void signalFlushed() {
+        long flushedUpTo = durable.get();
+        boolean failed = failure != null;
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (failed || waiter.target() <= flushedUpTo) {
+                it.remove();
+                LockSupport.unpark(waiter.thread());
+            }
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    /**
+     * 重放一个段，返回其中最大的序号。
+     * 最后一段末尾不完整或校验失败的记录视为崩溃时未写完，截断后继续；其他位置的损坏直接报错。
+     */
+    private long replay(Path path, boolean last, long afterSequence, Consumer<LogRecord> replay) throws IOException {
+        long maxSequence = 0;
+        long position = 0;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return maxSequence;
+                }
+                byte[] payload;
+                int checksum;
+                try {
+                    checksum = in.readInt();
+                    if (length <= 0 || length > segmentBytes + HEADER_BYTES) {
+                        throw new IOException("Invalid record length " + length);
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32C crc = new CRC32C();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("Checksum mismatch");
+                    }
+                } catch (IOException e) {
+                    if (!last) {
+                        throw new IOException("Corrupt record in " + path + " at offset " + position, e);
+                    }
+                    log.warn("Truncating torn write-ahead log tail in {} at offset {}: {}", path, position, e.toString());
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(position);
+                    }
+                    return maxSequence;
+                }
+                position += HEADER_BYTES + length;
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                long seq = buffer.getLong(0);
+                maxSequence = Math.max(maxSequence, seq);
+                // 快照已覆盖的记录只需跳过
+                if (seq > afterSequence) {
+                    replay.accept(decode(buffer));
+                }
+            }
+        }
+    }
+
+    private record Waiter(long target, Thread thread) {
+    }
+
+    private static LogRecord decode(ByteBuffer in) {
+        long seq = in.getLong();
+        LogRecord.Operation operation = LogRecord.Operation.values()[in.get()];
+        long id = in.getLong();
+        TransactionRecord transaction = operation == LogRecord.Operation.PUT ? TransactionCodec.read(in) : null;
+        return new LogRecord(seq, operation, id, transaction);
+    }
+}
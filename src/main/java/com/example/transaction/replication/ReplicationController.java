@@ -0,0 +1,121 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.store.TransactionStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 主库供从库拉取的复制接口：按序号长轮询变更日志，以及落后过多或首次启动时拉取的全量快照
+ */
+@RestController
+@RequestMapping("/internal/replication")
+@Hidden
+public class ReplicationController {
+
+    /** 快照和写响应中携带的日志序号 */
+    public static final String SEQUENCE_HEADER = "X-Replication-Sequence";
+    public static final String EPOCH_HEADER = "X-Replication-Epoch";
+
+    /**
+     * 一批日志：entries 为各ID在发送时的后像，已删除的交易 transaction 为 null；
+     * reset 表示主库在这批日志中清空过数据，从库应先清空再应用
+     *
+     * @param sequence       这批日志的最后序号
+     * @param leaderSequence 读取这批日志时主库的最新序号，sequence 达到它说明从库在读取的时刻已追上主库
+     */
+    public record Batch(String epoch, long sequence, long leaderSequence, boolean reset, List<Entry> entries) {
+    }
+
+    public record Entry(long id, Transaction transaction) {
+    }
+
+    private final ReplicationLog replicationLog;
+    private final TransactionStore transactions;
+    private final ObjectMapper objectMapper;
+
+    public ReplicationController(ReplicationLog replicationLog, TransactionStore transactions,
+                                 ObjectMapper objectMapper) {
+        this.replicationLog = replicationLog;
+        this.transactions = transactions;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * epoch 与当前不一致或 after 已不在保留范围内时返回 410，从库需重新拉取快照
+     */
+    @GetMapping(path = "/log", produces = "application/json")
+    public Batch log(@RequestParam String epoch, @RequestParam long after,
+                     @RequestParam(defaultValue = "1000") int max,
+                     @RequestParam(defaultValue = "1000") long waitMillis) throws InterruptedException {
+        requireLeader();
+        if (!epoch.equals(replicationLog.epoch())) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Leader has restarted");
+        }
+        ReplicationLog.Segment segment = replicationLog.read(after, max, waitMillis);
+        if (segment == null) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Log position " + after + " is no longer retained");
+        }
+        // 只需发送最后一次清空之后的条目；同一ID在一批中只发送一次当前值
+        long[] ids = segment.ids();
+        int from = ids.length;
+        while (from > 0 && ids[from - 1] != ReplicationLog.RESET) {
+            from--;
+        }
+        Set<Long> unique = new LinkedHashSet<>();
+        for (int k = from; k < ids.length; k++) {
+            unique.add(ids[k]);
+        }
+        List<Entry> entries = new ArrayList<>(unique.size());
+        for (long id : unique) {
+            TransactionRecord current = transactions.get(id);
+            entries.add(new Entry(id, current == null ? null : current.toTransaction()));
+        }
+        // 以读取日志时的最新序号比较：解析条目期间持续有写入时，之后再取的最新序号总会超过本批
+        return new Batch(replicationLog.epoch(), segment.sequence(), segment.head(), from > 0, entries);
+    }
+
+    /**
+     * 以 NDJSON 流式输出全部交易。先记下日志序号再遍历：遍历期间的变更可能部分进入快照，
+     * 它们的序号都更大，从库随后从该序号拉取日志即可修正
+     */
+    @GetMapping(path = "/snapshot")
+    public void snapshot(HttpServletResponse response) throws IOException {
+        requireLeader();
+        long sequence = replicationLog.lastSequence();
+        response.setHeader(SEQUENCE_HEADER, Long.toString(sequence));
+        response.setHeader(EPOCH_HEADER, replicationLog.epoch());
+        response.setContentType("application/x-ndjson");
+        Iterator<TransactionRecord> all = transactions.iterateAfter(0);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            while (all.hasNext()) {
+                generator.writeObject(all.next().toTransaction());
+            }
+            generator.writeRaw('\n');
+        }
+    }
+
+    private void requireLeader() {
+        if (!replicationLog.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This node is not a replication leader");
+        }
+    }
+}
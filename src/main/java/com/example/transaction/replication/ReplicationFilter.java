@@ -0,0 +1,140 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.cluster.ShardClient;
+import com.example.transaction.controller.ConcurrencyLimitFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * 主从复制下的请求分流：
+ * <ul>
+ *     <li>主库在写请求的响应中返回 {@link ReplicationController#SEQUENCE_HEADER}，即写入后的日志序号</li>
+ *     <li>从库把写请求和导入任务查询转发给主库</li>
+ *     <li>从库在本地处理读请求，响应中返回已应用的序号。请求带上序号令牌时先等待本地追上该序号，
+ *     等待超时或本地数据陈旧超过 max-staleness 时转发给主库，保证读己之写和有界的陈旧度</li>
+ *     <li>导入和导出的数据量不设上限，不经从库中转，而是以 307 重定向到主库，由客户端直接与主库流式传输</li>
+ * </ul>
+ * 复制与分片相互独立，同一部署中只应启用其一。在限流之后、分片路由之前执行。
+ */
+@Component
+@Order(ReplicationFilter.ORDER)
+public class ReplicationFilter extends OncePerRequestFilter {
+
+    public static final int ORDER = ConcurrencyLimitFilter.ORDER + 10;
+
+    private static final String BASE = "/api/transactions";
+    private static final String IMPORTS = BASE + "/imports";
+    private static final String IMPORT = BASE + "/import";
+    private static final String EXPORT = BASE + "/export";
+
+    private final ReplicationLog replicationLog;
+    private final Replicator replicator;
+    private final ShardClient client;
+    private final long maxStalenessNanos;
+    private final Duration readWait;
+
+    public ReplicationFilter(ReplicationLog replicationLog, Replicator replicator, ShardClient client,
+                             @Value("${transaction.replication.max-staleness:PT5S}") Duration maxStaleness,
+                             @Value("${transaction.replication.read-wait:PT1S}") Duration readWait) {
+        this.replicationLog = replicationLog;
+        this.replicator = replicator;
+        this.client = client;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.readWait = readWait;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!request.getRequestURI().startsWith(BASE)) {
+            return true;
+        }
+        // 主库需要为从库转发来的写请求返回序号，从库不会收到转发的请求
+        return !replicationLog.isEnabled() && !replicator.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (replicationLog.isEnabled()) {
+            if (read) {
+                chain.doFilter(request, response);
+            } else {
+                leaderWrite(request, response, chain);
+            }
+        } else if (!read || request.getRequestURI().startsWith(IMPORTS)) {
+            forward(request, response);
+        } else {
+            followerRead(request, response, chain);
+        }
+    }
+
+    /**
+     * 响应缓存到处理完成后再写出，此时日志已包含本次写入，返回的序号不会小于它
+     */
+    private void leaderWrite(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            wrapper.setHeader(ReplicationController.SEQUENCE_HEADER, Long.toString(replicationLog.lastSequence()));
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void followerRead(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = request.getHeader(ReplicationController.SEQUENCE_HEADER);
+        if (token != null) {
+            long sequence;
+            try {
+                sequence = Long.parseLong(token.trim());
+            } catch (NumberFormatException e) {
+                sequence = Long.MAX_VALUE;
+            }
+            try {
+                if (!replicator.await(sequence, readWait)) {
+                    forward(request, response);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                forward(request, response);
+                return;
+            }
+        } else if (replicator.stalenessNanos() > maxStalenessNanos) {
+            forward(request, response);
+            return;
+        }
+        response.setHeader(ReplicationController.SEQUENCE_HEADER, Long.toString(replicator.appliedSequence()));
+        chain.doFilter(request, response);
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI();
+        String query = request.getQueryString();
+        String target = path + (query == null ? "" : "?" + query);
+        if (path.equals(IMPORT) || path.equals(EXPORT)) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, replicator.leader() + target);
+            return;
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        client.send(replicator.leader(), HttpMethod.valueOf(request.getMethod()), target,
+                ShardClient.headers(request), body.length == 0 ? null : body).writeTo(response);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.service.TransactionListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 主库的有序变更日志：每次写入、更新和删除按提交顺序分配递增序号，只记下交易ID，
+ * 由 {@link ReplicationController} 发送时再读取存储中的当前值。同一ID的并发变更即使以相反顺序进入日志，
+ * 从库最终应用的也是发送时的最新后像；序号同时作为读己之写的令牌。
+ * <p>
+ * 日志只保留最近 log-capacity 条，落后更多的从库需重新拉取全量快照。
+ * epoch 在每次启动时重新生成，主库重启后从库据此发现序号已重新开始。
+ * <p>
+ * 写入不加锁：序号由原子计数分配，每个槽位在写入ID后以自己的序号发布，读取方只读到连续已发布的前缀。
+ * 长轮询的读取方在 ReentrantLock 的条件上等待，虚拟线程等待期间不占住载体线程；
+ * 只有存在等待者时写入方才加锁唤醒。
+ */
+@Component
+public class ReplicationLog implements TransactionListener {
+
+    /** 清空全部数据的条目 */
+    static final long RESET = Long.MIN_VALUE;
+
+    /**
+     * 一段连续的日志：ids 为 (after, sequence] 范围内的条目
+     *
+     * @param head 读取时已分配的最大序号；sequence 达到它说明读取方在这一刻已追上
+     */
+    record Segment(long[] ids, long sequence, long head) {
+    }
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+    /** 槽位正在改写 */
+    private static final long WRITING = -1;
+
+    private final boolean enabled;
+    private final long[] ids;
+    /** 各槽位已发布的序号，与 ids 一一对应 */
+    private final long[] published;
+    private final String epoch = UUID.randomUUID().toString();
+    /** 已分配的最大序号 */
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    public ReplicationLog(@Value("${transaction.replication.role:none}") ReplicationRole role,
+                          @Value("${transaction.replication.log-capacity:1048576}") int capacity,
+                          MeterRegistry registry) {
+        this.enabled = role == ReplicationRole.LEADER;
+        this.ids = new long[enabled ? capacity : 0];
+        this.published = new long[ids.length];
+        if (enabled) {
+            Gauge.builder("transaction.replication.sequence", this, ReplicationLog::lastSequence)
+                    .description("Sequence number of the latest mutation in the replication log")
+                    .register(registry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    /** 已分配的最大序号；写请求返回时其条目已分配，令牌不会小于它 */
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    /** 正在长轮询等待的读取方数 */
+    int waiting() {
+        return waiters.get();
+    }
+
+    @Override
+    public void inserted(TransactionRecord record) {
+        append(record.id());
+    }
+
+    @Override
+    public void updated(TransactionRecord previous, TransactionRecord current) {
+        append(current.id());
+    }
+
+    @Override
+    public void removed(TransactionRecord removed) {
+        append(removed.id());
+    }
+
+    @Override
+    public void reset() {
+        append(RESET);
+    }
+
+    private void append(long id) {
+        if (!enabled) {
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        int slot = (int) (seq % ids.length);
+        // 上一轮占用该槽位的写入方尚未发布时等它完成；只有日志整整绕一圈时才会发生
+        while ((long) PUBLISHED.getAcquire(published, slot) < seq - ids.length) {
+            Thread.onSpinWait();
+        }
+        // 先作废槽位再改写，读取方据此识别被覆盖的条目
+        PUBLISHED.setOpaque(published, slot, WRITING);
+        VarHandle.storeStoreFence();
+        ids[slot] = id;
+        PUBLISHED.setRelease(published, slot, seq);
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 读取 after 之后最多 max 条日志；没有新日志时最多等待 waitMillis。
+     *
+     * @return after 已不在保留范围内（或超过当前序号）时返回 null，从库需重新拉取快照
+     */
+    Segment read(long after, int max, long waitMillis) throws InterruptedException {
+        if (sequence.get() == after && waitMillis > 0) {
+            awaitAppend(after, TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        }
+        long last = sequence.get();
+        if (after > last || after < last - ids.length) {
+            return null;
+        }
+        // 只取连续已发布的前缀；分配了序号但尚未写完的条目留到下一次读取
+        int limit = (int) Math.min(max, last - after);
+        long[] segment = new long[limit];
+        int count = 0;
+        while (count < limit) {
+            long seq = after + 1 + count;
+            int slot = (int) (seq % ids.length);
+            long first = (long) PUBLISHED.getAcquire(published, slot);
+            long id = ids[slot];
+            VarHandle.loadLoadFence();
+            long second = (long) PUBLISHED.getAcquire(published, slot);
+            if (first == seq && second == seq) {
+                segment[count++] = id;
+                continue;
+            }
+            if (first >= seq || second > seq || sequence.get() - ids.length >= seq) {
+                // 读取期间该位置已被下一轮的条目覆盖
+                return null;
+            }
+            break;
+        }
+        return new Segment(count == limit ? segment : Arrays.copyOf(segment, count), after + count, last);
+    }
+
+    private void awaitAppend(long after, long nanos) throws InterruptedException {
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            while (sequence.get() == after && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+}
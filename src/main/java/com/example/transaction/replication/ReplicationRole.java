@@ -0,0 +1,13 @@
+package com.example.transaction.replication;
+
+/**
+ * 节点在主从复制中的角色
+ */
+public enum ReplicationRole {
+    /** 不参与复制 */
+    NONE,
+    /** 接受写入并向从库提供变更日志 */
+    LEADER,
+    /** 从主库拉取日志并提供读取，写请求转发给主库 */
+    FOLLOWER
+}
@@ -0,0 +1,257 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.service.TransactionServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 从库的复制线程：启动时拉取主库快照，之后按序号长轮询主库的变更日志并应用到本地存储。
+ * 主库重启或日志已不保留所需位置时重新拉取快照。
+ * <p>
+ * 每次应用完追上主库读取日志时的最新序号就记下时间，距此的时长即数据的陈旧程度；
+ * 读请求据此判断能否在本地处理，带序号令牌的读请求可等待本地追上该序号；
+ * 等待使用 ReentrantLock 的条件，请求在虚拟线程上等待时不占住载体线程。
+ * 拉取快照期间本地数据不完整，此时不算追上，也不满足任何令牌，读请求都转发给主库。
+ */
+@Component
+public class Replicator {
+
+    private static final Logger log = LoggerFactory.getLogger(Replicator.class);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    /** 尚未加载或正在重新加载快照 */
+    private static final long UNLOADED = -1;
+
+    private final boolean enabled;
+    private final String leader;
+    private final TransactionServiceImpl service;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Duration pollWait;
+    private final HttpClient client;
+
+    private volatile boolean running;
+    private Thread thread;
+    private String epoch;
+    /** 已应用的主库日志序号 */
+    private volatile long applied = UNLOADED;
+    /** 最近一次得知的主库最新序号 */
+    private volatile long leaderSequence;
+    /** 最近一次追上主库的时间（System.nanoTime），尚未追上过时为 0 */
+    private volatile long caughtUpAt;
+    private final ReentrantLock progressLock = new ReentrantLock();
+    private final Condition progressed = progressLock.newCondition();
+
+    public Replicator(@Value("${transaction.replication.role:none}") ReplicationRole role,
+                      @Value("${transaction.replication.leader:}") String leader,
+                      @Value("${transaction.replication.batch-size:1000}") int batchSize,
+                      @Value("${transaction.replication.poll-wait:PT1S}") Duration pollWait,
+                      TransactionServiceImpl service, ObjectMapper objectMapper, MeterRegistry registry) {
+        this.enabled = role == ReplicationRole.FOLLOWER;
+        if (enabled && leader.isBlank()) {
+            throw new IllegalArgumentException("transaction.replication.leader is required for followers");
+        }
+        this.leader = leader.endsWith("/") ? leader.substring(0, leader.length() - 1) : leader;
+        this.batchSize = batchSize;
+        this.pollWait = pollWait;
+        this.service = service;
+        this.objectMapper = objectMapper;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        if (enabled) {
+            Gauge.builder("transaction.replication.lag", this, Replicator::lag)
+                    .description("Log entries the follower has yet to apply from the leader")
+                    .register(registry);
+            TimeGauge.builder("transaction.replication.staleness", this, TimeUnit.NANOSECONDS,
+                            Replicator::stalenessNanos)
+                    .description("Time since the follower was last fully caught up with the leader")
+                    .register(registry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String leader() {
+        return leader;
+    }
+
+    public long appliedSequence() {
+        return applied;
+    }
+
+    public long lag() {
+        return Math.max(0, leaderSequence - applied);
+    }
+
+    /** 尚未追上过主库时为 Long.MAX_VALUE */
+    public long stalenessNanos() {
+        long at = caughtUpAt;
+        return at == 0 ? Long.MAX_VALUE : System.nanoTime() - at;
+    }
+
+    /**
+     * 等待本地应用到 sequence，最多等待 timeout
+     *
+     * @return 是否已应用到该序号
+     */
+    public boolean await(long sequence, Duration timeout) throws InterruptedException {
+        // 加载快照期间 applied 为 UNLOADED，任何令牌都不满足
+        long target = Math.max(sequence, 0);
+        if (applied >= target) {
+            return true;
+        }
+        long nanos = timeout.toNanos();
+        progressLock.lock();
+        try {
+            while (applied < target) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = progressed.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            progressLock.unlock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (epoch == null) {
+                    bootstrap();
+                }
+                poll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Replication from {} failed, retrying: {}", leader, e.toString());
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 拉取全量快照替换本地数据，之后从快照对应的序号继续拉取日志
+     */
+    private void bootstrap() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> response = client.send(
+                HttpRequest.newBuilder(URI.create(leader + "/internal/replication/snapshot")).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Snapshot request returned " + response.statusCode());
+        }
+        long sequence = Long.parseLong(response.headers().firstValue(ReplicationController.SEQUENCE_HEADER)
+                .orElseThrow());
+        String snapshotEpoch = response.headers().firstValue(ReplicationController.EPOCH_HEADER).orElseThrow();
+        long count = 0;
+        // 清空和加载期间本地数据不完整，先让读请求都转发给主库
+        caughtUpAt = 0;
+        applied = UNLOADED;
+        service.clearTransactions();
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                if (!line.isBlank()) {
+                    Transaction transaction = objectMapper.readValue(line, Transaction.class);
+                    service.applyReplicated(transaction.getId(), transaction);
+                    count++;
+                }
+            }
+        }
+        epoch = snapshotEpoch;
+        advance(sequence, sequence);
+        log.info("Loaded {} transactions from the leader snapshot at sequence {}", count, sequence);
+    }
+
+    private void poll() throws IOException, InterruptedException {
+        URI uri = URI.create(leader + "/internal/replication/log?epoch=" + epoch + "&after=" + applied
+                + "&max=" + batchSize + "&waitMillis=" + pollWait.toMillis());
+        HttpResponse<InputStream> response = client.send(
+                HttpRequest.newBuilder(uri).timeout(pollWait.plusSeconds(10)).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 410) {
+                log.info("Leader log position {} is no longer available, reloading the snapshot", applied);
+                epoch = null;
+                return;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Log request returned " + response.statusCode());
+            }
+            ReplicationController.Batch batch = objectMapper.readValue(body, ReplicationController.Batch.class);
+            if (batch.reset()) {
+                service.clearTransactions();
+            }
+            for (ReplicationController.Entry entry : batch.entries()) {
+                service.applyReplicated(entry.id(), entry.transaction());
+            }
+            advance(batch.sequence(), batch.leaderSequence());
+        }
+    }
+
+    private void advance(long sequence, long latest) {
+        leaderSequence = latest;
+        progressLock.lock();
+        try {
+            applied = sequence;
+            progressed.signalAll();
+        } finally {
+            progressLock.unlock();
+        }
+        if (sequence >= latest) {
+            caughtUpAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 余额台账：按账户分片，由写入路径以增量方式维护，金额以分计。
+ * 每个账户一个独立的 AtomicLong，取款的校验与扣款在同一次 CAS 中完成，
+ * 不同账户之间互不竞争，记账过程不分配对象。
+ */
+@Component
+public class BalanceLedger {
+
+    /** 未指定来源账户的交易记入默认账户 */
+    public static final String DEFAULT_ACCOUNT = "default";
+
+    private final ConcurrentHashMap<String, AtomicLong> balances = new ConcurrentHashMap<>();
+
+    /** 每次余额变动递增，供校验判断扫描期间是否有并发写入；用 LongAdder 避免成为跨账户的竞争点 */
+    private final LongAdder modifications = new LongAdder();
+
+    public long getBalance(String account) {
+        AtomicLong cell = balances.get(accountOf(account));
+        return cell == null ? 0 : cell.get();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new HashMap<>();
+        balances.forEach((account, cell) -> result.put(account, cell.get()));
+        return result;
+    }
+
+    public long modifications() {
+        return modifications.sum();
+    }
+
+    /**
+     * 原子地校验并扣款：余额不足时不做任何修改并返回 false。
+     */
+    public boolean tryDebit(String account, long amount) {
+        AtomicLong cell = cell(account);
+        while (true) {
+            long current = cell.get();
+            if (amount > current) {
+                return false;
+            }
+            if (cell.compareAndSet(current, current - amount)) {
+                modifications.increment();
+                return true;
+            }
+        }
+    }
+
+    /** 记入一笔新交易的余额影响 */
+    public void apply(TransactionRecord transaction) {
+        add(transaction.sourceAccount(), signedAmount(transaction));
+    }
+
+    /** 撤销一笔已存储交易的余额影响 */
+    public void revert(TransactionRecord transaction) {
+        add(transaction.sourceAccount(), -signedAmount(transaction));
+    }
+
+    /** 以新值替换旧值；账户未变时只记入差额 */
+    public void replace(TransactionRecord previous, TransactionRecord current) {
+        if (accountOf(previous.sourceAccount()).equals(accountOf(current.sourceAccount()))) {
+            add(current.sourceAccount(), signedAmount(current) - signedAmount(previous));
+        } else {
+            revert(previous);
+            apply(current);
+        }
+    }
+
+    /**
+     * 以新值替换旧值，替换造成的余额减少与 {@link #tryDebit} 一样先校验：余额不足时不做任何修改并返回 false。
+     * 账户变更时新账户记入新值、旧账户撤销旧值，两边各自校验
+     */
+    public boolean tryReplace(TransactionRecord previous, TransactionRecord current) {
+        String from = accountOf(previous.sourceAccount());
+        String to = accountOf(current.sourceAccount());
+        if (from.equals(to)) {
+            return tryAdd(to, signedAmount(current) - signedAmount(previous));
+        }
+        if (!tryAdd(to, signedAmount(current))) {
+            return false;
+        }
+        if (!tryAdd(from, -signedAmount(previous))) {
+            add(to, -signedAmount(current));
+            return false;
+        }
+        return true;
+    }
+
+    public void reset() {
+        balances.clear();
+        modifications.increment();
+    }
+
+    private void add(String account, long delta) {
+        if (delta != 0) {
+            cell(account).addAndGet(delta);
+            modifications.increment();
+        }
+    }
+
+    private boolean tryAdd(String account, long delta) {
+        if (delta < 0) {
+            return tryDebit(account, -delta);
+        }
+        add(account, delta);
+        return true;
+    }
+
+    private AtomicLong cell(String account) {
+        AtomicLong cell = balances.get(accountOf(account));
+        return cell != null ? cell : balances.computeIfAbsent(accountOf(account), k -> new AtomicLong());
+    }
+
+    static String accountOf(String account) {
+        return account == null ? DEFAULT_ACCOUNT : account;
+    }
+
+    /**
+     * 交易对余额的影响：收入类为正，支出类为负，转账不影响余额。
+     */
+    static long signedAmount(TransactionRecord t) {
+        if (t.type() == null) {
+            return 0;
+        }
+        switch (t.type()) {
+            case DEPOSIT:
+            case INTEREST_INCOME:
+            case FEE_INCOME:
+            case REFUND:
+                return t.amount();
+            case WITHDRAWAL:
+            case WITHDRAW:
+            case INTEREST_EXPENSE:
+            case FEE_EXPENSE:
+                return -t.amount();
+            case TRANSFER:
+            default:
+                return 0;
+        }
+    }
+}
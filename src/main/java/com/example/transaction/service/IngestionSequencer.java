@@ -0,0 +1,180 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionRecord;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 顺序化的单笔创建：请求进入有界环形队列，由单个定序线程按到达顺序依次校验、扣款、分配ID并写入，
+ * 每次唤醒最多处理一批，整批处理完后再统一完成各调用方的 future。
+ * <p>
+ * 同一时刻只有定序线程在创建交易，重复ID和余额校验的结果由入队顺序唯一确定；
+ * 定序线程不等待落盘，调用方拿到结果后自行等待日志组提交。
+ * 队列满时调用方退避重试，形成背压。
+ */
+@Component
+public class IngestionSequencer {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionSequencer.class);
+
+    public enum Mode {
+        /** 调用方线程直接创建 */
+        CONCURRENT,
+        /** 经定序线程创建 */
+        SEQUENCED
+    }
+
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final boolean enabled;
+    private final RingBuffer<Pending> ring;
+    private final Pending[] batch;
+    private final TransactionRecord[] results;
+    private final RuntimeException[] failures;
+
+    private volatile Thread sequencer;
+    private volatile boolean running;
+    /** 定序线程即将休眠；生产者只在此时唤醒它 */
+    private volatile boolean sleeping;
+
+    public IngestionSequencer(@Value("${transaction.ingestion.mode:concurrent}") Mode mode,
+                              @Value("${transaction.ingestion.ring-size:4096}") int ringSize,
+                              @Value("${transaction.ingestion.batch-size:256}") int batchSize) {
+        this.enabled = mode == Mode.SEQUENCED;
+        this.ring = enabled ? new RingBuffer<>(ringSize) : null;
+        this.batch = new Pending[enabled ? batchSize : 0];
+        this.results = new TransactionRecord[batch.length];
+        this.failures = new RuntimeException[batch.length];
+    }
+
+    /** 调用方直接创建的实例，供直接构造服务的测试使用 */
+    public static IngestionSequencer direct() {
+        return new IngestionSequencer(Mode.CONCURRENT, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 启动定序线程，handler 在该线程上逐条执行；未开启时不做任何事
+     */
+    public void start(Function<Transaction, TransactionRecord> handler) {
+        if (!enabled || sequencer != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(() -> sequenceLoop(handler), "ingest-sequencer");
+        thread.setDaemon(true);
+        sequencer = thread;
+        thread.start();
+        log.info("Sequenced ingestion started with ring size {} and batch size {}", ring.capacity(), batch.length);
+    }
+
+    /**
+     * 入队并等待定序线程处理，返回写入的记录；处理中的异常原样抛出
+     */
+    public TransactionRecord submit(Transaction transaction) {
+        if (!running) {
+            throw new RejectedExecutionException("Ingestion sequencer is not running");
+        }
+        Pending pending = new Pending(transaction);
+        while (!ring.offer(pending)) {
+            if (!running) {
+                throw new RejectedExecutionException("Ingestion sequencer is not running");
+            }
+            LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+        }
+        if (sleeping) {
+            LockSupport.unpark(sequencer);
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Thread thread = sequencer;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sequenceLoop(Function<Transaction, TransactionRecord> handler) {
+        while (true) {
+            int size = 0;
+            Pending pending;
+            while (size < batch.length && (pending = ring.poll()) != null) {
+                batch[size++] = pending;
+            }
+            if (size == 0) {
+                if (!running && ring.isEmpty()) {
+                    return;
+                }
+                idle();
+                continue;
+            }
+            for (int i = 0; i < size; i++) {
+                try {
+                    results[i] = handler.apply(batch[i].transaction);
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (failures[i] != null) {
+                    batch[i].result.completeExceptionally(failures[i]);
+                } else {
+                    batch[i].result.complete(results[i]);
+                }
+                batch[i] = null;
+                results[i] = null;
+                failures[i] = null;
+            }
+        }
+    }
+
+    private void idle() {
+        sleeping = true;
+        // 设置标志后再检查一次，避免与生产者的入队交错而错过唤醒
+        if (ring.isEmpty() && running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        } else {
+            Thread.onSpinWait();
+        }
+        sleeping = false;
+    }
+
+    private static final class Pending {
+        private final Transaction transaction;
+        private final CompletableFuture<TransactionRecord> result = new CompletableFuture<>();
+
+        Pending(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+}
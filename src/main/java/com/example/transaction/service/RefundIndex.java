@@ -0,0 +1,115 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 退款索引：原始交易ID到累计退款金额和退款交易ID的映射，金额以分计。
+ * 每个原始交易一个不可变条目，通过 ConcurrentHashMap.compute 整体替换，
+ * 额度校验与累计在同一次原子更新中完成，同一原始交易的并发退款不会超额，不同原始交易之间互不竞争。
+ */
+@Component
+public class RefundIndex {
+
+    /** 校验失败时 {@link #reserve} 的返回值 */
+    public static final long REJECTED = -1;
+
+    /**
+     * @param refunded  累计退款金额，单位为分
+     * @param refundIds 已写入的退款交易ID
+     */
+    public record Refunds(long refunded, long[] refundIds) {
+        static final Refunds NONE = new Refunds(0, new long[0]);
+    }
+
+    private final ConcurrentHashMap<Long, Refunds> refunds = new ConcurrentHashMap<>();
+
+    public Refunds get(long originalId) {
+        Refunds entry = refunds.get(originalId);
+        return entry == null ? Refunds.NONE : entry;
+    }
+
+    /**
+     * 原子地校验并占用退款额度，退款交易ID在写入后由 {@link #link} 补上
+     *
+     * @return 占用后剩余的可退金额；超出原始金额时不做修改并返回 {@link #REJECTED}
+     */
+    public long reserve(long originalId, long originalAmount, long amount) {
+        long[] remaining = {REJECTED};
+        refunds.compute(originalId, (id, entry) -> {
+            Refunds current = entry == null ? Refunds.NONE : entry;
+            if (amount > originalAmount - current.refunded()) {
+                return entry;
+            }
+            remaining[0] = originalAmount - current.refunded() - amount;
+            return new Refunds(current.refunded() + amount, current.refundIds());
+        });
+        return remaining[0];
+    }
+
+    /** 为已占用额度的退款记下交易ID */
+    public void link(TransactionRecord refund) {
+        refunds.computeIfPresent(refund.originalTransactionId(),
+                (id, entry) -> new Refunds(entry.refunded(), append(entry.refundIds(), refund.id())));
+    }
+
+    /** 撤销一笔已占用额度但未能写入的退款 */
+    public void release(long originalId, long amount) {
+        refunds.computeIfPresent(originalId, (id, entry) -> {
+            long refunded = entry.refunded() - amount;
+            return refunded == 0 && entry.refundIds().length == 0 ? null : new Refunds(refunded, entry.refundIds());
+        });
+    }
+
+    /** 不做额度校验地记入一笔退款，用于导入、恢复和更新 */
+    public void add(TransactionRecord refund) {
+        refunds.compute(refund.originalTransactionId(), (id, entry) -> {
+            Refunds current = entry == null ? Refunds.NONE : entry;
+            return new Refunds(current.refunded() + refund.amount(), append(current.refundIds(), refund.id()));
+        });
+    }
+
+    /**
+     * 撤销一笔退款的额度和ID
+     *
+     * @return 撤销后的累计退款金额；原始交易已不在索引中时返回 {@link #REJECTED}
+     */
+    public long remove(TransactionRecord refund) {
+        long[] refunded = {REJECTED};
+        refunds.computeIfPresent(refund.originalTransactionId(), (id, entry) -> {
+            long[] ids = entry.refundIds();
+            int at = 0;
+            while (at < ids.length && ids[at] != refund.id()) {
+                at++;
+            }
+            if (at == ids.length) {
+                return entry;
+            }
+            long[] rest = new long[ids.length - 1];
+            System.arraycopy(ids, 0, rest, 0, at);
+            System.arraycopy(ids, at + 1, rest, at, rest.length - at);
+            refunded[0] = entry.refunded() - refund.amount();
+            // 还有已占用额度、尚未写入的退款时保留条目
+            return rest.length == 0 && refunded[0] == 0 ? null : new Refunds(refunded[0], rest);
+        });
+        return refunded[0];
+    }
+
+    /** 原始交易被删除时丢弃其条目 */
+    public void removeOriginal(long originalId) {
+        refunds.remove(originalId);
+    }
+
+    public void clear() {
+        refunds.clear();
+    }
+
+    private static long[] append(long[] ids, long id) {
+        long[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.transaction.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界的多生产者、单消费者环形队列。
+ * <p>
+ * 每个槽位带一个序号：等于写入位置时可写，等于写入位置 + 1 时可读。
+ * 生产者只在写入位置上 CAS 竞争，槽位的发布和回收都是一次 release 写，没有锁。
+ */
+final class RingBuffer<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /** 只由消费者线程读写 */
+    private long head;
+
+    RingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** 队列满时返回 false */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long available = sequences.getAcquire(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** 只能由消费者线程调用；队列空或下一个槽位尚未发布时返回 null */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.getAcquire(index) != head + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        slots[index] = null;
+        sequences.setRelease(index, head + slots.length);
+        head++;
+        return element;
+    }
+
+    /** 只能由消费者线程调用 */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionRecord;
+
+/**
+ * 存储变更通知。在变更写入存储之后、调用方返回之前同步调用，实现不应阻塞或抛出异常
+ */
+public interface TransactionListener {
+
+    default void inserted(TransactionRecord record) {
+    }
+
+    default void updated(TransactionRecord previous, TransactionRecord current) {
+    }
+
+    default void removed(TransactionRecord removed) {
+    }
+
+    /** 存储被整体清空或重建 */
+    default void reset() {
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.store.TransactionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务层指标。所有计时器和计数器在启动时按 操作 × 交易类型、拒绝原因 预先注册，
+ * 热路径上只做数组下标查找和一次 record/increment，不查注册表、不拼标签、不分配对象；
+ * 计时用调用方取得的 System.nanoTime() 差值，不使用会分配的 Timer.Sample。
+ * <p>
+ * "transactions" 缓存的命中、未命中和淘汰由 Spring Boot 对 Caffeine 缓存的自动绑定提供
+ * （cache.gets、cache.evictions 等，需 recordStats），这里不重复注册。
+ */
+@Component
+public class TransactionMetrics {
+
+    /** 被计时的服务操作；TYPED 之前的操作按交易类型分别计时 */
+    public enum Operation {
+        CREATE, UPDATE, DELETE,
+        CREATE_BATCH, IMPORT, GET, LIST, FIND, PURGE, STATS;
+
+        private static final int TYPED = DELETE.ordinal() + 1;
+
+        boolean typed() {
+            return ordinal() < TYPED;
+        }
+    }
+
+    /** 校验拒绝的原因 */
+    public enum Rejection {
+        DUPLICATE_ID, MISSING_TYPE, INVALID_AMOUNT, INSUFFICIENT_BALANCE,
+        MISSING_TARGET_ACCOUNT, MISSING_ORIGINAL_TRANSACTION, SYSTEM_INITIATION,
+        ORIGINAL_NOT_FOUND, ORIGINAL_NOT_REFUNDABLE, REFUND_EXCEEDS_ORIGINAL,
+        REFUND_ACCOUNT_MISMATCH, REFUND_CHANGED
+    }
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    /** 类型未知（如缺少类型而被拒绝）的调用记在最后一格 */
+    private static final int UNKNOWN_TYPE = TYPES.length;
+    private static final String NO_TYPE = "none";
+
+    private final MeterRegistry registry;
+    private final Timer[][] operations = new Timer[Operation.values().length][];
+    private final Counter[] rejections = new Counter[Rejection.values().length];
+    private final Timer ledgerBalance;
+    private final Timer recomputeBalances;
+    private final Timer snapshot;
+    private final AtomicLong recoveryMillis = new AtomicLong();
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Operation operation : Operation.values()) {
+            String name = operation.name().toLowerCase(Locale.ROOT);
+            if (operation.typed()) {
+                Timer[] timers = new Timer[TYPES.length + 1];
+                for (TransactionType type : TYPES) {
+                    timers[type.ordinal()] = timer(name, type.name());
+                }
+                timers[UNKNOWN_TYPE] = timer(name, NO_TYPE);
+                operations[operation.ordinal()] = timers;
+            } else {
+                operations[operation.ordinal()] = new Timer[]{timer(name, NO_TYPE)};
+            }
+        }
+        for (Rejection rejection : Rejection.values()) {
+            rejections[rejection.ordinal()] = Counter.builder("transaction.rejections")
+                    .description("Transactions rejected by validation")
+                    .tag("reason", rejection.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        this.ledgerBalance = Timer.builder("transaction.balance")
+                .description("Time to compute account balances")
+                .tag("source", "ledger")
+                .register(registry);
+        this.recomputeBalances = Timer.builder("transaction.balance")
+                .description("Time to compute account balances")
+                .tag("source", "recompute")
+                .register(registry);
+        this.snapshot = Timer.builder("transaction.snapshot")
+                .description("Time spent writing a store snapshot")
+                .register(registry);
+        // 重启后可对外服务前的恢复耗时，随数据量增长需持续关注
+        TimeGauge.builder("transaction.recovery.duration", recoveryMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time spent loading the snapshot and replaying the write-ahead log at startup")
+                .register(registry);
+    }
+
+    /**
+     * 注册存储规模和内存估算的仪表，仪表只在被采集时读取存储
+     */
+    public void bindStore(TransactionStore store) {
+        Gauge.builder("transaction.store.size", store, TransactionStore::size)
+                .description("Number of stored transactions")
+                .register(registry);
+        Gauge.builder("transaction.store.memory", store, TransactionStore::memoryEstimate)
+                .description("Estimated memory held by the transaction store")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /** 记录一次不区分类型的操作，startNanos 为 System.nanoTime() */
+    public void record(Operation operation, long startNanos) {
+        operations[operation.ordinal()][0].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** 记录一次按类型计时的操作；type 为 null 时记入 none */
+    public void record(Operation operation, TransactionType type, long startNanos) {
+        Timer[] timers = operations[operation.ordinal()];
+        Timer timer = timers.length == 1 ? timers[0] : timers[type == null ? UNKNOWN_TYPE : type.ordinal()];
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void reject(Rejection rejection) {
+        rejections[rejection.ordinal()].increment();
+    }
+
+    public void recordLedgerBalance(long startNanos) {
+        ledgerBalance.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRecomputeBalances(long startNanos) {
+        recomputeBalances.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSnapshot(long elapsedNanos) {
+        snapshot.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRecovery(long millis) {
+        recoveryMillis.set(millis);
+    }
+
+    private Timer timer(String operation, String type) {
+        return Timer.builder("transaction.service")
+                .description("Latency of transaction service operations")
+                .tag("operation", operation)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.transaction.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 数据保留任务：配置了 transaction.retention.max-age 时，定期清除超期交易并丢弃对应的时间桶。
+ */
+@Component
+public class TransactionRetentionJob {
+
+    private final TransactionService transactionService;
+    private final Duration maxAge;
+
+    public TransactionRetentionJob(TransactionService transactionService,
+                                   @Value("${transaction.retention.max-age:#{null}}") Duration maxAge) {
+        this.transactionService = transactionService;
+        this.maxAge = maxAge;
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.retention.check-interval:PT1H}",
+               initialDelayString = "${transaction.retention.check-interval:PT1H}")
+    public void purgeExpired() {
+        if (maxAge != null) {
+            transactionService.purgeTransactionsBefore(LocalDateTime.now().minus(maxAge));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预聚合统计：按小时分桶，桶内按 类型 × 状态 各一个计数和金额合计单元，由写入路径增量维护。
+ * <p>
+ * 单元用 LongAdder，并发写入同一小时同一类型时互不竞争；单元在首次写入时才分配。
+ * 查询只遍历范围内的小时桶，按天统计时把 24 个小时桶相加，耗时与桶数成正比而与记录数无关。
+ */
+@Component
+public class TransactionRollups {
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final long HOUR_SECONDS = 3600;
+
+    private final ConcurrentSkipListMap<Long, Hour> hours = new ConcurrentSkipListMap<>();
+
+    public void add(TransactionRecord transaction) {
+        adjust(transaction, 1);
+    }
+
+    public void remove(TransactionRecord transaction) {
+        adjust(transaction, -1);
+    }
+
+    public void update(TransactionRecord previous, TransactionRecord current) {
+        if (previous.type() == current.type() && previous.status() == current.status()
+                && previous.amount() == current.amount() && sameHour(previous, current)) {
+            return;
+        }
+        remove(previous);
+        add(current);
+    }
+
+    /**
+     * 时间范围 [from, to) 内的汇总，按窗口起点、类型、状态排序，不含计数为 0 的组合。
+     * 边界按小时取整：from 所在的小时整体计入；边界为 null 表示不限制，type/status 为 null 表示不过滤。
+     */
+    public List<TransactionStats> query(LocalDateTime from, LocalDateTime to, TransactionStats.Granularity granularity,
+                                        TransactionType type, TransactionStatus status) {
+        ConcurrentNavigableMap<Long, Hour> range = hours;
+        if (from != null) {
+            range = range.tailMap(hourOf(from), true);
+        }
+        if (to != null) {
+            range = range.headMap(hourOf(to.minusNanos(1)), true);
+        }
+        long windowSeconds = granularity == TransactionStats.Granularity.DAY ? 24 * HOUR_SECONDS : HOUR_SECONDS;
+        // 窗口起点 -> 单元下标 -> {计数, 金额}
+        TreeMap<Long, long[][]> windows = new TreeMap<>();
+        for (Map.Entry<Long, Hour> entry : range.entrySet()) {
+            long window = Math.floorDiv(entry.getKey() * HOUR_SECONDS, windowSeconds) * windowSeconds;
+            long[][] totals = null;
+            AtomicReferenceArray<Cell> cells = entry.getValue().cells;
+            for (int i = 0; i < cells.length(); i++) {
+                Cell cell = cells.get(i);
+                if (cell == null || !matches(i, type, status)) {
+                    continue;
+                }
+                if (totals == null) {
+                    totals = windows.computeIfAbsent(window, k -> new long[cells.length()][2]);
+                }
+                totals[i][0] += cell.count.sum();
+                totals[i][1] += cell.amount.sum();
+            }
+        }
+        List<TransactionStats> result = new ArrayList<>();
+        windows.forEach((window, totals) -> {
+            LocalDateTime windowStart = LocalDateTime.ofEpochSecond(window, 0, ZoneOffset.UTC);
+            for (int i = 0; i < totals.length; i++) {
+                if (totals[i][0] > 0) {
+                    result.add(new TransactionStats(windowStart, TYPES[i / STATUSES.length],
+                            STATUSES[i % STATUSES.length], totals[i][0], TransactionRecord.toDecimal(totals[i][1])));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 丢弃 cutoff 所在小时之前的所有桶，返回丢弃的桶数；调用方需已删除这些时间段内的交易
+     */
+    public int evictBefore(LocalDateTime cutoff) {
+        ConcurrentNavigableMap<Long, Hour> expired = hours.headMap(hourOf(cutoff), false);
+        int evicted = expired.size();
+        expired.clear();
+        return evicted;
+    }
+
+    public void clear() {
+        hours.clear();
+    }
+
+    private void adjust(TransactionRecord transaction, int sign) {
+        if (transaction.timestamp() == null || transaction.type() == null || transaction.status() == null) {
+            return;
+        }
+        long hour = hourOf(transaction.timestamp());
+        Hour bucket = hours.get(hour);
+        if (bucket == null) {
+            if (sign < 0) {
+                // 所在小时已被淘汰
+                return;
+            }
+            bucket = hours.computeIfAbsent(hour, k -> new Hour());
+        }
+        Cell cell = bucket.cell(transaction.type().ordinal() * STATUSES.length + transaction.status().ordinal());
+        cell.count.add(sign);
+        cell.amount.add(sign * transaction.amount());
+    }
+
+    private static boolean matches(int cell, TransactionType type, TransactionStatus status) {
+        return (type == null || cell / STATUSES.length == type.ordinal())
+                && (status == null || cell % STATUSES.length == status.ordinal());
+    }
+
+    private static boolean sameHour(TransactionRecord a, TransactionRecord b) {
+        return a.timestamp() != null && b.timestamp() != null && hourOf(a.timestamp()) == hourOf(b.timestamp());
+    }
+
+    private static long hourOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), HOUR_SECONDS);
+    }
+
+    private static final class Hour {
+        private final AtomicReferenceArray<Cell> cells = new AtomicReferenceArray<>(TYPES.length * STATUSES.length);
+
+        Cell cell(int index) {
+            Cell cell = cells.get(index);
+            if (cell == null) {
+                Cell created = new Cell();
+                cell = cells.compareAndExchange(index, null, created);
+                if (cell == null) {
+                    cell = created;
+                }
+            }
+            return cell;
+        }
+    }
+
+    private static final class Cell {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amount = new LongAdder();
+    }
+}
@@ -1,13 +1,45 @@
 package com.example.transaction.service;
 
+import com.example.transaction.model.BatchItemResult;
 import com.example.transaction.model.Page;
 import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
 public interface TransactionService {
     Transaction createTransaction(Transaction transaction);
+    List<BatchItemResult> createTransactions(List<Transaction> transactions);
+    /**
+     * 导入历史交易：保留提供的ID和时间戳，按原样入账
+     */
+    List<BatchItemResult> importTransactions(List<Transaction> transactions);
     Optional<Transaction> getTransactionById(Long id);
     Page<Transaction> getAllTransactions(int page, int size);
+    Page<Transaction> getTransactionsAfter(long afterId, int size);
+    Page<Transaction> findTransactions(TransactionFilter filter, Long afterId, int page, int size);
+    /**
+     * 按ID升序的弱一致性遍历，不整体物化，用于流式导出。
+     * fromId、toId 为闭区间边界，可为空。
+     */
+    Iterator<Transaction> exportTransactions(TransactionFilter filter, Long fromId, Long toId);
     Transaction updateTransaction(Long id, Transaction transaction);
+    /**
+     * 条件更新：仅当当前版本号等于 expectedVersion 时更新，否则抛出 TransactionConflictException
+     */
+    Transaction updateTransaction(Long id, Transaction transaction, long expectedVersion);
     void deleteTransaction(Long id);
+    BigDecimal getAccountBalance(String account);
+    int purgeTransactionsBefore(LocalDateTime cutoff);
+    /**
+     * 按时间窗口、类型和状态的预聚合统计，from、to 可为空，type、status 为空时不过滤
+     */
+    List<TransactionStats> getStatistics(LocalDateTime from, LocalDateTime to, TransactionStats.Granularity granularity,
+                                         TransactionType type, TransactionStatus status);
 }
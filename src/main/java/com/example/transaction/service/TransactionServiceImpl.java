@@ -1,48 +1,399 @@
 package com.example.transaction.service;
 
+import com.example.transaction.cluster.ClusterTopology;
 import com.example.transaction.exception.InvalidTransactionException;
+import com.example.transaction.exception.TransactionConflictException;
 import com.example.transaction.exception.TransactionNotFoundException;
+import com.example.transaction.model.BatchItemResult;
 import com.example.transaction.model.Page;
 import com.example.transaction.model.Transaction;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.persistence.LogRecord;
+import com.example.transaction.persistence.SnapshotStore;
+import com.example.transaction.persistence.WriteAheadLog;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import com.example.transaction.store.TransactionStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
 
-    private final ConcurrentHashMap<Long, Transaction> transactions = new ConcurrentHashMap<>();
-    private final AtomicLong idCounter = new AtomicLong(1);
+    private static final Logger log = LoggerFactory.getLogger(TransactionServiceImpl.class);
+    /** 不校验版本号的更新 */
+    private static final long ANY_VERSION = TransactionRecord.NONE;
+
+    private final TransactionStore transactions;
+    /** 下一个待分配的ID序号，由拓扑组合成交易ID */
+    private final AtomicLong idSequence = new AtomicLong(1);
+    private final ClusterTopology topology;
+    private final BalanceLedger ledger;
+    private final TransactionIndex index;
+    private final TimeBucketIndex timeIndex;
+    private final TransactionRollups rollups;
+    private final RefundIndex refunds;
+    private final WriteAheadLog wal;
+    private final SnapshotStore snapshots;
+    private final IngestionSequencer sequencer;
+    private final TransactionListener[] listeners;
+    private final TransactionMetrics metrics;
+
+    /** 开启预写日志时，同一 ID 的存储变更与日志入队在同一条带锁内完成 */
+    private final Lock[] stripes = new Lock[64];
+
+    public TransactionServiceImpl(TransactionStore transactions, BalanceLedger ledger,
+                                  TransactionIndex index, TimeBucketIndex timeIndex, TransactionRollups rollups,
+                                  RefundIndex refunds,
+                                  WriteAheadLog wal, SnapshotStore snapshots, IngestionSequencer sequencer,
+                                  List<TransactionListener> listeners, TransactionMetrics metrics,
+                                  ClusterTopology topology) {
+        this.transactions = transactions;
+        this.ledger = ledger;
+        this.index = index;
+        this.timeIndex = timeIndex;
+        this.rollups = rollups;
+        this.refunds = refunds;
+        this.wal = wal;
+        this.snapshots = snapshots;
+        this.sequencer = sequencer;
+        this.listeners = listeners.toArray(new TransactionListener[0]);
+        this.metrics = metrics;
+        this.topology = topology;
+        metrics.bindStore(transactions);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 恢复完成后才开始接受顺序化的创建请求
+     */
+    @PostConstruct
+    public void start() {
+        recover();
+        sequencer.start(this::createRecord);
+    }
+
+    /**
+     * 启动时先加载最新快照，再重放快照之后的日志恢复存储，最后一次性重建索引、台账和ID计数器。
+     * 快照是模糊的，日志尾部可能包含快照中已反映的变更；PUT 为完整后像、DELETE 幂等，重放结果不变。
+     */
+    public void recover() {
+        if (!wal.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        SnapshotStore.Header snapshot = snapshots.load(transactions::insert);
+        AtomicLong maxSequence = new AtomicLong(snapshot == null ? 0 : snapshot.nextId() - 1);
+        wal.recover(snapshot == null ? 0 : snapshot.sequence(), record -> {
+            maxSequence.accumulateAndGet(topology.sequence(record.id()), Math::max);
+            if (record.operation() == LogRecord.Operation.DELETE) {
+                transactions.remove(record.id());
+            } else if (transactions.replace(record.id(), record.transaction()) == null) {
+                transactions.insert(record.transaction());
+            }
+        });
+        transactions.iterateAfter(0).forEachRemaining(t -> {
+            index.add(t);
+            timeIndex.add(t);
+            rollups.add(t);
+            ledger.apply(t);
+            if (t.type() == TransactionType.REFUND) {
+                refunds.add(t);
+            }
+        });
+        // 已删除的ID也不再分配
+        idSequence.set(maxSequence.get() + 1);
+        long recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+        metrics.recordRecovery(recoveryMillis);
+        log.info("Recovered {} transactions from snapshot and write-ahead log in {} ms",
+                transactions.size(), recoveryMillis);
+    }
+
+    /**
+     * 定期写快照并删除被覆盖的日志段，写入方不停顿。
+     * 先记下当前日志序号：序号在存储变更之后分配，此前的变更在随后的遍历中一定可见；
+     * 遍历期间发生的变更可能部分进入快照，它们的序号都更大，重启时由日志尾部重放修正。
+     */
+    @Scheduled(fixedDelayString = "${transaction.snapshot.interval:PT15M}",
+               initialDelayString = "${transaction.snapshot.interval:PT15M}")
+    public void snapshot() {
+        if (!wal.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        wal.roll();
+        long sequence = wal.lastSequence();
+        long count = snapshots.write(sequence, idSequence.get(), transactions.iterateAfter(0));
+        int truncated = wal.truncateBefore(sequence);
+        long elapsed = System.nanoTime() - start;
+        metrics.recordSnapshot(elapsed);
+        log.info("Wrote snapshot of {} transactions up to log sequence {} in {} ms, removed {} log segments",
+                count, sequence, elapsed / 1_000_000, truncated);
+    }
 
     @Override
     public Transaction createTransaction(Transaction transaction) {
-        if (transaction.getId() != null && transactions.containsKey(transaction.getId())) {
-            throw new InvalidTransactionException("Transaction with ID " + transaction.getId() + " already exists");
+        long start = System.nanoTime();
+        try {
+            TransactionRecord stored = sequencer.isEnabled() ? sequencer.submit(transaction) : createRecord(transaction);
+            wal.sync();
+            transaction.setId(stored.id());
+            transaction.setSourceAccount(stored.sourceAccount());
+            transaction.setTimestamp(stored.timestamp());
+            transaction.setVersion(stored.version());
+            return transaction;
+        } finally {
+            metrics.record(TransactionMetrics.Operation.CREATE, transaction.getType(), start);
+        }
+    }
+
+    /**
+     * 校验、扣款、分配ID并写入一笔交易，不等待落盘。
+     * 顺序化模式下只在定序线程上执行
+     */
+    private TransactionRecord createRecord(Transaction transaction) {
+        TransactionRecord record = validate(transaction);
+
+        // 取款的校验与扣款在账户台账上一步完成
+        boolean withdrawal = isWithdrawal(record);
+        if (withdrawal) {
+            debitForWithdrawal(record);
+        }
+        boolean refund = record.type() == TransactionType.REFUND;
+        if (refund) {
+            record = reserveRefund(record);
+        }
+
+        TransactionRecord stored;
+        try {
+            // 并发导入的显式ID可能先占用了刚分配的序号，换一个新ID重试，已生效的扣款和退款额度不变
+            do {
+                stored = record.withIdAndTimestamp(topology.id(idSequence.getAndIncrement()), LocalDateTime.now());
+            } while (!persist(stored));
+        } catch (RuntimeException e) {
+            rollBack(record, withdrawal);
+            throw e;
+        }
+        if (!withdrawal) {
+            ledger.apply(stored);
+        }
+        if (refund) {
+            linkRefund(stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public List<BatchItemResult> createTransactions(List<Transaction> batch) {
+        long start = System.nanoTime();
+        try {
+            BatchItemResult[] results = new BatchItemResult[batch.size()];
+            TransactionRecord[] records = new TransactionRecord[batch.size()];
+            List<Integer> accepted = new ArrayList<>(batch.size());
+            Map<String, List<Integer>> withdrawalsByAccount = new LinkedHashMap<>();
+
+            // 一次遍历完成整批的静态校验，同时按账户归集取款
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    records[i] = validate(batch.get(i));
+                    if (records[i].type() == TransactionType.REFUND) {
+                        records[i] = reserveRefund(records[i]);
+                    }
+                } catch (InvalidTransactionException e) {
+                    results[i] = BatchItemResult.failed(i, e.getMessage());
+                    continue;
+                }
+                if (isWithdrawal(records[i])) {
+                    withdrawalsByAccount.computeIfAbsent(
+                            BalanceLedger.accountOf(records[i].sourceAccount()), k -> new ArrayList<>()).add(i);
+                } else {
+                    accepted.add(i);
+                }
+            }
+
+            // 批内入账先于取款生效，取款按账户累计校验：整体够扣时一次 CAS，不够时再逐笔扣减
+            for (int i : accepted) {
+                ledger.apply(records[i]);
+            }
+            withdrawalsByAccount.forEach((account, indexes) -> {
+                long total = 0;
+                try {
+                    for (int i : indexes) {
+                        total = Math.addExact(total, records[i].amount());
+                    }
+                } catch (ArithmeticException e) {
+                    // 合计超出 long 范围时任何余额都不够整体扣减，直接逐笔扣减，扣不动的条目单独失败
+                    total = -1;
+                }
+                if (total >= 0 && ledger.tryDebit(account, total)) {
+                    accepted.addAll(indexes);
+                    return;
+                }
+                for (int i : indexes) {
+                    if (ledger.tryDebit(account, records[i].amount())) {
+                        accepted.add(i);
+                    } else {
+                        metrics.reject(TransactionMetrics.Rejection.INSUFFICIENT_BALANCE);
+                        results[i] = BatchItemResult.failed(i, "Insufficient balance for withdrawal");
+                    }
+                }
+            });
+
+            // 为通过的交易一次性预留连续的序号区间，按请求顺序分配
+            accepted.sort(null);
+            long firstSequence = idSequence.getAndAdd(accepted.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (int k = 0; k < accepted.size(); k++) {
+                int i = accepted.get(k);
+                TransactionRecord stored = records[i].withIdAndTimestamp(topology.id(firstSequence + k), now);
+                try {
+                    // 预留的序号被并发导入的显式ID占用时，该条单独换一个新ID
+                    while (!persist(stored)) {
+                        stored = records[i].withIdAndTimestamp(topology.id(idSequence.getAndIncrement()), now);
+                    }
+                } catch (RuntimeException e) {
+                    // 本条及之后尚未写入的交易都已入账，一并撤销
+                    for (int rest = k; rest < accepted.size(); rest++) {
+                        rollBack(records[accepted.get(rest)], true);
+                    }
+                    throw e;
+                }
+                if (stored.type() == TransactionType.REFUND) {
+                    linkRefund(stored);
+                }
+                results[i] = BatchItemResult.succeeded(i, stored.id());
+            }
+            // 整批共用一次落盘等待
+            wal.sync();
+            return Arrays.asList(results);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.CREATE_BATCH, start);
         }
-        
-        if (transaction.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidTransactionException("Transaction amount must be greater than 0");
+    }
+
+    @Override
+    public List<BatchItemResult> importTransactions(List<Transaction> batch) {
+        long start = System.nanoTime();
+        try {
+            List<BatchItemResult> results = new ArrayList<>(batch.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < batch.size(); i++) {
+                TransactionRecord record;
+                try {
+                    record = validate(batch.get(i));
+                } catch (InvalidTransactionException e) {
+                    results.add(BatchItemResult.failed(i, e.getMessage()));
+                    continue;
+                }
+                String misplaced = misplaced(record);
+                if (misplaced != null) {
+                    results.add(BatchItemResult.failed(i, misplaced));
+                    continue;
+                }
+                // 保留原始ID和时间戳；未提供ID时正常分配，并保证计数器越过已导入的最大ID
+                long id = record.id();
+                if (id == TransactionRecord.NONE) {
+                    id = topology.id(idSequence.getAndIncrement());
+                } else {
+                    idSequence.accumulateAndGet(topology.sequence(id) + 1, Math::max);
+                }
+                TransactionRecord stored = record.withIdAndTimestamp(id,
+                        record.timestamp() != null ? record.timestamp() : now);
+                if (!persist(stored)) {
+                    metrics.reject(TransactionMetrics.Rejection.DUPLICATE_ID);
+                    results.add(BatchItemResult.failed(i, "Transaction with ID " + id + " already exists"));
+                    continue;
+                }
+                // 历史数据按原样入账，不做透支和退款额度校验：导入顺序不代表发生顺序
+                ledger.apply(stored);
+                if (stored.type() == TransactionType.REFUND) {
+                    refunds.add(stored);
+                }
+                results.add(BatchItemResult.succeeded(i, id));
+            }
+            wal.sync();
+            return results;
+        } finally {
+            metrics.record(TransactionMetrics.Operation.IMPORT, start);
+        }
+    }
+
+    /**
+     * 分片部署时导入的交易只能写入所属节点：按ID读取路由到ID所属的节点，余额又在账户所属的节点上校验，
+     * 两者须是同一节点，且为本节点。不满足时返回错误信息
+     */
+    private String misplaced(TransactionRecord record) {
+        if (!topology.isPartitioned()) {
+            return null;
+        }
+        int owner = topology.ownerOfWrite(record.sourceAccount(),
+                record.type() == TransactionType.REFUND && record.hasOriginalTransaction()
+                        ? record.originalTransactionId() : null);
+        if (record.id() != TransactionRecord.NONE && topology.ownerOfId(record.id()) != owner) {
+            return "Transaction ID " + record.id() + " belongs to node " + topology.ownerOfId(record.id())
+                    + " but its account belongs to node " + owner;
+        }
+        return topology.isLocal(owner) ? null : "Transaction belongs to node " + owner;
+    }
+
+    /**
+     * 与余额无关的校验，单条创建和批量创建共用；通过后返回对应的内部记录
+     */
+    private TransactionRecord validate(Transaction transaction) {
+        if (transaction.getId() != null && transactions.contains(transaction.getId())) {
+            throw reject(TransactionMetrics.Rejection.DUPLICATE_ID,
+                    "Transaction with ID " + transaction.getId() + " already exists");
+        }
+
+        if (transaction.getType() == null) {
+            throw reject(TransactionMetrics.Rejection.MISSING_TYPE, "Transaction type is required");
         }
-        
+
+        TransactionRecord record = toRecord(transaction);
+        if (record.amount() <= 0) {
+            throw reject(TransactionMetrics.Rejection.INVALID_AMOUNT, "Transaction amount must be greater than 0");
+        }
+
         // 根据交易类型进行特定验证
-        switch (transaction.getType()) {
+        switch (record.type()) {
             case WITHDRAWAL:
             case WITHDRAW:
-                validateWithdrawal(transaction);
+                // 余额校验与扣款一起进行，见 debitForWithdrawal
                 break;
             case TRANSFER:
-                validateTransfer(transaction);
+                validateTransfer(record);
                 break;
             case REFUND:
-                validateRefund(transaction);
+                validateRefund(record);
                 break;
             case INTEREST_INCOME:
             case INTEREST_EXPENSE:
@@ -56,109 +407,799 @@ public class TransactionServiceImpl implements TransactionService {
                 // 存款不需要额外验证
                 break;
         }
-        
-        long id = idCounter.getAndIncrement();
-        transaction.setId(id);
-        transaction.setTimestamp(java.time.LocalDateTime.now());
-        transactions.put(id, transaction);
-        return transaction;
+        return record;
+    }
+
+    /**
+     * 请求对象到内部记录的转换，金额在此处一次性换算为分
+     */
+    private TransactionRecord toRecord(Transaction transaction) {
+        if (transaction.getAmount() == null) {
+            throw reject(TransactionMetrics.Rejection.INVALID_AMOUNT, "Transaction amount must be greater than 0");
+        }
+        try {
+            return TransactionRecord.from(transaction);
+        } catch (ArithmeticException e) {
+            throw reject(TransactionMetrics.Rejection.INVALID_AMOUNT, "Transaction amount must have at most "
+                    + TransactionRecord.SCALE + " decimal places and fit in the supported range");
+        }
     }
 
-    private void validateWithdrawal(Transaction transaction) {
-        // 提现和取款需要验证账户余额
-        BigDecimal balance = calculateAccountBalance();
-        if (transaction.getAmount().compareTo(balance) > 0) {
-            throw new InvalidTransactionException("Insufficient balance for withdrawal");
+    /**
+     * 计入拒绝原因后返回待抛出的异常
+     */
+    private InvalidTransactionException reject(TransactionMetrics.Rejection reason, String message) {
+        metrics.reject(reason);
+        return new InvalidTransactionException(message);
+    }
+
+    private static boolean isWithdrawal(TransactionRecord transaction) {
+        return transaction.type() == TransactionType.WITHDRAWAL
+                || transaction.type() == TransactionType.WITHDRAW;
+    }
+
+    /**
+     * 写入失败时撤销已生效的余额影响和已占用的退款额度，交易视为未创建
+     *
+     * @param applied 余额影响是否已记入台账
+     */
+    private void rollBack(TransactionRecord record, boolean applied) {
+        if (applied) {
+            ledger.revert(record);
+        }
+        if (record.type() == TransactionType.REFUND) {
+            refunds.release(record.originalTransactionId(), record.amount());
         }
     }
 
-    private void validateTransfer(Transaction transaction) {
+    /**
+     * 保存记录并建立索引；ID 已存在时返回 false。预写日志不可用时撤回存储中的记录并抛出异常
+     */
+    private boolean persist(TransactionRecord stored) {
+        Lock lock = lockFor(stored.id());
+        try {
+            if (!transactions.insert(stored)) {
+                return false;
+            }
+            try {
+                wal.put(stored);
+            } catch (RuntimeException e) {
+                transactions.remove(stored.id());
+                throw e;
+            }
+        } finally {
+            unlock(lock);
+        }
+        index.add(stored);
+        TransactionRecord current = transactions.get(stored.id());
+        if (!stored.equals(current)) {
+            // 并发的删除或更新可能在 add 之前已调整过索引，撤回刚加的条目并按当前值补齐
+            index.remove(stored);
+            if (current != null) {
+                index.add(current);
+            }
+        }
+        timeIndex.add(stored);
+        rollups.add(stored);
+        for (TransactionListener listener : listeners) {
+            listener.inserted(stored);
+        }
+        return true;
+    }
+
+    /**
+     * 未开启预写日志时不需要排序，返回 null 不加锁
+     */
+    private Lock lockFor(long id) {
+        if (!wal.isEnabled()) {
+            return null;
+        }
+        Lock lock = stripes[Long.hashCode(id * 0x9E3779B97F4A7C15L) & (stripes.length - 1)];
+        lock.lock();
+        return lock;
+    }
+
+    private static void unlock(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    private boolean replaceLogged(TransactionRecord expected, TransactionRecord stored) {
+        Lock lock = lockFor(stored.id());
+        try {
+            if (!transactions.replace(expected, stored)) {
+                return false;
+            }
+            try {
+                wal.put(stored);
+            } catch (RuntimeException e) {
+                transactions.replace(stored, expected);
+                throw e;
+            }
+            return true;
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    private TransactionRecord removeLogged(long id) {
+        Lock lock = lockFor(id);
+        try {
+            TransactionRecord removed = transactions.remove(id);
+            if (removed != null) {
+                wal.delete(id);
+            }
+            return removed;
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    private void debitForWithdrawal(TransactionRecord transaction) {
+        // 提现和取款需要验证账户余额，校验通过即已扣款
+        if (!ledger.tryDebit(transaction.sourceAccount(), transaction.amount())) {
+            throw reject(TransactionMetrics.Rejection.INSUFFICIENT_BALANCE, "Insufficient balance for withdrawal");
+        }
+    }
+
+    private void validateTransfer(TransactionRecord transaction) {
         // 转账需要验证目标账户
-        if (transaction.getTargetAccount() == null) {
-            throw new InvalidTransactionException("Target account is required for transfer");
+        if (transaction.targetAccount() == null) {
+            throw reject(TransactionMetrics.Rejection.MISSING_TARGET_ACCOUNT,
+                    "Target account is required for transfer");
         }
     }
 
-    private void validateRefund(Transaction transaction) {
+    private void validateRefund(TransactionRecord transaction) {
         // 退款需要关联原始交易
-        if (transaction.getOriginalTransactionId() == null) {
-            throw new InvalidTransactionException("Original transaction ID is required for refund");
+        if (!transaction.hasOriginalTransaction()) {
+            throw reject(TransactionMetrics.Rejection.MISSING_ORIGINAL_TRANSACTION,
+                    "Original transaction ID is required for refund");
+        }
+    }
+
+    /**
+     * 退款的校验与额度占用一步完成：原始交易须存在、是已完成的非退款交易，且累计退款不超过原始金额。
+     * 只查退款索引和一次按ID读取，与交易总数无关。
+     * 退款记入原始交易的账户：未指定账户时沿用原始交易的账户，指定了其他账户时拒绝。
+     * 分片部署时原始交易与其账户在同一节点，退款入账因此也在账户所属节点上
+     *
+     * @return 账户已补齐的退款
+     */
+    private TransactionRecord reserveRefund(TransactionRecord refund) {
+        long originalId = refund.originalTransactionId();
+        TransactionRecord original = transactions.get(originalId);
+        if (original == null) {
+            throw reject(TransactionMetrics.Rejection.ORIGINAL_NOT_FOUND,
+                    "Original transaction " + originalId + " does not exist");
+        }
+        if (original.type() == TransactionType.REFUND || original.status() != TransactionStatus.COMPLETED) {
+            throw reject(TransactionMetrics.Rejection.ORIGINAL_NOT_REFUNDABLE,
+                    "Only completed transactions can be refunded");
+        }
+        if (refund.sourceAccount() != null && !refund.sourceAccount().equals(original.sourceAccount())) {
+            throw reject(TransactionMetrics.Rejection.REFUND_ACCOUNT_MISMATCH,
+                    "Refund must credit the account of transaction " + originalId);
+        }
+        if (refunds.reserve(originalId, original.amount(), refund.amount()) == RefundIndex.REJECTED) {
+            throw reject(TransactionMetrics.Rejection.REFUND_EXCEEDS_ORIGINAL,
+                    "Refund exceeds the remaining refundable amount of transaction " + originalId);
+        }
+        return refund.withSourceAccount(original.sourceAccount());
+    }
+
+    /**
+     * 退款写入后记下其ID；原始交易被全部退款时状态改为 REFUNDED
+     */
+    private void linkRefund(TransactionRecord stored) {
+        refunds.link(stored);
+        updateRefundStatus(stored.originalTransactionId(), TransactionStatus.COMPLETED, TransactionStatus.REFUNDED);
+    }
+
+    /**
+     * 按累计退款修正原始交易状态：全部退款时 COMPLETED 改为 REFUNDED，删除退款后不再全部退款时改回。
+     * 与普通更新一样按版本号 CAS，状态已被其他更新改动时不做修改
+     */
+    private void updateRefundStatus(long originalId, TransactionStatus from, TransactionStatus to) {
+        while (true) {
+            TransactionRecord original = transactions.get(originalId);
+            if (original == null || original.status() != from) {
+                return;
+            }
+            boolean consumed = refunds.get(originalId).refunded() >= original.amount();
+            if (consumed != (to == TransactionStatus.REFUNDED)) {
+                return;
+            }
+            TransactionRecord stored = original.withStatus(to).withVersion(original.version() + 1);
+            if (replaceLogged(original, stored)) {
+                applyUpdate(original, stored);
+                return;
+            }
         }
     }
 
-    private void validateSystemTransaction(Transaction transaction) {
+    private void validateSystemTransaction(TransactionRecord transaction) {
         // 系统交易需要验证发起方
-        if (transaction.getInitiatedBy() == null || !transaction.getInitiatedBy().equals("SYSTEM")) {
-            throw new InvalidTransactionException("System transactions must be initiated by SYSTEM");
-        }
-    }
-
-    private BigDecimal calculateAccountBalance() {
-        // 计算账户余额的简单实现
-        return transactions.values().stream()
-            .map(t -> {
-                switch (t.getType()) {
-                    case DEPOSIT:
-                    case INTEREST_INCOME:
-                    case FEE_INCOME:
-                    case REFUND:
-                        return t.getAmount();
-                    case WITHDRAWAL:
-                    case WITHDRAW:
-                    case INTEREST_EXPENSE:
-                    case FEE_EXPENSE:
-                        return t.getAmount().negate();
-                    case TRANSFER:
-                        return BigDecimal.ZERO;
-                    default:
-                        return BigDecimal.ZERO;
-                }
-            })
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (transaction.initiatedBy() == null || !transaction.initiatedBy().equals("SYSTEM")) {
+            throw reject(TransactionMetrics.Rejection.SYSTEM_INITIATION,
+                    "System transactions must be initiated by SYSTEM");
+        }
+    }
+
+    /**
+     * 按账户全量重算余额，仅用于台账校验，不在请求路径上调用。
+     */
+    private Map<String, Long> calculateAccountBalances() {
+        long start = System.nanoTime();
+        try {
+            return StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(transactions.iterateAfter(0),
+                            Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .collect(Collectors.groupingBy(
+                    t -> BalanceLedger.accountOf(t.sourceAccount()),
+                    Collectors.summingLong(BalanceLedger::signedAmount)));
+        } finally {
+            metrics.recordRecomputeBalances(start);
+        }
+    }
+
+    /**
+     * 定期将台账与全量重算结果逐账户比对。
+     * 扫描期间若台账发生变化，说明有并发写入，本轮结果不可比，跳过即可。
+     */
+    @Scheduled(fixedDelayString = "${transaction.ledger.verify-interval:PT5M}",
+               initialDelayString = "${transaction.ledger.verify-interval:PT5M}")
+    public void verifyLedger() {
+        long before = ledger.modifications();
+        Map<String, Long> recomputed = calculateAccountBalances();
+        Map<String, Long> balances = ledger.snapshot();
+        if (ledger.modifications() != before) {
+            log.debug("Ledger changed during verification, skipping this round");
+            return;
+        }
+        Set<String> accounts = new HashSet<>(balances.keySet());
+        accounts.addAll(recomputed.keySet());
+        for (String account : accounts) {
+            long expected = recomputed.getOrDefault(account, 0L);
+            long actual = balances.getOrDefault(account, 0L);
+            if (expected != actual) {
+                log.warn("Balance ledger drift detected for account {}: ledger={}, recomputed={}",
+                        account, TransactionRecord.toDecimal(actual), TransactionRecord.toDecimal(expected));
+            }
+        }
+    }
+
+    @Override
+    public BigDecimal getAccountBalance(String account) {
+        long start = System.nanoTime();
+        try {
+            return TransactionRecord.toDecimal(ledger.getBalance(account));
+        } finally {
+            metrics.recordLedgerBalance(start);
+        }
     }
 
     @Override
-    @Cacheable(value = "transactions", key = "#id")
     public Optional<Transaction> getTransactionById(Long id) {
-        return Optional.ofNullable(transactions.get(id));
+        long start = System.nanoTime();
+        try {
+            return Optional.ofNullable(transactions.get(id)).map(TransactionRecord::toTransaction);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.GET, start);
+        }
     }
 
     @Override
     public Page<Transaction> getAllTransactions(int page, int size) {
-        List<Transaction> content = transactions.values().stream()
-                .skip((long) page * size)
-                .limit(size)
-                .collect(Collectors.toList());
-        
-        long totalElements = transactions.size();
-        int totalPages = (int) Math.ceil((double) totalElements / size);
-        
-        return new Page<>(content, page + 1, totalPages, totalElements);
+        long start = System.nanoTime();
+        try {
+            Iterator<TransactionRecord> iterator = transactions.iterateAfter(0);
+            // 偏移分页仍需跳过前面的记录，深分页请使用 getTransactionsAfter
+            for (long skipped = 0, offset = (long) page * size; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            return toPage(iterator, page + 1, size);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.LIST, start);
+        }
+    }
+
+    @Override
+    public Page<Transaction> getTransactionsAfter(long afterId, int size) {
+        long start = System.nanoTime();
+        try {
+            // 游标分页：跳表定位 O(log n)，之后只读取 size 条
+            return toPage(transactions.iterateAfter(afterId), 0, size);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.LIST, start);
+        }
+    }
+
+    @Override
+    public Page<Transaction> findTransactions(TransactionFilter filter, Long afterId, int page, int size) {
+        long start = System.nanoTime();
+        try {
+            if (filter == null || filter.isEmpty()) {
+                return afterId != null ? getTransactionsAfter(afterId, size) : getAllTransactions(page, size);
+            }
+            Iterator<TransactionRecord> iterator = matching(filter, afterId != null ? afterId : 0);
+            // 多条件求交或按时间驱动时无法廉价得到精确总数，以 -1 表示未知
+            List<TransactionIndex.PostingList> postings = index.postings(filter);
+            long totalElements = postings.size() == 1 && !filter.hasTimeRange() ? postings.get(0).size() : -1;
+            if (afterId == null) {
+                for (long skipped = 0, offset = (long) page * size; skipped < offset && iterator.hasNext(); skipped++) {
+                    iterator.next();
+                }
+            }
+            return toPage(iterator, afterId != null ? 0 : page + 1, size, totalElements);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.FIND, start);
+        }
+    }
+
+    @Override
+    public Iterator<Transaction> exportTransactions(TransactionFilter filter, Long fromId, Long toId) {
+        // 以导出开始时已分配的最大ID为上界，之后新建的交易不进入本次导出
+        long upperId = toId != null ? toId : topology.id(idSequence.get() - 1);
+        long afterId = fromId != null ? fromId - 1 : 0;
+        Iterator<TransactionRecord> source = filter == null || filter.isEmpty()
+                ? transactions.iterateAfter(afterId) : matching(filter, afterId);
+        return new Iterator<>() {
+            private TransactionRecord next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done && source.hasNext()) {
+                    TransactionRecord candidate = source.next();
+                    // 按ID升序遍历，越过上界即可结束
+                    if (candidate.id() <= upperId) {
+                        next = candidate;
+                    } else {
+                        done = true;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TransactionRecord result = next;
+                next = null;
+                return result.toTransaction();
+            }
+        };
+    }
+
+    /**
+     * 选择候选最少的一路驱动：最小的倒排列表，或时间桶覆盖的 ID 区间；
+     * 其余条件只做成员判断或复核，代价与候选数成正比而非与总量成正比
+     */
+    private Iterator<TransactionRecord> matching(TransactionFilter filter, long afterId) {
+        List<TransactionIndex.PostingList> postings = index.postings(filter);
+        long timeEstimate = filter.hasTimeRange() ? timeIndex.estimate(filter.getFrom(), filter.getTo()) : Long.MAX_VALUE;
+        if (!postings.isEmpty() && postings.get(0).size() <= timeEstimate) {
+            return new IndexMatchIterator(postings, afterId, filter);
+        }
+        return new TimeRangeIterator(timeIndex.idRanges(filter.getFrom(), filter.getTo()), afterId, filter);
+    }
+
+    @Override
+    public int purgeTransactionsBefore(LocalDateTime cutoff) {
+        long start = System.nanoTime();
+        try {
+            TransactionFilter expired = new TransactionFilter(null, null, null, null, cutoff);
+            List<Long> ids = new ArrayList<>();
+            new TimeRangeIterator(timeIndex.idRanges(null, cutoff), 0, expired)
+                    .forEachRemaining(t -> ids.add(t.id()));
+            int purged = 0;
+            // 清除只丢弃明细，不改动余额：各账户被清除的净额合并为一笔结转交易，台账保持不变，
+            // 全量重算校验和重启恢复得到的余额也与清除前一致
+            Map<String, Long> carried = new LinkedHashMap<>();
+            for (Long id : ids) {
+                TransactionRecord removed = removeLogged(id);
+                if (removed != null) {
+                    unindex(removed);
+                    releaseRefund(removed);
+                    carried.merge(BalanceLedger.accountOf(removed.sourceAccount()),
+                            BalanceLedger.signedAmount(removed), Long::sum);
+                    purged++;
+                }
+            }
+            carried.forEach((account, amount) -> {
+                if (amount != 0) {
+                    persist(carryForward(account, amount, cutoff));
+                }
+            });
+            wal.sync();
+            int buckets = timeIndex.evictBefore(cutoff);
+            rollups.evictBefore(cutoff);
+            log.info("Purged {} transactions older than {}, evicted {} time buckets", purged, cutoff, buckets);
+            return purged;
+        } finally {
+            metrics.record(TransactionMetrics.Operation.PURGE, start);
+        }
+    }
+
+    /**
+     * 结转交易：时间戳为清除的截止时间，本次不会被清除；下次清除时连同更早的明细一起再次结转
+     */
+    private TransactionRecord carryForward(String account, long amount, LocalDateTime cutoff) {
+        return new TransactionRecord(topology.id(idSequence.getAndIncrement()),
+                amount > 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL, Math.abs(amount),
+                "Balance carried forward from before " + cutoff, cutoff, TransactionStatus.COMPLETED,
+                account, null, TransactionRecord.NONE, "SYSTEM", TransactionRecord.FIRST_VERSION);
+    }
+
+    @Override
+    public List<TransactionStats> getStatistics(LocalDateTime from, LocalDateTime to,
+                                                TransactionStats.Granularity granularity,
+                                                TransactionType type, TransactionStatus status) {
+        long start = System.nanoTime();
+        try {
+            return rollups.query(from, to, granularity, type, status);
+        } finally {
+            metrics.record(TransactionMetrics.Operation.STATS, start);
+        }
+    }
+
+    private Page<Transaction> toPage(Iterator<TransactionRecord> iterator, int currentPage, int size) {
+        return toPage(iterator, currentPage, size, transactions.size());
+    }
+
+    private Page<Transaction> toPage(Iterator<TransactionRecord> iterator, int currentPage, int size,
+                                     long totalElements) {
+        // 只有返回给调用方的这一页才转换为请求对象
+        List<Transaction> content = new ArrayList<>(Math.min(size, 1024));
+        while (content.size() < size && iterator.hasNext()) {
+            content.add(iterator.next().toTransaction());
+        }
+        Long nextAfterId = iterator.hasNext() && !content.isEmpty()
+                ? content.get(content.size() - 1).getId() : null;
+
+        int totalPages = totalElements < 0 ? -1 : (int) Math.ceil((double) totalElements / size);
+
+        return new Page<>(content, currentPage, totalPages, totalElements, nextAfterId);
+    }
+
+    /**
+     * 沿驱动倒排列表按 ID 升序遍历，其余列表做成员判断，
+     * 最后以存储中的当前值复核条件，过滤掉并发更新留下的旧索引条目。
+     */
+    private class IndexMatchIterator implements Iterator<TransactionRecord> {
+        private final Iterator<Long> driver;
+        private final List<TransactionIndex.PostingList> others;
+        private final TransactionFilter filter;
+        private TransactionRecord next;
+
+        IndexMatchIterator(List<TransactionIndex.PostingList> postings, long afterId, TransactionFilter filter) {
+            this.driver = postings.get(0).iterateAfter(afterId);
+            this.others = postings.subList(1, postings.size());
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && driver.hasNext()) {
+                long id = driver.next();
+                if (containedInOthers(id)) {
+                    TransactionRecord candidate = transactions.get(id);
+                    if (candidate != null && filter.matches(candidate)) {
+                        next = candidate;
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        private boolean containedInOthers(long id) {
+            for (TransactionIndex.PostingList postings : others) {
+                if (!postings.contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public TransactionRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TransactionRecord result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * 按时间桶给出的 ID 区间顺序读取存储，区间之间重新定位，
+     * 每条记录以过滤条件（含时间戳）复核。
+     */
+    private class TimeRangeIterator implements Iterator<TransactionRecord> {
+        private final Iterator<long[]> ranges;
+        private final long afterId;
+        private final TransactionFilter filter;
+        private long[] range;
+        private Iterator<TransactionRecord> cursor;
+        private TransactionRecord pending;
+        private TransactionRecord next;
+
+        TimeRangeIterator(List<long[]> ranges, long afterId, TransactionFilter filter) {
+            this.ranges = ranges.iterator();
+            this.afterId = afterId;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (pending == null) {
+                    if (cursor == null) {
+                        if (!nextRange()) {
+                            return false;
+                        }
+                        cursor = transactions.iterateAfter(Math.max(range[0] - 1, afterId));
+                    }
+                    if (!cursor.hasNext()) {
+                        return false;
+                    }
+                    pending = cursor.next();
+                }
+                if (pending.id() > range[1]) {
+                    // 越过当前区间：落在下一区间内则继续沿用游标，否则重新定位
+                    if (!nextRange()) {
+                        return false;
+                    }
+                    if (pending.id() < range[0]) {
+                        pending = null;
+                        cursor = null;
+                    }
+                    continue;
+                }
+                TransactionRecord candidate = pending;
+                pending = null;
+                if (filter.matches(candidate)) {
+                    next = candidate;
+                }
+            }
+            return true;
+        }
+
+        private boolean nextRange() {
+            while (ranges.hasNext()) {
+                range = ranges.next();
+                if (range[1] > afterId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public TransactionRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TransactionRecord result = next;
+            next = null;
+            return result;
+        }
     }
 
     @Override
-    @CachePut(value = "transactions", key = "#id")
     public Transaction updateTransaction(Long id, Transaction transaction) {
-        if (transactions.containsKey(id)) {
-            transaction.setId(id);
-            transactions.put(id, transaction);
-            return transaction;
+        return update(id, transaction, ANY_VERSION);
+    }
+
+    @Override
+    public Transaction updateTransaction(Long id, Transaction transaction, long expectedVersion) {
+        return update(id, transaction, expectedVersion);
+    }
+
+    /**
+     * 读取当前记录，按其版本号做 CAS 替换，失败说明被并发修改，重读后重试。
+     * 不加锁；每次成功的替换都对应唯一的前值，台账、索引和汇总按前值到新值的差量调整，不会丢失并发的更新。
+     * 与创建一样，新值为取款时不允许透支：台账差量在替换前经余额校验生效，替换失败时撤回差量再重试
+     */
+    private Transaction update(Long id, Transaction transaction, long expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            TransactionRecord update = toRecord(transaction).withId(id);
+            boolean checked = isWithdrawal(update);
+            TransactionRecord previous;
+            TransactionRecord stored;
+            do {
+                previous = transactions.get(id);
+                if (previous == null) {
+                    throw new TransactionNotFoundException(id);
+                }
+                if (expectedVersion != ANY_VERSION && previous.version() != expectedVersion) {
+                    throw new TransactionConflictException(id, expectedVersion, previous.version());
+                }
+                stored = checkRefundUpdate(previous, update).withVersion(previous.version() + 1);
+                if (checked && !ledger.tryReplace(previous, stored)) {
+                    throw reject(TransactionMetrics.Rejection.INSUFFICIENT_BALANCE,
+                            "Insufficient balance for withdrawal");
+                }
+            } while (checked ? !replaceChecked(previous, stored) : !replaceLogged(previous, stored));
+            if (checked) {
+                reindex(previous, stored);
+            } else {
+                applyUpdate(previous, stored);
+            }
+            wal.sync();
+            return stored.toTransaction();
+        } finally {
+            metrics.record(TransactionMetrics.Operation.UPDATE, transaction.getType(), start);
+        }
+    }
+
+    /**
+     * 退款额度只在创建时由 {@link #reserveRefund} 校验，更新不能绕过：普通交易不能改成退款，退款不能改回；
+     * 退款的金额、原始交易和账户不能修改，已有退款的原始交易不能修改类型和金额
+     *
+     * @return 退款账户已补齐的更新
+     */
+    private TransactionRecord checkRefundUpdate(TransactionRecord previous, TransactionRecord update) {
+        boolean refund = previous.type() == TransactionType.REFUND;
+        if (refund != (update.type() == TransactionType.REFUND)) {
+            throw reject(TransactionMetrics.Rejection.REFUND_CHANGED,
+                    "Transaction " + previous.id() + " cannot be changed to or from a refund");
+        }
+        if (refund) {
+            if (update.amount() != previous.amount()
+                    || update.originalTransactionId() != previous.originalTransactionId()
+                    || update.sourceAccount() != null && !update.sourceAccount().equals(previous.sourceAccount())) {
+                throw reject(TransactionMetrics.Rejection.REFUND_CHANGED,
+                        "Amount, original transaction and account of refund " + previous.id() + " cannot be changed");
+            }
+            return update.withSourceAccount(previous.sourceAccount());
+        }
+        if ((update.type() != previous.type() || update.amount() != previous.amount())
+                && refunds.get(previous.id()).refunded() > 0) {
+            throw reject(TransactionMetrics.Rejection.REFUND_CHANGED,
+                    "Type and amount of transaction " + previous.id() + " cannot be changed after it was refunded");
+        }
+        return update;
+    }
+
+    /**
+     * 台账差量已生效后替换存储；替换失败或抛出异常时撤回差量
+     */
+    private boolean replaceChecked(TransactionRecord previous, TransactionRecord stored) {
+        boolean replaced = false;
+        try {
+            replaced = replaceLogged(previous, stored);
+            return replaced;
+        } finally {
+            if (!replaced) {
+                ledger.replace(stored, previous);
+            }
+        }
+    }
+
+    /**
+     * 存储替换成功后按前值到新值的差量调整台账、索引和汇总
+     */
+    private void applyUpdate(TransactionRecord previous, TransactionRecord stored) {
+        ledger.replace(previous, stored);
+        reindex(previous, stored);
+    }
+
+    /**
+     * 按前值到新值调整索引和汇总。
+     * 更新已由 {@link #checkRefundUpdate} 保证不改动退款金额和原始交易，退款索引按原样调整，不改动原始交易状态
+     */
+    private void reindex(TransactionRecord previous, TransactionRecord stored) {
+        if (index.update(previous, stored)) {
+            // 并发更新同一 ID 时索引操作可能交错，按当前值补齐，保证不漏
+            TransactionRecord current = transactions.get(stored.id());
+            if (current != null) {
+                index.add(current);
+            }
+        }
+        timeIndex.update(previous, stored);
+        rollups.update(previous, stored);
+        if (previous.type() == TransactionType.REFUND) {
+            refunds.remove(previous);
+        }
+        if (stored.type() == TransactionType.REFUND) {
+            refunds.add(stored);
+        }
+        for (TransactionListener listener : listeners) {
+            listener.updated(previous, stored);
         }
-        throw new TransactionNotFoundException(id);
     }
 
     @Override
-    @CacheEvict(value = "transactions", key = "#id")
     public void deleteTransaction(Long id) {
-        if (!transactions.containsKey(id)) {
-            throw new TransactionNotFoundException(id);
+        long start = System.nanoTime();
+        TransactionType type = null;
+        try {
+            TransactionRecord removed = removeLogged(id);
+            if (removed == null) {
+                throw new TransactionNotFoundException(id);
+            }
+            type = removed.type();
+            ledger.revert(removed);
+            unindex(removed);
+            releaseRefund(removed);
+            wal.sync();
+        } finally {
+            metrics.record(TransactionMetrics.Operation.DELETE, type, start);
+        }
+    }
+
+    private void unindex(TransactionRecord removed) {
+        index.remove(removed);
+        timeIndex.remove(removed);
+        rollups.remove(removed);
+        refunds.removeOriginal(removed.id());
+        if (removed.type() == TransactionType.REFUND) {
+            refunds.remove(removed);
+        }
+        for (TransactionListener listener : listeners) {
+            listener.removed(removed);
+        }
+    }
+
+    /**
+     * 删除退款后原始交易不再全部退款时恢复为已完成
+     */
+    private void releaseRefund(TransactionRecord removed) {
+        if (removed.type() == TransactionType.REFUND) {
+            updateRefundStatus(removed.originalTransactionId(), TransactionStatus.REFUNDED, TransactionStatus.COMPLETED);
+        }
+    }
+
+    /**
+     * 从库按主库的后像写入一笔交易，transaction 为 null 表示已删除。保留主库的ID、时间戳和版本号，
+     * 不做业务校验，也不改动原始交易的退款状态：这些都已在主库完成，其结果同样以后像的形式到达
+     */
+    public void applyReplicated(long id, Transaction transaction) {
+        if (transaction == null) {
+            TransactionRecord removed = removeLogged(id);
+            if (removed != null) {
+                ledger.revert(removed);
+                unindex(removed);
+            }
+            return;
+        }
+        TransactionRecord record = TransactionRecord.from(transaction).withVersion(transaction.getVersion());
+        while (true) {
+            TransactionRecord previous = transactions.get(id);
+            if (previous == null) {
+                if (persist(record)) {
+                    ledger.apply(record);
+                    if (record.type() == TransactionType.REFUND) {
+                        refunds.add(record);
+                    }
+                    idSequence.accumulateAndGet(topology.sequence(id) + 1, Math::max);
+                    return;
+                }
+            } else if (replaceLogged(previous, record)) {
+                applyUpdate(previous, record);
+                return;
+            }
         }
-        transactions.remove(id);
     }
 
     // For testing purposes only
     public void clearTransactions() {
         transactions.clear();
-        idCounter.set(1);
+        idSequence.set(1);
+        ledger.reset();
+        index.clear();
+        timeIndex.clear();
+        rollups.clear();
+        refunds.clear();
+        for (TransactionListener listener : listeners) {
+            listener.reset();
+        }
     }
 }
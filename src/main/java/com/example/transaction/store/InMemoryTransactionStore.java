@@ -0,0 +1,84 @@
+package com.example.transaction.store;
+
+import com.example.transaction.model.TransactionRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于跳表的堆内存储：按 ID 有序，定位任意 ID 为 O(log n)。
+ * ConcurrentSkipListMap.size() 需要全量遍历，因此单独维护计数。
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "heap", matchIfMissing = true)
+public class InMemoryTransactionStore implements TransactionStore {
+
+    /** 每条记录连同跳表节点和字符串的平均堆占用，见 OffHeapTransactionStoreTest 的占用报告 */
+    private static final long BYTES_PER_RECORD = 360;
+
+    private final ConcurrentSkipListMap<Long, TransactionRecord> transactions = new ConcurrentSkipListMap<>();
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public TransactionRecord get(long id) {
+        return transactions.get(id);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return transactions.containsKey(id);
+    }
+
+    @Override
+    public boolean insert(TransactionRecord transaction) {
+        if (transactions.putIfAbsent(transaction.id(), transaction) == null) {
+            count.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public TransactionRecord replace(long id, TransactionRecord transaction) {
+        return transactions.replace(id, transaction);
+    }
+
+    /** 记录不可变且每次更新版本号都会变化，按值比较等同于按版本比较 */
+    @Override
+    public boolean replace(TransactionRecord expected, TransactionRecord transaction) {
+        return transactions.replace(expected.id(), expected, transaction);
+    }
+
+    @Override
+    public TransactionRecord remove(long id) {
+        TransactionRecord removed = transactions.remove(id);
+        if (removed != null) {
+            count.decrement();
+        }
+        return removed;
+    }
+
+    @Override
+    public Iterator<TransactionRecord> iterateAfter(long afterId) {
+        return transactions.tailMap(afterId, false).values().iterator();
+    }
+
+    @Override
+    public long size() {
+        return count.sum();
+    }
+
+    @Override
+    public long memoryEstimate() {
+        return size() * BYTES_PER_RECORD;
+    }
+
+    @Override
+    public void clear() {
+        transactions.clear();
+        count.reset();
+    }
+}
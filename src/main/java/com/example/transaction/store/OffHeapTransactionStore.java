@@ -0,0 +1,506 @@
+package com.example.transaction.store;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外列式存储：按 ID 划分固定行数的段，每段每列一块直接内存，
+ * 金额存为以分计的 long，时间戳存为 UTC 纳秒，类型和状态存为字节，
+ * 描述和账户字符串经字典编码后存为 int，记录版本号存为 long。每条记录约 60 字节，堆上只剩段对象和字典；
+ * 字典按引用计数回收，其大小取决于存活记录中不同字符串的数量。
+ * <p>
+ * 每行一个序列锁版本号：写入方 CAS 为奇数后改写各列，完成后加一；
+ * 读取方在前后两次读到相同的偶数版本时才采用读到的列值，否则重读。
+ * 记录对象只在读取时按需构造。
+ * <p>
+ * 分片部署时ID的低位是节点编号，同一节点的ID间隔 2^NODE_BITS。段按节点分组、组内按序号划分，
+ * 每个节点的交易连续地填满自己的段；跨节点的有序遍历按ID归并各组。
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "offheap")
+public class OffHeapTransactionStore implements TransactionStore {
+
+    private static final int SEGMENT_BITS = 14;
+    private static final int ROWS = 1 << SEGMENT_BITS;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final byte NULL_BYTE = -1;
+    private static final byte PRESENT = 1;
+
+    private static final VarHandle VERSION =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final StringDictionary strings = new StringDictionary();
+    private final LongAdder count = new LongAdder();
+    /** ID 中节点编号的位数，单节点部署时为 0 */
+    private final int nodeBits;
+    /** 段键的低位是组内的段号，高位是节点编号 */
+    private final int groupShift;
+
+    public OffHeapTransactionStore(ClusterTopology topology) {
+        this.nodeBits = topology.isPartitioned() ? ClusterTopology.NODE_BITS : 0;
+        this.groupShift = Long.SIZE - SEGMENT_BITS - nodeBits;
+    }
+
+    @Override
+    public TransactionRecord get(long id) {
+        Segment segment = segments.get(key(id));
+        return segment == null ? null : segment.read(row(id), id);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        Segment segment = segments.get(key(id));
+        return segment != null && segment.isPresent(row(id));
+    }
+
+    @Override
+    public boolean insert(TransactionRecord transaction) {
+        long id = transaction.id();
+        Row row = encode(transaction);
+        while (true) {
+            Segment segment = segments.computeIfAbsent(key(id), k -> new Segment());
+            // 先占用段内计数，防止段在写入期间因变空而被释放
+            if (!segment.reserve()) {
+                segments.remove(key(id), segment);
+                continue;
+            }
+            int r = row(id);
+            long version = segment.lock(r);
+            if (segment.meta.get(r * 4) == PRESENT) {
+                segment.unlock(r, version);
+                segment.release(key(id), segments);
+                release(row);
+                return false;
+            }
+            segment.write(r, row);
+            segment.unlock(r, version);
+            count.increment();
+            return true;
+        }
+    }
+
+    @Override
+    public TransactionRecord replace(long id, TransactionRecord transaction) {
+        Segment segment = segments.get(key(id));
+        if (segment == null) {
+            return null;
+        }
+        Row row = encode(transaction);
+        int r = row(id);
+        long version = segment.lock(r);
+        Row previous;
+        try {
+            if (segment.meta.get(r * 4) != PRESENT) {
+                previous = null;
+            } else {
+                previous = segment.copy(r);
+                segment.write(r, row);
+            }
+        } finally {
+            segment.unlock(r, version);
+        }
+        if (previous == null) {
+            release(row);
+            return null;
+        }
+        // 旧值的字符串在归还引用前解码
+        TransactionRecord result = materialize(previous, id);
+        release(previous);
+        return result;
+    }
+
+    @Override
+    public boolean replace(TransactionRecord expected, TransactionRecord transaction) {
+        long id = expected.id();
+        Segment segment = segments.get(key(id));
+        if (segment == null) {
+            return false;
+        }
+        Row row = encode(transaction);
+        int r = row(id);
+        long version = segment.lock(r);
+        Row previous = null;
+        try {
+            if (segment.meta.get(r * 4) == PRESENT && segment.revisions.getLong(r * 8) == expected.version()) {
+                previous = segment.copy(r);
+                segment.write(r, row);
+            }
+        } finally {
+            segment.unlock(r, version);
+        }
+        release(previous != null ? previous : row);
+        return previous != null;
+    }
+
+    @Override
+    public TransactionRecord remove(long id) {
+        Segment segment = segments.get(key(id));
+        if (segment == null) {
+            return null;
+        }
+        int r = row(id);
+        long version = segment.lock(r);
+        Row removed;
+        try {
+            if (segment.meta.get(r * 4) != PRESENT) {
+                return null;
+            }
+            removed = segment.copy(r);
+            segment.meta.put(r * 4, (byte) 0);
+        } finally {
+            segment.unlock(r, version);
+        }
+        count.decrement();
+        segment.release(key(id), segments);
+        TransactionRecord result = materialize(removed, id);
+        release(removed);
+        return result;
+    }
+
+    @Override
+    public Iterator<TransactionRecord> iterateAfter(long afterId) {
+        List<Iterator<TransactionRecord>> groups = new ArrayList<>(1);
+        for (Long key = segments.ceilingKey(0L); key != null; key = segments.ceilingKey(groupKey(group(key) + 1))) {
+            int group = group(key);
+            // 组内第一个大于 afterId 的序号
+            long start = afterId < 0 ? 0 : (afterId >>> nodeBits) + (group > (afterId & nodeMask()) ? 0 : 1);
+            groups.add(iterateGroup(group, start));
+        }
+        if (groups.size() == 1) {
+            return groups.get(0);
+        }
+        return merge(groups);
+    }
+
+    /**
+     * 按序号遍历一个节点分组中从 start 起的记录
+     */
+    private Iterator<TransactionRecord> iterateGroup(int group, long start) {
+        Iterator<Map.Entry<Long, Segment>> tail = segments.subMap(
+                groupKey(group) | (start >>> SEGMENT_BITS), true, groupKey(group + 1), false).entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<Long, Segment> current;
+            private int nextRow;
+            private TransactionRecord next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (current == null || nextRow == ROWS) {
+                        if (!tail.hasNext()) {
+                            return false;
+                        }
+                        current = tail.next();
+                        long base = sequenceBase(current.getKey());
+                        nextRow = base >= start ? 0 : (int) (start - base);
+                    }
+                    long id = ((sequenceBase(current.getKey()) | nextRow) << nodeBits) | group;
+                    next = current.getValue().read(nextRow++, id);
+                }
+                return true;
+            }
+
+            @Override
+            public TransactionRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TransactionRecord result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public long size() {
+        return count.sum();
+    }
+
+    /** 已分配段的直接内存，不含字符串字典 */
+    @Override
+    public long memoryEstimate() {
+        return (long) segmentCount() * ROWS * Segment.BYTES_PER_ROW;
+    }
+
+    @Override
+    public void clear() {
+        segments.clear();
+        count.reset();
+        strings.clear();
+    }
+
+    /** 字典中存活的不同字符串数 */
+    int stringCount() {
+        return strings.size();
+    }
+
+    /** 已分配的段数，每段占用 ROWS * Segment.BYTES_PER_ROW 字节直接内存 */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public static int bytesPerRow() {
+        return Segment.BYTES_PER_ROW;
+    }
+
+    /**
+     * 按ID归并各分组的有序遍历
+     */
+    private static Iterator<TransactionRecord> merge(List<Iterator<TransactionRecord>> groups) {
+        record Head(TransactionRecord record, Iterator<TransactionRecord> rest) {
+        }
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparingLong(head -> head.record().id()));
+        for (Iterator<TransactionRecord> group : groups) {
+            if (group.hasNext()) {
+                heads.add(new Head(group.next(), group));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public TransactionRecord next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.rest().hasNext()) {
+                    heads.add(new Head(head.rest().next(), head.rest()));
+                }
+                return head.record();
+            }
+        };
+    }
+
+    private long nodeMask() {
+        return (1L << nodeBits) - 1;
+    }
+
+    /** ID 所在段的键：节点编号在高位，序号所在的段号在低位 */
+    private long key(long id) {
+        return groupKey((int) (id & nodeMask())) | ((id >>> nodeBits) >>> SEGMENT_BITS);
+    }
+
+    private long groupKey(int group) {
+        return (long) group << groupShift;
+    }
+
+    private int group(long key) {
+        return (int) (key >>> groupShift);
+    }
+
+    /** 段内第一行的序号 */
+    private long sequenceBase(long key) {
+        return (key & ((1L << groupShift) - 1)) << SEGMENT_BITS;
+    }
+
+    private int row(long id) {
+        return (int) ((id >>> nodeBits) & (ROWS - 1));
+    }
+
+    private Row encode(TransactionRecord t) {
+        Row row = new Row();
+        row.type = t.type() == null ? NULL_BYTE : (byte) t.type().ordinal();
+        row.status = t.status() == null ? NULL_BYTE : (byte) t.status().ordinal();
+        row.amount = t.amount();
+        if (t.timestamp() == null) {
+            row.timestamp = NULL_LONG;
+        } else {
+            LocalDateTime timestamp = t.timestamp();
+            row.timestamp = Math.addExact(
+                    Math.multiplyExact(timestamp.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), timestamp.getNano());
+        }
+        row.original = t.originalTransactionId();
+        row.description = strings.encode(t.description());
+        row.sourceAccount = strings.encode(t.sourceAccount());
+        row.targetAccount = strings.encode(t.targetAccount());
+        row.initiatedBy = strings.encode(t.initiatedBy());
+        row.revision = t.version();
+        return row;
+    }
+
+    /** 归还一行占用的字典引用；调用时该行已不再被存储引用 */
+    private void release(Row row) {
+        strings.release(row.description);
+        strings.release(row.sourceAccount);
+        strings.release(row.targetAccount);
+        strings.release(row.initiatedBy);
+    }
+
+    private TransactionRecord materialize(Row row, long id) {
+        return new TransactionRecord(
+                id,
+                row.type == NULL_BYTE ? null : TransactionType.values()[row.type],
+                row.amount,
+                strings.decode(row.description),
+                row.timestamp == NULL_LONG ? null : LocalDateTime.ofEpochSecond(
+                        Math.floorDiv(row.timestamp, 1_000_000_000L),
+                        (int) Math.floorMod(row.timestamp, 1_000_000_000L), ZoneOffset.UTC),
+                row.status == NULL_BYTE ? null : TransactionStatus.values()[row.status],
+                strings.decode(row.sourceAccount),
+                strings.decode(row.targetAccount),
+                row.original,
+                strings.decode(row.initiatedBy),
+                row.revision);
+    }
+
+    /**
+     * 一行的解码中间值，只在单次读写内使用
+     */
+    private static final class Row {
+        byte type;
+        byte status;
+        long amount;
+        long timestamp;
+        long original;
+        int description;
+        int sourceAccount;
+        int targetAccount;
+        int initiatedBy;
+        long revision;
+    }
+
+    private final class Segment {
+        static final int BYTES_PER_ROW = 8 + 4 + 8 + 8 + 8 + 16 + 8;
+
+        /** 每行的序列锁版本号，奇数表示正在写入 */
+        final ByteBuffer versions = column(8);
+        /** 每行 4 字节：存在标记、类型、状态，末字节保留 */
+        final ByteBuffer meta = column(4);
+        final ByteBuffer amounts = column(8);
+        final ByteBuffer timestamps = column(8);
+        final ByteBuffer originals = column(8);
+        /** 每行 4 个字典编码：描述、来源账户、目标账户、发起方 */
+        final ByteBuffer stringCodes = column(16);
+        /** 每行的记录版本号，与上面的序列锁版本号无关 */
+        final ByteBuffer revisions = column(8);
+        /** 段内存活行数；为 -1 表示段已释放，不再接受写入 */
+        final AtomicInteger live = new AtomicInteger();
+
+        private static ByteBuffer column(int width) {
+            return ByteBuffer.allocateDirect(ROWS * width + 8).alignedSlice(8).order(ByteOrder.nativeOrder());
+        }
+
+        boolean reserve() {
+            while (true) {
+                int current = live.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (live.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /** 存活行数归零的段从段表摘除，直接内存随段对象回收 */
+        void release(long key, ConcurrentSkipListMap<Long, Segment> segments) {
+            if (live.decrementAndGet() == 0 && live.compareAndSet(0, -1)) {
+                segments.remove(key, this);
+            }
+        }
+
+        long lock(int r) {
+            while (true) {
+                long version = (long) VERSION.getVolatile(versions, r * 8);
+                if ((version & 1) == 0 && VERSION.compareAndSet(versions, r * 8, version, version + 1)) {
+                    return version;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        void unlock(int r, long version) {
+            VERSION.setRelease(versions, r * 8, version + 2);
+        }
+
+        boolean isPresent(int r) {
+            while (true) {
+                long before = (long) VERSION.getAcquire(versions, r * 8);
+                boolean present = meta.get(r * 4) == PRESENT;
+                VarHandle.loadLoadFence();
+                if ((before & 1) == 0 && before == (long) VERSION.getAcquire(versions, r * 8)) {
+                    return present;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        TransactionRecord read(int r, long id) {
+            while (true) {
+                long before = (long) VERSION.getAcquire(versions, r * 8);
+                if ((before & 1) == 0) {
+                    if (meta.get(r * 4) != PRESENT) {
+                        VarHandle.loadLoadFence();
+                        if (before == (long) VERSION.getAcquire(versions, r * 8)) {
+                            return null;
+                        }
+                        continue;
+                    }
+                    // 字符串在版本校验前解码：版本未变说明该行在解码期间一直持有这些编码的引用
+                    TransactionRecord record = materialize(copy(r), id);
+                    VarHandle.loadLoadFence();
+                    if (before == (long) VERSION.getAcquire(versions, r * 8)) {
+                        return record;
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        Row copy(int r) {
+            Row row = new Row();
+            row.type = meta.get(r * 4 + 1);
+            row.status = meta.get(r * 4 + 2);
+            row.amount = amounts.getLong(r * 8);
+            row.timestamp = timestamps.getLong(r * 8);
+            row.original = originals.getLong(r * 8);
+            row.description = stringCodes.getInt(r * 16);
+            row.sourceAccount = stringCodes.getInt(r * 16 + 4);
+            row.targetAccount = stringCodes.getInt(r * 16 + 8);
+            row.initiatedBy = stringCodes.getInt(r * 16 + 12);
+            row.revision = revisions.getLong(r * 8);
+            return row;
+        }
+
+        void write(int r, Row row) {
+            meta.put(r * 4, PRESENT);
+            meta.put(r * 4 + 1, row.type);
+            meta.put(r * 4 + 2, row.status);
+            amounts.putLong(r * 8, row.amount);
+            timestamps.putLong(r * 8, row.timestamp);
+            originals.putLong(r * 8, row.original);
+            stringCodes.putInt(r * 16, row.description);
+            stringCodes.putInt(r * 16 + 4, row.sourceAccount);
+            stringCodes.putInt(r * 16 + 8, row.targetAccount);
+            stringCodes.putInt(r * 16 + 12, row.initiatedBy);
+            revisions.putLong(r * 8, row.revision);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.transaction.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带引用计数的字符串字典：每个不同的字符串只在堆上保存一份，记录中只存 int 编码。
+ * 每次 {@link #encode} 占用一次引用，记录被替换或删除时由 {@link #release} 归还；
+ * 引用归零的字符串从字典移除，编码回收复用，堆占用只与存活记录中不同字符串的数量有关。
+ * <p>
+ * 已有字符串的编码和归还只做一次 CAS；新增和回收编码时加锁。
+ * 引用计数一旦归零不再增加，此后的 encode 为同一字符串分配新的编码。
+ */
+class StringDictionary {
+
+    static final int NULL = -1;
+
+    private static final VarHandle REFERENCES;
+
+    static {
+        try {
+            REFERENCES = MethodHandles.lookup().findVarHandle(Entry.class, "references", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Entry {
+        final String value;
+        final int code;
+        /** 引用数，经 REFERENCES 原子修改；为 0 表示已失效 */
+        volatile int references = 1;
+
+        Entry(String value, int code) {
+            this.value = value;
+            this.code = code;
+        }
+
+        boolean retain() {
+            while (true) {
+                int current = references;
+                if (current == 0) {
+                    return false;
+                }
+                if (REFERENCES.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> codes = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Entry[] entries = new Entry[1024];
+    // 以下由 lock 保护
+    private int size;
+    private int[] free = new int[64];
+    private int freeCount;
+
+    int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Entry entry = codes.get(value);
+        if (entry != null && entry.retain()) {
+            return entry.code;
+        }
+        return codes.compute(value, (k, current) -> current != null && current.retain() ? current : allocate(k)).code;
+    }
+
+    /**
+     * 归还一次 {@link #encode} 占用的引用
+     */
+    void release(int code) {
+        if (code == NULL) {
+            return;
+        }
+        Entry entry = entries[code];
+        if ((int) REFERENCES.getAndAdd(entry, -1) != 1) {
+            return;
+        }
+        codes.remove(entry.value, entry);
+        lock.lock();
+        try {
+            entries[code] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, free.length * 2);
+            }
+            free[freeCount++] = code;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调用方须持有该编码的引用，或在读取后确认持有引用的记录未被改写
+     */
+    String decode(int code) {
+        if (code == NULL) {
+            return null;
+        }
+        Entry entry = entries[code];
+        return entry == null ? null : entry.value;
+    }
+
+    /** 字典中存活的不同字符串数 */
+    int size() {
+        return codes.size();
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            codes.clear();
+            entries = new Entry[1024];
+            size = 0;
+            freeCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry allocate(String value) {
+        lock.lock();
+        try {
+            int code = freeCount > 0 ? free[--freeCount] : size++;
+            Entry[] current = entries;
+            if (code == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            Entry entry = new Entry(value, code);
+            current[code] = entry;
+            entries = current;
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.transaction.store;
+
+import com.example.transaction.model.TransactionRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间分桶的索引：每个桶记录落在该时间段内交易的 ID 区间和数量。
+ * <p>
+ * ID 随时间递增分配，所以一个桶的 ID 区间通常很紧凑，范围查询只需按区间顺序读取存储，
+ * 代价与结果数量成正比。区间只会扩大不会收缩（删除和改时间不回缩），
+ * 查询方需按时间戳复核。
+ */
+@Component
+public class TimeBucketIndex {
+
+    private final long bucketSeconds;
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    public TimeBucketIndex(@Value("${transaction.time-index.bucket:PT1M}") Duration bucket) {
+        this.bucketSeconds = Math.max(1, bucket.getSeconds());
+    }
+
+    public void add(TransactionRecord transaction) {
+        if (transaction.timestamp() != null) {
+            buckets.computeIfAbsent(bucketOf(transaction.timestamp()), k -> new Bucket())
+                    .add(transaction.id());
+        }
+    }
+
+    public void remove(TransactionRecord transaction) {
+        if (transaction.timestamp() != null) {
+            Bucket bucket = buckets.get(bucketOf(transaction.timestamp()));
+            if (bucket != null) {
+                bucket.count.decrement();
+            }
+        }
+    }
+
+    public void update(TransactionRecord previous, TransactionRecord current) {
+        if (previous.timestamp() != null && current.timestamp() != null
+                && bucketOf(previous.timestamp()) == bucketOf(current.timestamp())) {
+            return;
+        }
+        remove(previous);
+        add(current);
+    }
+
+    /**
+     * 时间范围 [from, to) 覆盖的 ID 区间，已按起点排序并合并重叠部分。
+     * 边界为 null 表示不限制。
+     */
+    public List<long[]> idRanges(LocalDateTime from, LocalDateTime to) {
+        List<long[]> ranges = new ArrayList<>();
+        for (Bucket bucket : bucketsIn(from, to)) {
+            long min = bucket.minId.get();
+            long max = bucket.maxId.get();
+            if (min <= max) {
+                ranges.add(new long[]{min, max});
+            }
+        }
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /** 时间范围内的记录数估计，O(桶数) */
+    public long estimate(LocalDateTime from, LocalDateTime to) {
+        long total = 0;
+        for (Bucket bucket : bucketsIn(from, to)) {
+            total += bucket.count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * 丢弃完全早于 cutoff 的桶，在保留策略清除旧数据后调用
+     * @return 丢弃的桶数
+     */
+    public int evictBefore(LocalDateTime cutoff) {
+        ConcurrentNavigableMap<Long, Bucket> expired = buckets.headMap(bucketOf(cutoff), false);
+        int evicted = expired.size();
+        expired.clear();
+        return evicted;
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    public void clear() {
+        buckets.clear();
+    }
+
+    private Collection<Bucket> bucketsIn(LocalDateTime from, LocalDateTime to) {
+        Map<Long, Bucket> range;
+        if (from == null && to == null) {
+            range = buckets;
+        } else if (from == null) {
+            range = buckets.headMap(bucketOf(to), true);
+        } else if (to == null) {
+            range = buckets.tailMap(bucketOf(from), true);
+        } else {
+            range = buckets.subMap(bucketOf(from), true, bucketOf(to), true);
+        }
+        return range.values();
+    }
+
+    private long bucketOf(LocalDateTime timestamp) {
+        return Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), bucketSeconds);
+    }
+
+    private static class Bucket {
+        private final AtomicLong minId = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxId = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder count = new LongAdder();
+
+        void add(long id) {
+            // 新 ID 通常大于当前最大值，先读后判断可以避免大多数写竞争
+            if (id < minId.get()) {
+                minId.accumulateAndGet(id, Math::min);
+            }
+            if (id > maxId.get()) {
+                maxId.accumulateAndGet(id, Math::max);
+            }
+            count.increment();
+        }
+    }
+}
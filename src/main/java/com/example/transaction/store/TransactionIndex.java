@@ -0,0 +1,149 @@
+package com.example.transaction.store;
+
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按交易类型、状态和目标账户维护的二级索引。
+ * <p>
+ * 索引不加锁，由写入路径在存储变更后维护。并发更新同一条交易时索引里可能短暂残留旧条目，
+ * 因此查询方必须用存储中的当前值复核条件；索引只保证不漏掉当前值。
+ */
+@Component
+public class TransactionIndex {
+
+    private final EnumMap<TransactionType, PostingList> byType = new EnumMap<>(TransactionType.class);
+    private final EnumMap<TransactionStatus, PostingList> byStatus = new EnumMap<>(TransactionStatus.class);
+    private final ConcurrentHashMap<String, PostingList> byTargetAccount = new ConcurrentHashMap<>();
+
+    public TransactionIndex() {
+        // 枚举键预先建好，之后 EnumMap 只读，可以安全并发访问
+        for (TransactionType type : TransactionType.values()) {
+            byType.put(type, new PostingList());
+        }
+        for (TransactionStatus status : TransactionStatus.values()) {
+            byStatus.put(status, new PostingList());
+        }
+    }
+
+    public void add(TransactionRecord transaction) {
+        long id = transaction.id();
+        if (transaction.type() != null) {
+            byType.get(transaction.type()).add(id);
+        }
+        if (transaction.status() != null) {
+            byStatus.get(transaction.status()).add(id);
+        }
+        if (transaction.targetAccount() != null) {
+            byTargetAccount.computeIfAbsent(transaction.targetAccount(), k -> new PostingList()).add(id);
+        }
+    }
+
+    public void remove(TransactionRecord transaction) {
+        long id = transaction.id();
+        if (transaction.type() != null) {
+            byType.get(transaction.type()).remove(id);
+        }
+        if (transaction.status() != null) {
+            byStatus.get(transaction.status()).remove(id);
+        }
+        if (transaction.targetAccount() != null) {
+            PostingList postings = byTargetAccount.get(transaction.targetAccount());
+            if (postings != null) {
+                postings.remove(id);
+            }
+        }
+    }
+
+    /**
+     * 用新值替换旧值的索引条目
+     * @return 索引键发生变化时返回 true，调用方应随后用存储中的当前值调用 {@link #add} 修复并发交错
+     */
+    public boolean update(TransactionRecord previous, TransactionRecord current) {
+        if (previous.type() == current.type()
+                && previous.status() == current.status()
+                && Objects.equals(previous.targetAccount(), current.targetAccount())) {
+            return false;
+        }
+        remove(previous);
+        add(current);
+        return true;
+    }
+
+    /**
+     * 返回过滤条件对应的倒排列表，按大小升序排列，第一个即为最小的驱动列表。
+     * 条件为空时返回空列表。
+     */
+    public List<PostingList> postings(TransactionFilter filter) {
+        List<PostingList> result = new ArrayList<>(3);
+        if (filter.getType() != null) {
+            result.add(byType.get(filter.getType()));
+        }
+        if (filter.getStatus() != null) {
+            result.add(byStatus.get(filter.getStatus()));
+        }
+        if (filter.getTargetAccount() != null) {
+            result.add(byTargetAccount.getOrDefault(filter.getTargetAccount(), PostingList.EMPTY));
+        }
+        result.sort(Comparator.comparingLong(PostingList::size));
+        return result;
+    }
+
+    public void clear() {
+        byType.values().forEach(PostingList::clear);
+        byStatus.values().forEach(PostingList::clear);
+        byTargetAccount.clear();
+    }
+
+    /**
+     * 按 ID 有序的倒排列表，单独计数以 O(1) 获取大小。
+     */
+    public static class PostingList {
+        static final PostingList EMPTY = new PostingList();
+
+        private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+        private final LongAdder count = new LongAdder();
+
+        void add(long id) {
+            if (ids.add(id)) {
+                count.increment();
+            }
+        }
+
+        void remove(long id) {
+            if (ids.remove(id)) {
+                count.decrement();
+            }
+        }
+
+        public boolean contains(long id) {
+            return ids.contains(id);
+        }
+
+        public Iterator<Long> iterateAfter(long afterId) {
+            return ids.tailSet(afterId, false).iterator();
+        }
+
+        public long size() {
+            return count.sum();
+        }
+
+        void clear() {
+            ids.clear();
+            count.reset();
+        }
+    }
+}
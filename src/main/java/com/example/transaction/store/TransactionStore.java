@@ -0,0 +1,54 @@
+package com.example.transaction.store;
+
+import com.example.transaction.model.TransactionRecord;
+
+import java.util.Iterator;
+
+/**
+ * 交易存储：按 ID 有序，所有遍历均为弱一致性（不抛 ConcurrentModificationException，
+ * 可能反映也可能不反映遍历开始后的并发修改）。
+ * 存取的都是不可变记录，调用方无法通过持有的引用修改已存储的数据。
+ */
+public interface TransactionStore {
+
+    TransactionRecord get(long id);
+
+    boolean contains(long id);
+
+    /**
+     * 仅当 ID 不存在时插入
+     * @return 插入成功返回 true
+     */
+    boolean insert(TransactionRecord transaction);
+
+    /**
+     * 替换已存在的交易
+     * @return 被替换的旧值，ID 不存在时返回 null
+     */
+    TransactionRecord replace(long id, TransactionRecord transaction);
+
+    /**
+     * 仅当当前记录的版本号仍与 expected 相同时替换；expected 须是从本存储读到的记录
+     * @return 替换成功返回 true，ID 不存在或已被并发修改时返回 false
+     */
+    boolean replace(TransactionRecord expected, TransactionRecord transaction);
+
+    /**
+     * @return 被删除的旧值，ID 不存在时返回 null
+     */
+    TransactionRecord remove(long id);
+
+    /**
+     * 按 ID 升序遍历所有 ID 大于 afterId 的交易
+     */
+    Iterator<TransactionRecord> iterateAfter(long afterId);
+
+    long size();
+
+    /**
+     * 存储占用内存的估算值（字节），供监控使用，不要求精确
+     */
+    long memoryEstimate();
+
+    void clear();
+}
@@ -0,0 +1,129 @@
+package com.example.transaction.cluster;
+
+import com.example.transaction.service.BalanceLedger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路由决策：不连真实节点，由替身客户端记录请求发往的节点并返回预设响应
+ */
+class ShardRoutingFilterTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String[] NODES = {"http://node-0", "http://node-1"};
+
+    @Test
+    void testTransactionWithoutAccountIsRoutedToDefaultAccountOwner() throws Exception {
+        int owner = new ClusterTopology(0, NODES).ownerOfAccount(BalanceLedger.DEFAULT_ACCOUNT);
+        ClusterTopology topology = new ClusterTopology(1 - owner, NODES);
+        StubClient client = new StubClient(topology);
+        ShardRoutingFilter filter = new ShardRoutingFilter(topology, client, JSON, 100);
+
+        filter.doFilter(post("/api/transactions", "{\"type\":\"WITHDRAWAL\",\"amount\":10.00}"),
+                new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(List.of(owner), client.sent);
+    }
+
+    @Test
+    void testFailedShardFailsOnlyItsOwnBatchItems() throws Exception {
+        ClusterTopology topology = new ClusterTopology(0, NODES);
+        StubClient client = new StubClient(topology);
+        ShardRoutingFilter filter = new ShardRoutingFilter(topology, client, JSON, 100);
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; accounts.size() < 4; i++) {
+            // 两个账户在节点 0，两个在节点 1，交错排列
+            if (topology.ownerOfAccount("acct-" + i) == accounts.size() % 2) {
+                accounts.add("acct-" + i);
+            }
+        }
+        StringBuilder batch = new StringBuilder("[");
+        for (String account : accounts) {
+            batch.append(batch.length() == 1 ? "" : ",")
+                    .append("{\"type\":\"DEPOSIT\",\"amount\":1.00,\"sourceAccount\":\"").append(account).append("\"}");
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(post("/api/transactions/batch", batch.append("]").toString()), response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+        JsonNode result = JSON.readTree(response.getContentAsString());
+        assertEquals(2, result.get("succeeded").asInt());
+        assertEquals(2, result.get("failed").asInt());
+        for (int i = 0; i < 4; i++) {
+            JsonNode item = result.get("results").get(i);
+            assertEquals(i, item.get("index").asInt());
+            // 节点 0 的条目按其在子批次中的下标得到ID，节点 1 不可达
+            if (i % 2 == 0) {
+                assertTrue(item.get("success").asBoolean());
+                assertEquals(100 + i / 2, item.get("id").asLong());
+            } else {
+                assertFalse(item.get("success").asBoolean());
+                assertTrue(item.get("error").asText().startsWith("Node 1 is unavailable"), item.toString());
+            }
+        }
+    }
+
+    private static MockHttpServletRequest post(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    /**
+     * 节点 0 的批量请求逐条成功，节点 1 不可达
+     */
+    private static final class StubClient extends ShardClient {
+
+        final List<Integer> sent = new ArrayList<>();
+
+        StubClient(ClusterTopology topology) {
+            super(topology, Duration.ofSeconds(1));
+        }
+
+        @Override
+        public Response send(int node, HttpMethod method, String pathAndQuery, HttpHeaders headers, byte[] body) {
+            sent.add(node);
+            if (node == 1) {
+                return new Response(0, new HttpHeaders(), "connection refused".getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                StringBuilder results = new StringBuilder("{\"results\":[");
+                for (int i = 0; i < JSON.readTree(body).size(); i++) {
+                    results.append(i == 0 ? "" : ",").append("{\"index\":").append(i)
+                            .append(",\"success\":true,\"id\":").append(100 + i).append("}");
+                }
+                return new Response(200, new HttpHeaders(), results.append("]}").toString()
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public List<Response> sendEach(List<Integer> nodes, HttpMethod method, String path, HttpHeaders headers,
+                                       List<byte[]> bodies) {
+            List<Response> responses = new ArrayList<>();
+            for (int k = 0; k < nodes.size(); k++) {
+                responses.add(send(nodes.get(k), method, path, headers, bodies.get(k)));
+            }
+            return responses;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.transaction.cluster;
+
+import com.example.transaction.TransactionManagementApplication;
+import com.example.transaction.service.TransactionServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一个 JVM 内启动三个节点组成分片集群：ID 不冲突且编码了所属节点，任意节点都能读写任意交易，
+ * 分页列表和余额合并了所有节点的数据，余额校验发生在账户所属节点上
+ */
+class ShardedClusterTest {
+
+    private static final int NODES = 3;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static final List<TestRestTemplate> clients = new ArrayList<>();
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        int[] ports = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        String nodes = Arrays.stream(ports).mapToObj(port -> "http://localhost:" + port)
+                .collect(Collectors.joining(","));
+        for (int i = 0; i < NODES; i++) {
+            contexts.add(new SpringApplicationBuilder(TransactionManagementApplication.class).run(
+                    "--server.port=" + ports[i],
+                    "--transaction.cluster.nodes=" + nodes,
+                    "--transaction.cluster.node-id=" + i,
+                    "--spring.main.banner-mode=off"));
+            clients.add(new TestRestTemplate(new RestTemplateBuilder().rootUri("http://localhost:" + ports[i])));
+        }
+    }
+
+    @BeforeEach
+    void clearNodes() {
+        contexts.forEach(context -> context.getBean(TransactionServiceImpl.class).clearTransactions());
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void testIdsAreUniqueAndReadableFromEveryNode() throws IOException {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            String account = "acct-" + i;
+            JsonNode created = create(i % NODES, "DEPOSIT", account, "10.00");
+            long id = created.get("id").asLong();
+            assertTrue(ids.add(id), "Duplicate id " + id);
+            assertEquals(contexts.get(0).getBean(ClusterTopology.class).ownerOfAccount(account),
+                    (int) (id & (ClusterTopology.MAX_NODES - 1)), "Id should encode the account's node");
+        }
+        for (long id : ids) {
+            for (TestRestTemplate client : clients) {
+                ResponseEntity<String> response = client.getForEntity("/api/transactions/" + id, String.class);
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertEquals(id, JSON.readTree(response.getBody()).get("id").asLong());
+            }
+        }
+
+        // 偏移分页与游标分页都按ID有序、不重不漏地覆盖所有节点
+        List<Long> paged = new ArrayList<>();
+        for (int page = 1; ; page++) {
+            JsonNode result = page(NODES - 1, "/api/transactions?size=7&page=" + page);
+            assertEquals(30, result.get("totalElements").asLong());
+            assertEquals(5, result.get("totalPages").asInt());
+            if (result.get("content").isEmpty()) {
+                break;
+            }
+            result.get("content").forEach(t -> paged.add(t.get("id").asLong()));
+        }
+        List<Long> cursor = new ArrayList<>();
+        String next = "0";
+        while (next != null) {
+            JsonNode result = page(1, "/api/transactions?size=4&afterId=" + next);
+            result.get("content").forEach(t -> cursor.add(t.get("id").asLong()));
+            next = result.get("nextAfterId").isNull() ? null : result.get("nextAfterId").asText();
+        }
+        List<Long> sorted = ids.stream().sorted().toList();
+        assertEquals(sorted, paged);
+        assertEquals(sorted, cursor);
+    }
+
+    @Test
+    void testBalanceIsCheckedOnTheOwningNode() throws IOException {
+        create(0, "DEPOSIT", "acct-owner", "100.00");
+        assertEquals(HttpStatus.BAD_REQUEST, post(1, "{\"type\":\"WITHDRAWAL\",\"amount\":150.00,"
+                + "\"sourceAccount\":\"acct-owner\"}").getStatusCode());
+        long withdrawal = create(2, "WITHDRAWAL", "acct-owner", "40.00").get("id").asLong();
+        for (TestRestTemplate client : clients) {
+            assertEquals(0, new BigDecimal("60.00").compareTo(
+                    client.getForObject("/api/transactions/accounts/acct-owner/balance", BigDecimal.class)));
+        }
+
+        // 删除与批量创建同样路由到所属节点
+        clients.get(0).delete("/api/transactions/" + withdrawal);
+        assertTrue(clients.get(1).getForEntity("/api/transactions/" + withdrawal, String.class)
+                .getStatusCode().isError());
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 12; i++) {
+            batch.append(i == 0 ? "" : ",").append("{\"type\":\"DEPOSIT\",\"amount\":1.00,\"sourceAccount\":\"batch-")
+                    .append(i).append("\"}");
+        }
+        JsonNode results = JSON.readTree(clients.get(1).postForEntity("/api/transactions/batch",
+                entity(batch.append("]").toString()), String.class).getBody());
+        assertEquals(12, results.get("succeeded").asInt());
+        for (int i = 0; i < 12; i++) {
+            JsonNode result = results.get("results").get(i);
+            assertEquals(i, result.get("index").asInt());
+            JsonNode stored = JSON.readTree(clients.get(0).getForObject(
+                    "/api/transactions/" + result.get("id").asLong(), String.class));
+            assertEquals("batch-" + i, stored.get("sourceAccount").asText());
+        }
+    }
+
+    @Test
+    void testImportRoutesRowsToTheirOwnersAndStatsCoverAllNodes() throws IOException {
+        ClusterTopology topology = contexts.get(0).getBean(ClusterTopology.class);
+        StringBuilder ndjson = new StringBuilder();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String account = "import-" + i;
+            long id = ((1000L + i) << ClusterTopology.NODE_BITS) | topology.ownerOfAccount(account);
+            ids.add(id);
+            ndjson.append(row(id, account));
+        }
+        // ID 编码的节点与账户所属节点不一致，无法同时满足按ID读取和余额校验
+        long misplaced = (2000L << ClusterTopology.NODE_BITS) | ((topology.ownerOfAccount("import-0") + 1) % NODES);
+        ndjson.append(row(misplaced, "import-0"));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        JsonNode job = JSON.readTree(clients.get(0).postForEntity("/api/transactions/import",
+                new HttpEntity<>(ndjson.toString(), headers), String.class).getBody());
+        assertEquals(12, job.get("imported").asLong(), job.toString());
+        assertEquals(1, job.get("failed").asLong());
+        assertEquals(13, job.get("errors").get(0).get("line").asLong());
+
+        for (long id : ids) {
+            for (TestRestTemplate client : clients) {
+                assertEquals(HttpStatus.OK, client.getForEntity("/api/transactions/" + id, String.class).getStatusCode());
+            }
+        }
+        assertEquals(0, new BigDecimal("5.00").compareTo(clients.get(2).getForObject(
+                "/api/transactions/accounts/import-0/balance", BigDecimal.class)));
+
+        long counted = 0;
+        for (JsonNode stats : page(1, "/api/transactions/stats")) {
+            counted += stats.get("count").asLong();
+        }
+        assertEquals(12, counted);
+        ResponseEntity<String> export = clients.get(1).getForEntity("/api/transactions/export", String.class);
+        assertEquals("1", export.getHeaders().getFirst(ShardClient.NODE_HEADER));
+    }
+
+    private static String row(long id, String account) {
+        return "{\"id\":" + id + ",\"type\":\"DEPOSIT\",\"amount\":5.00,\"status\":\"COMPLETED\","
+                + "\"sourceAccount\":\"" + account + "\"}\n";
+    }
+
+    private JsonNode create(int node, String type, String account, String amount) throws IOException {
+        ResponseEntity<String> response = post(node, "{\"type\":\"" + type + "\",\"amount\":" + amount
+                + ",\"sourceAccount\":\"" + account + "\"}");
+        assertEquals(HttpStatus.CREATED, response.getStatusCode(), response.getBody());
+        return JSON.readTree(response.getBody());
+    }
+
+    private ResponseEntity<String> post(int node, String body) {
+        return clients.get(node).postForEntity("/api/transactions", entity(body), String.class);
+    }
+
+    private JsonNode page(int node, String path) throws IOException {
+        ResponseEntity<String> response = clients.get(node).getForEntity(path, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return JSON.readTree(response.getBody());
+    }
+
+    private static HttpEntity<String> entity(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
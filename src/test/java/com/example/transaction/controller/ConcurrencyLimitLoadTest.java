@@ -0,0 +1,312 @@
+package com.example.transaction.controller;
+
+import com.example.transaction.TransactionManagementApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 两倍过载下的延迟对比。读请求为每页 1000 条的分页查询，服务端开销远大于压测客户端，过载发生在服务端；
+ * 写请求为单笔存款。
+ * <p>
+ * 先用闭环压测（预热之后）测出服务能力，再以两倍于此的到达率开环发出 70% 读、30% 写的请求，
+ * 分别在开启和关闭并发限流时统计延迟，延迟从计划发出时刻算起，排队时间全部计入。
+ * 开启限流时超出的请求被快速拒绝（503 + Retry-After），被接受和被拒绝请求的 p99 都应保持在预算内，
+ * 关闭限流的结果只作对比输出。开启的一组除 enabled 外使用 application.yml 中的限流参数，
+ * 这是默认开启限流的门槛：本测试在多核压测机上通过之前，application.yml 保持关闭。
+ * <p>
+ * 压测客户端与服务同机运行，需要多核机器才能让过载只发生在服务端。
+ * 只在 load-test profile 中运行：mvn -P load-test test
+ */
+@Tag("load")
+class ConcurrencyLimitLoadTest {
+
+    private static final int PREFILL = 10_000;
+    private static final int PAGE_SIZE = 1000;
+    private static final int CAPACITY_CLIENTS = 64;
+    private static final int WRITE_PERCENT = 30;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Duration capacityDuration = Duration.parse(System.getProperty("load.limiter.capacity", "PT10S"));
+    private final Duration duration = Duration.parse(System.getProperty("load.limiter.duration", "PT20S"));
+    private final double overload = Double.parseDouble(System.getProperty("load.limiter.overload", "2.0"));
+    private final Duration p99Budget = Duration.parse(System.getProperty("load.limiter.p99", "PT0.5S"));
+
+    @Test
+    void testP99StaysBoundedUnderOverload() throws Exception {
+        // 先运行开启限流的一组，此时 JIT 预热最少，对限流最不利
+        Result limited = run(true, 0);
+        Result unlimited = run(false, limited.capacity());
+
+        System.out.printf("%.1fx overload for %s: capacity %.0f req/s, arrival rate %d req/s%n",
+                overload, duration, limited.capacity(), limited.rate());
+        System.out.printf("%-8s %-6s %-8s %9s %10s %10s %10s%n",
+                "limiter", "op", "outcome", "count", "p50 ms", "p99 ms", "max ms");
+        unlimited.print("off");
+        limited.print("on");
+
+        long budget = p99Budget.toNanos() / 1000;
+        assertTrue(limited.errors() == 0, limited.errors() + " requests failed");
+        assertTrue(limited.missingRetryAfter() == 0, limited.missingRetryAfter() + " 503 responses lack Retry-After");
+        Histogram accepted = limited.histogram(false);
+        Histogram shed = limited.histogram(true);
+        // 过载时限流必须真正生效，否则 p99 达标只说明压力没有到达服务端
+        assertTrue(shed.getTotalCount() > 0, "Limiter shed no requests at " + overload + "x overload");
+        assertTrue(accepted.getValueAtPercentile(99) <= budget, String.format(
+                "p99 of accepted requests is %.1f ms under overload, budget %d ms",
+                accepted.getValueAtPercentile(99) / 1000.0, p99Budget.toMillis()));
+        assertTrue(shed.getValueAtPercentile(99) <= budget, String.format(
+                "p99 of shed requests is %.1f ms under overload, budget %d ms",
+                shed.getValueAtPercentile(99) / 1000.0, p99Budget.toMillis()));
+    }
+
+    /**
+     * @param capacity 已测得的服务能力，为 0 时在本次运行中测量
+     */
+    private Result run(boolean limiter, double capacity) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionManagementApplication.class)
+                .properties(
+                        "server.port=0",
+                        "transaction.limiter.enabled=" + limiter,
+                        "logging.level.com.example=INFO")
+                .run();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            Load load = new Load(http, ((WebServerApplicationContext) context).getWebServer().getPort());
+            load.prefill();
+            load.measureCapacity(clients);
+            if (capacity == 0) {
+                capacity = load.measureCapacity(clients);
+            }
+            int rate = (int) Math.ceil(capacity * overload);
+            load.generate(clients, rate, Duration.ofSeconds(2));
+            load.reset();
+            load.generate(clients, rate, duration);
+            if (limiter) {
+                printLimiter(context.getBean(MeterRegistry.class));
+            }
+            return new Result(capacity, rate, load.histograms(), load.errors.get(), load.missingRetryAfter.get());
+        }
+    }
+
+    private static void printLimiter(MeterRegistry registry) {
+        for (String kind : List.of("read", "write")) {
+            System.out.printf("limiter %-5s limit=%.0f rtt=%.2f ms baseline=%.2f ms accepted=%.0f rejected=%.0f%n",
+                    kind, registry.get("transaction.limiter.limit").tag("kind", kind).gauge().value(),
+                    registry.get("transaction.limiter.rtt").tags("kind", kind, "window", "short")
+                            .timeGauge().value(TimeUnit.MILLISECONDS),
+                    registry.get("transaction.limiter.rtt").tags("kind", kind, "window", "baseline")
+                            .timeGauge().value(TimeUnit.MILLISECONDS),
+                    registry.get("transaction.limiter.requests").tags("kind", kind, "outcome", "accepted")
+                            .counter().count(),
+                    registry.get("transaction.limiter.requests").tags("kind", kind, "outcome", "rejected")
+                            .counter().count());
+        }
+    }
+
+    private final class Load {
+
+        private final HttpClient http;
+        private final int port;
+        /** 下标为 [是否写入][是否被拒绝] */
+        private final Recorder[][] recorders = {
+                {new Recorder(HIGHEST_TRACKABLE_MICROS, 3), new Recorder(HIGHEST_TRACKABLE_MICROS, 3)},
+                {new Recorder(HIGHEST_TRACKABLE_MICROS, 3), new Recorder(HIGHEST_TRACKABLE_MICROS, 3)}};
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong missingRetryAfter = new AtomicLong();
+
+        Load(HttpClient http, int port) {
+            this.http = http;
+            this.port = port;
+        }
+
+        void prefill() throws IOException, InterruptedException {
+            for (int done = 0; done < PREFILL; done += PAGE_SIZE) {
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    body.append(i == 0 ? "" : ",")
+                            .append("{\"type\":\"DEPOSIT\",\"amount\":100.00,\"sourceAccount\":\"acct-")
+                            .append(i % 100).append("\"}");
+                }
+                HttpResponse<String> response = http.send(request("/api/transactions/batch")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.append("]").toString()))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                assertTrue(response.statusCode() == 200, "Prefill failed: " + response.body());
+            }
+        }
+
+        /**
+         * 闭环并发请求，返回完成速率（只计成功的请求）
+         */
+        double measureCapacity(ExecutorService clients) throws InterruptedException {
+            AtomicLong completed = new AtomicLong();
+            long start = System.nanoTime();
+            long end = start + capacityDuration.toNanos();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < CAPACITY_CLIENTS; i++) {
+                workers.add(clients.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        try {
+                            if (http.send(next(write()), HttpResponse.BodyHandlers.discarding()).statusCode() < 400) {
+                                completed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            // 只统计成功的请求
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return completed.get() / ((System.nanoTime() - start) / 1e9);
+        }
+
+        void generate(ExecutorService clients, int rate, Duration length) throws InterruptedException {
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            long end = start + length.toNanos();
+            List<Future<?>> inFlight = new ArrayList<>();
+            for (long intended = start; intended < end; intended += interval) {
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                long plannedAt = intended;
+                inFlight.add(clients.submit(() -> execute(write(), plannedAt)));
+            }
+            for (Future<?> future : inFlight) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+
+        void reset() {
+            for (Recorder[] byOutcome : recorders) {
+                for (Recorder recorder : byOutcome) {
+                    recorder.reset();
+                }
+            }
+            errors.set(0);
+            missingRetryAfter.set(0);
+        }
+
+        Histogram[][] histograms() {
+            Histogram[][] histograms = new Histogram[2][2];
+            for (int op = 0; op < 2; op++) {
+                for (int outcome = 0; outcome < 2; outcome++) {
+                    histograms[op][outcome] = recorders[op][outcome].getIntervalHistogram();
+                }
+            }
+            return histograms;
+        }
+
+        private void execute(boolean write, long plannedAt) {
+            try {
+                HttpResponse<Void> response = http.send(next(write), HttpResponse.BodyHandlers.discarding());
+                long latencyMicros = Math.min((System.nanoTime() - plannedAt) / 1000, HIGHEST_TRACKABLE_MICROS);
+                int op = write ? 1 : 0;
+                if (response.statusCode() == 503) {
+                    recorders[op][1].recordValue(latencyMicros);
+                    if (response.headers().firstValue("Retry-After").isEmpty()) {
+                        missingRetryAfter.incrementAndGet();
+                    }
+                } else if (response.statusCode() < 400) {
+                    recorders[op][0].recordValue(latencyMicros);
+                } else {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean write() {
+            return ThreadLocalRandom.current().nextInt(100) < WRITE_PERCENT;
+        }
+
+        private HttpRequest next(boolean write) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (!write) {
+                return request("/api/transactions?page=" + random.nextInt(1, PREFILL / PAGE_SIZE + 1)
+                        + "&size=" + PAGE_SIZE).GET().build();
+            }
+            return request("/api/transactions")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"DEPOSIT\",\"amount\":"
+                            + random.nextInt(1, 1000) + ".00,\"sourceAccount\":\"acct-" + random.nextInt(100) + "\"}"))
+                    .build();
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(Duration.ofMinutes(1));
+        }
+    }
+
+    /**
+     * @param histograms 下标为 [是否写入][是否被拒绝]
+     */
+    private record Result(double capacity, int rate, Histogram[][] histograms, long errors, long missingRetryAfter) {
+
+        /** 读写合并后被接受或被拒绝请求的延迟 */
+        Histogram histogram(boolean shed) {
+            Histogram merged = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+            merged.add(histograms[0][shed ? 1 : 0]);
+            merged.add(histograms[1][shed ? 1 : 0]);
+            return merged;
+        }
+
+        void print(String limiter) {
+            for (int op = 0; op < 2; op++) {
+                for (int outcome = 0; outcome < 2; outcome++) {
+                    Histogram histogram = histograms[op][outcome];
+                    if (histogram.getTotalCount() > 0) {
+                        System.out.printf("%-8s %-6s %-8s %,9d %10.2f %10.2f %10.2f%n", limiter,
+                                op == 1 ? "write" : "read", outcome == 1 ? "shed" : "accepted",
+                                histogram.getTotalCount(), histogram.getValueAtPercentile(50) / 1000.0,
+                                histogram.getValueAtPercentile(99) / 1000.0, histogram.getMaxValue() / 1000.0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.transaction.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testRejectsBeyondLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(3, 1, 10, 1.5, 0, 1);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(MILLIS);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(3, limiter.inflight());
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyIsFlat() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200, 1.5, 0, 1);
+        saturate(limiter, 1000, 0);
+        assertTrue(limiter.limit() > 40, "Limit should grow while latency is flat, was " + limiter.limit());
+    }
+
+    @Test
+    void testLimitSettlesNearTheQueueingKnee() {
+        // 并发超过 50 后开始排队，延迟与并发成正比
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 1000, 1.5, 0, 1);
+        saturate(limiter, 10_000, 50);
+        assertTrue(limiter.limit() >= 25 && limiter.limit() <= 100,
+                "Limit should settle near the knee at 50, was " + limiter.limit());
+    }
+
+    @Test
+    void testIdleLimiterDoesNotGrow() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200, 1.5, 0, 1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MILLIS);
+        }
+        assertEquals(20, limiter.limit());
+    }
+
+    @Test
+    void testFilterShedsWritesWithRetryAfterButKeepsReadsSeparate() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, 1, 1, 1, 1.5, Duration.ZERO, 1,
+                Duration.ofSeconds(2), new SimpleMeterRegistry());
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        MockHttpServletResponse read = new MockHttpServletResponse();
+        // 第一个写请求占住唯一的写名额时，再来的写请求被拒绝，读请求不受影响
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/transactions"), new MockHttpServletResponse(),
+                (request, response) -> {
+                    filter.doFilter(new MockHttpServletRequest("POST", "/api/transactions"), shed,
+                            new MockFilterChain());
+                    filter.doFilter(new MockHttpServletRequest("GET", "/api/transactions/1"), read,
+                            new MockFilterChain());
+                });
+        assertEquals(503, shed.getStatus());
+        assertEquals("2", shed.getHeader("Retry-After"));
+        assertEquals(200, read.getStatus());
+    }
+
+    @Test
+    void testFilterSkipsStreamingAndDoesNotSampleBatches() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, 1, 1, 1, 1.5, Duration.ZERO, 1,
+                Duration.ofSeconds(2), registry);
+        MockHttpServletResponse imported = new MockHttpServletResponse();
+        // 写名额被占住时导入仍然放行
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/transactions"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(
+                        new MockHttpServletRequest("POST", "/api/transactions/import"), imported,
+                        new MockFilterChain()));
+        assertEquals(200, imported.getStatus());
+
+        double rtt = registry.get("transaction.limiter.rtt").tags("kind", "write", "window", "short")
+                .timeGauge().value(TimeUnit.NANOSECONDS);
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/transactions/batch"), new MockHttpServletResponse(),
+                (request, response) -> LockSupport.parkNanos(50 * MILLIS));
+        assertEquals(rtt, registry.get("transaction.limiter.rtt").tags("kind", "write", "window", "short")
+                .timeGauge().value(TimeUnit.NANOSECONDS));
+        assertEquals(0, registry.get("transaction.limiter.inflight").tag("kind", "write").gauge().value());
+    }
+
+    /**
+     * 请求源源不断的闭环负载：每完成一个请求立即补满到当前上限，每次完成构成一个采样窗口
+     *
+     * @param knee 并发超过该值后延迟按比例增长，为 0 时延迟恒定
+     */
+    private static void saturate(ConcurrencyLimiter limiter, int completions, int knee) {
+        while (limiter.tryAcquire()) {
+            // 占满初始上限
+        }
+        for (int i = 0; i < completions; i++) {
+            int inflight = limiter.inflight();
+            limiter.release(knee == 0 ? MILLIS : MILLIS * Math.max(knee, inflight) / knee);
+            while (limiter.tryAcquire()) {
+                // 补满到新的上限
+            }
+        }
+    }
+}
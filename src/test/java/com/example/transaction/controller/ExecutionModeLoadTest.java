@@ -0,0 +1,140 @@
+package com.example.transaction.controller;
+
+import com.example.transaction.TransactionManagementApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 平台线程与虚拟线程两种执行模式的突发负载对比。
+ * 开启预写日志，请求在等待 fsync 时阻塞；每轮同时发出远超 Tomcat 线程数的请求，
+ * 分别统计 p50、p99、最大延迟和吞吐。
+ * <p>
+ * 耗时较长，只在 load-test profile 中运行：mvn -P load-test test
+ */
+@Tag("load")
+class ExecutionModeLoadTest {
+
+    private static final int BURST = Integer.getInteger("load.burst", 2000);
+    private static final int ROUNDS = Integer.getInteger("load.rounds", 10);
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final String BODY = "{\"type\":\"DEPOSIT\",\"amount\":100.00,\"description\":\"burst\"}";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCompareBurstLatencyBetweenExecutionModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("Burst of %,d requests x %d rounds%n", BURST, ROUNDS);
+        System.out.printf("%-9s %10s %10s %10s %12s%n", "mode", "p50 ms", "p99 ms", "max ms", "req/s");
+        System.out.println(platform.format("platform"));
+        System.out.println(virtual.format("virtual"));
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        Path data = directory.resolve(virtualThreads ? "virtual" : "platform");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionManagementApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "transaction.wal.enabled=true",
+                        "transaction.wal.directory=" + data.resolve("wal"),
+                        "transaction.snapshot.directory=" + data.resolve("snapshots"),
+                        "logging.level.com.example=INFO")
+                .run();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/transactions"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(1))
+                    .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                    .build();
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                burst(http, clients, request);
+            }
+            List<long[]> rounds = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                rounds.add(burst(http, clients, request));
+            }
+            long elapsed = System.nanoTime() - start;
+            long[] latencies = rounds.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result(latencies, elapsed);
+        }
+    }
+
+    /** 同时发出一轮请求，返回每个请求的延迟（纳秒） */
+    private long[] burst(HttpClient http, ExecutorService clients, HttpRequest request) throws InterruptedException {
+        long[] latencies = new long[BURST];
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(BURST);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            int slot = i;
+            clients.execute(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    long start = System.nanoTime();
+                    HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies[slot] = System.nanoTime() - start;
+                    if (response.statusCode() == 201) {
+                        created.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    latencies[slot] = Long.MAX_VALUE;
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        ready.await();
+        go.countDown();
+        done.await();
+        assertEquals(BURST, created.get(), "Not every request in the burst succeeded");
+        return latencies;
+    }
+
+    private record Result(long[] sortedLatencies, long elapsedNanos) {
+        String format(String mode) {
+            return String.format("%-9s %10.1f %10.1f %10.1f %,12.0f", mode,
+                    percentile(0.50), percentile(0.99),
+                    sortedLatencies[sortedLatencies.length - 1] / 1e6,
+                    sortedLatencies.length / (elapsedNanos / 1e9));
+        }
+
+        double percentile(double p) {
+            int index = (int) Math.ceil(p * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
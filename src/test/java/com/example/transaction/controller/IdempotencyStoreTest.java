@@ -0,0 +1,109 @@
+package com.example.transaction.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Idempotency-Key：重试重放第一次的响应，并发的重复请求只执行一次，同一个键用于不同请求时返回 422
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class IdempotencyStoreTest {
+
+    private static final String DEPOSIT = "{\"type\":\"DEPOSIT\",\"amount\":100.00,\"sourceAccount\":\"acct-1\"}";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void testRetryReplaysFirstResponse() {
+        ResponseEntity<String> first = post("key-1", DEPOSIT);
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertEquals("false", first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+
+        ResponseEntity<String> retry = post("key-1", DEPOSIT);
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals(1, totalElements());
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                post("key-1", DEPOSIT.replace("100.00", "200.00")).getStatusCode());
+        assertEquals(1.0, registry.get("transaction.idempotency.requests").tag("outcome", "replayed")
+                .counter().count());
+        assertTrue(registry.get("transaction.idempotency.store.memory").gauge().value() > 0);
+    }
+
+    @Test
+    void testRejectedRequestIsReplayedWithoutRevalidation() {
+        String withdrawal = "{\"type\":\"WITHDRAWAL\",\"amount\":50.00,\"sourceAccount\":\"acct-2\"}";
+        assertEquals(HttpStatus.BAD_REQUEST, post("key-2", withdrawal).getStatusCode());
+
+        // 入账之后同一个键仍然得到第一次的结果，换一个键才重新执行
+        post("key-3", DEPOSIT.replace("acct-1", "acct-2"));
+        assertEquals(HttpStatus.BAD_REQUEST, post("key-2", withdrawal).getStatusCode());
+        assertEquals(HttpStatus.CREATED, post("key-4", withdrawal).getStatusCode());
+    }
+
+    @Test
+    void testConcurrentDuplicatesCoalesce() throws Exception {
+        int clients = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return post("key-burst", DEPOSIT);
+            }));
+        }
+        start.countDown();
+        Set<String> bodies = new HashSet<>();
+        for (Future<ResponseEntity<String>> response : responses) {
+            assertEquals(HttpStatus.CREATED, response.get().getStatusCode());
+            bodies.add(response.get().getBody());
+        }
+        executor.shutdown();
+
+        assertEquals(1, bodies.size());
+        assertEquals(1, totalElements());
+        assertEquals(1.0, registry.get("transaction.idempotency.requests").tag("outcome", "executed")
+                .counter().count());
+    }
+
+    private ResponseEntity<String> post(String key, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(IdempotencyStore.HEADER, key);
+        return restTemplate.postForEntity("/api/transactions", new HttpEntity<>(body, headers), String.class);
+    }
+
+    private long totalElements() {
+        String page = restTemplate.getForObject("/api/transactions?page=2", String.class);
+        return Long.parseLong(page.replaceAll(".*\"totalElements\":(\\d+).*", "$1"));
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.transaction.controller;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 开环负载：请求按固定到达率发出，不等待前一个请求完成；延迟从计划发出时刻算起，
+ * 服务端变慢时排队时间也计入，避免闭环压测的协同遗漏。
+ * 各操作的延迟记入 HDR 直方图，p99、p99.9 或吞吐超出预算时测试失败。
+ * <p>
+ * 到达率、时长、操作比例和预算都来自系统属性，默认值在 load-test profile 中：mvn -P load-test test
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OpenLoopLoadTest {
+
+    private static final int PREFILL = 10_000;
+    private static final int PREFILL_BATCH = 1_000;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\":(\\d+)");
+
+    private enum Operation {
+        READ, WRITE, PAGE, DELETE
+    }
+
+    private final int rate = Integer.getInteger("load.rate", 200);
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT30S"));
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+    private final Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "read=60,write=25,page=10,delete=5"));
+    private final Duration p99Budget = Duration.parse(System.getProperty("load.slo.p99", "PT0.05S"));
+    private final Duration p999Budget = Duration.parse(System.getProperty("load.slo.p999", "PT0.2S"));
+    private final double minThroughput = Double.parseDouble(System.getProperty("load.slo.min-throughput", "0.95"));
+
+    @LocalServerPort
+    private int port;
+
+    private HttpClient http;
+    /** 本次运行中新建的交易，删除只针对它们，读取只针对预置数据 */
+    private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private volatile boolean recording;
+
+    @Test
+    void testOpenLoopMixStaysWithinLatencyBudgets() throws Exception {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            http = HttpClient.newBuilder().executor(clients).connectTimeout(Duration.ofSeconds(10)).build();
+            prefill();
+
+            generate(clients, warmup);
+            // 预热阶段的结果丢弃
+            recorders.values().forEach(Recorder::reset);
+            errors.set(0);
+            completed.set(0);
+            recording = true;
+            long start = System.nanoTime();
+            long scheduled = generate(clients, duration);
+            recording = false;
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Histogram total = report(scheduled, seconds);
+            double throughput = completed.get() / seconds;
+            assertTrue(errors.get() == 0, errors.get() + " requests failed");
+            assertTrue(throughput >= rate * minThroughput,
+                    String.format("Throughput %.0f req/s is below %.0f%% of the %d req/s arrival rate",
+                            throughput, minThroughput * 100, rate));
+            assertTrue(total.getValueAtPercentile(99) <= p99Budget.toNanos() / 1000,
+                    "p99 latency exceeds budget of " + p99Budget.toMillis() + " ms");
+            assertTrue(total.getValueAtPercentile(99.9) <= p999Budget.toNanos() / 1000,
+                    "p99.9 latency exceeds budget of " + p999Budget.toMillis() + " ms");
+        } finally {
+            if (http != null) {
+                http.close();
+            }
+        }
+    }
+
+    /**
+     * 在给定时长内按到达率发出请求，等待全部完成，返回发出的请求数
+     */
+    private long generate(ExecutorService clients, Duration length) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        List<Future<?>> inFlight = new ArrayList<>();
+        long sent = 0;
+        for (long intended = start; intended < end; intended += interval) {
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            long plannedAt = intended;
+            Operation operation = pick();
+            inFlight.add(clients.submit(() -> execute(operation, plannedAt)));
+            sent++;
+        }
+        for (Future<?> future : inFlight) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                errors.incrementAndGet();
+            }
+        }
+        return sent;
+    }
+
+    private void execute(Operation operation, long plannedAt) {
+        Operation actual = operation;
+        HttpRequest request;
+        Long deleteId = operation == Operation.DELETE ? deletable.poll() : null;
+        if (operation == Operation.DELETE && deleteId == null) {
+            // 还没有可删除的记录时改为读取
+            actual = Operation.READ;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (actual) {
+            case WRITE -> request = request("/api/transactions")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"type\":\"DEPOSIT\",\"amount\":" + random.nextInt(1, 1000)
+                                    + ".00,\"sourceAccount\":\"acct-" + random.nextInt(100) + "\"}"))
+                    .build();
+            case PAGE -> request = request("/api/transactions?page=" + random.nextInt(1, 50) + "&size=20").GET().build();
+            case DELETE -> request = request("/api/transactions/" + deleteId).DELETE().build();
+            default -> request = request("/api/transactions/" + random.nextLong(1, PREFILL + 1)).GET().build();
+        }
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            long latencyMicros = (System.nanoTime() - plannedAt) / 1000;
+            if (response.statusCode() >= 400) {
+                errors.incrementAndGet();
+                return;
+            }
+            if (actual == Operation.WRITE) {
+                Matcher matcher = CREATED_ID.matcher(response.body());
+                if (matcher.find()) {
+                    deletable.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+            if (recording) {
+                recorders.get(actual).recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                completed.incrementAndGet();
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        int cumulative = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            cumulative += entry.getValue();
+            if (roll < cumulative) {
+                return entry.getKey();
+            }
+        }
+        return Operation.READ;
+    }
+
+    private void prefill() throws IOException, InterruptedException {
+        for (int done = 0; done < PREFILL; done += PREFILL_BATCH) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < PREFILL_BATCH; i++) {
+                body.append(i == 0 ? "" : ",")
+                        .append("{\"type\":\"DEPOSIT\",\"amount\":100.00,\"sourceAccount\":\"acct-")
+                        .append(i % 100).append("\"}");
+            }
+            HttpResponse<String> response = http.send(request("/api/transactions/batch")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.append("]").toString()))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertTrue(response.statusCode() == 200, "Prefill failed: " + response.body());
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).timeout(Duration.ofSeconds(30));
+    }
+
+    /**
+     * 打印各操作的分位数，并把完整分布写到 target/load 下，返回合并后的直方图
+     */
+    private Histogram report(long scheduled, double seconds) throws IOException {
+        Path output = Path.of("target", "load");
+        Files.createDirectories(output);
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        System.out.printf("Open-loop load: %d req/s for %s, %,d scheduled, %,d completed (%.0f req/s), %d errors%n",
+                rate, duration, scheduled, completed.get(), completed.get() / seconds, errors.get());
+        System.out.printf("%-8s %9s %10s %10s %10s %10s%n", "op", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            total.add(histogram);
+            print(operation.name().toLowerCase(), histogram);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    output.resolve(operation.name().toLowerCase() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        print("all", total);
+        return total;
+    }
+
+    private static void print(String name, Histogram histogram) {
+        System.out.printf("%-8s %,9d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        int sum = 0;
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), weight);
+            sum += weight;
+        }
+        if (sum != 100) {
+            throw new IllegalArgumentException("load.mix weights must add up to 100: " + spec);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.transaction.controller;
+
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(
+    classes = com.example.transaction.TransactionManagementApplication.class,
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TransactionConcurrencyStressTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final int THREAD_COUNT = 64;
+    private final int WITHDRAWALS_PER_THREAD = 20;
+    private ExecutorService executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 并发取款压力测试
+     * 64 个线程同时对同一账户取款，验证不会透支；另一账户的取款互不影响
+     */
+    @Test
+    void testConcurrentWithdrawalsNeverOverdraw() throws Exception {
+        // 每个账户存入 1000，每笔取款 10，最多只能成功 100 笔
+        deposit("acct-a", "1000.00");
+        deposit("acct-b", "1000.00");
+
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CyclicBarrier startBarrier = new CyclicBarrier(THREAD_COUNT);
+        AtomicInteger successA = new AtomicInteger();
+        AtomicInteger successB = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            String account = i % 2 == 0 ? "acct-a" : "acct-b";
+            AtomicInteger success = i % 2 == 0 ? successA : successB;
+            executor.execute(() -> {
+                try {
+                    startBarrier.await();
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < WITHDRAWALS_PER_THREAD; j++) {
+                    ResponseEntity<String> response = post(account, TransactionType.WITHDRAWAL, "10.00");
+                    if (response.getStatusCode() == HttpStatus.CREATED) {
+                        success.incrementAndGet();
+                    } else if (response.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        long duration = System.currentTimeMillis() - startTime;
+
+        BigDecimal balanceA = balance("acct-a");
+        BigDecimal balanceB = balance("acct-b");
+
+        System.out.println("Concurrent withdrawal stress test results:");
+        System.out.println("Threads: " + THREAD_COUNT);
+        System.out.println("Withdrawal attempts: " + THREAD_COUNT * WITHDRAWALS_PER_THREAD);
+        System.out.println("Successful withdrawals: " + successA.get() + " / " + successB.get());
+        System.out.println("Rejected withdrawals: " + rejected.get());
+        System.out.println("Final balances: " + balanceA + " / " + balanceB);
+        System.out.println("Total time: " + duration + " ms");
+
+        assertEquals(100, successA.get());
+        assertEquals(100, successB.get());
+        assertEquals(THREAD_COUNT * WITHDRAWALS_PER_THREAD - 200, rejected.get());
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceA));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceB));
+    }
+
+    private void deposit(String account, String amount) {
+        assertEquals(HttpStatus.CREATED, post(account, TransactionType.DEPOSIT, amount).getStatusCode());
+    }
+
+    private ResponseEntity<String> post(String account, TransactionType type, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setSourceAccount(account);
+        transaction.setDescription("Stress test");
+        return restTemplate.postForEntity("/api/transactions", transaction, String.class);
+    }
+
+    private BigDecimal balance(String account) {
+        return restTemplate.getForObject("/api/transactions/accounts/" + account + "/balance", BigDecimal.class);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.transaction.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 响应缓存：命中时返回相同的字节和 ETag，If-None-Match 匹配时返回 304，更新、删除和新增后内容随之变化；
+ * PUT 带 If-Match 时只有 ETag 仍是当前表示才会更新，否则返回 412
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TransactionResponseCacheTest {
+
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\":(\\d+)");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void testTransactionEtagRevalidatesAndChangesOnUpdate() {
+        long id = create("100.00");
+
+        ResponseEntity<String> first = get("/api/transactions/" + id, null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\""), "ETag should be strong: " + etag);
+
+        ResponseEntity<String> again = get("/api/transactions/" + id, null);
+        assertEquals(first.getBody(), again.getBody());
+        assertEquals(etag, again.getHeaders().getETag());
+
+        ResponseEntity<String> notModified = get("/api/transactions/" + id, etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+
+        restTemplate.exchange("/api/transactions/" + id, HttpMethod.PUT,
+                json("{\"type\":\"DEPOSIT\",\"amount\":250.00,\"sourceAccount\":\"acct-1\",\"status\":\"COMPLETED\"}"),
+                String.class);
+        ResponseEntity<String> updated = get("/api/transactions/" + id, etag);
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertTrue(updated.getBody().contains("250.0"), updated.getBody());
+        assertNotEquals(etag, updated.getHeaders().getETag());
+
+        restTemplate.delete("/api/transactions/" + id);
+        assertTrue(get("/api/transactions/" + id, null).getStatusCode().isError(),
+                "Deleted transaction must not be served from the cache");
+    }
+
+    @Test
+    void testIfMatchUpdatesOnlyTheCurrentRepresentation() {
+        long id = create("100.00");
+        String etag = get("/api/transactions/" + id, null).getHeaders().getETag();
+        String body = "{\"type\":\"DEPOSIT\",\"amount\":120.00,\"sourceAccount\":\"acct-1\"}";
+
+        ResponseEntity<String> first = put(id, body, etag);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertTrue(first.getBody().contains("\"version\":2"), first.getBody());
+
+        // 同一个 ETag 再次使用时表示已经过期
+        assertEquals(HttpStatus.PRECONDITION_FAILED, put(id, body, etag).getStatusCode());
+        assertEquals(HttpStatus.OK, put(id, body, get("/api/transactions/" + id, null).getHeaders().getETag())
+                .getStatusCode());
+        assertEquals(HttpStatus.OK, put(id, body, "*").getStatusCode());
+    }
+
+    @Test
+    void testFirstPageIsCachedUntilAnyChange() {
+        create("1.00");
+        ResponseEntity<String> first = get("/api/transactions?page=1&size=10", null);
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/api/transactions?page=1&size=10", etag).getStatusCode());
+
+        create("2.00");
+        ResponseEntity<String> afterInsert = get("/api/transactions?page=1&size=10", etag);
+        assertEquals(HttpStatus.OK, afterInsert.getStatusCode());
+        assertTrue(afterInsert.getBody().contains("\"totalElements\":2"), afterInsert.getBody());
+
+        // 其他页和游标分页不经过缓存
+        assertNull(get("/api/transactions?page=2&size=10", null).getHeaders().getETag());
+    }
+
+    private long create(String amount) {
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/transactions",
+                json("{\"type\":\"DEPOSIT\",\"amount\":" + amount + ",\"sourceAccount\":\"acct-1\"}"), String.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        Matcher matcher = CREATED_ID.matcher(response.getBody());
+        assertTrue(matcher.find());
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private ResponseEntity<String> put(long id, String body, String ifMatch) {
+        HttpEntity<String> request = json(body);
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(request.getHeaders());
+        headers.setIfMatch(ifMatch);
+        return restTemplate.exchange("/api/transactions/" + id, HttpMethod.PUT, new HttpEntity<>(body, headers),
+                String.class);
+    }
+
+    private ResponseEntity<String> get(String path, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return restTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private static HttpEntity<String> json(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.BatchItemResult;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.service.BalanceLedger;
+import com.example.transaction.service.IngestionSequencer;
+import com.example.transaction.service.RefundIndex;
+import com.example.transaction.service.TransactionMetrics;
+import com.example.transaction.service.TransactionRollups;
+import com.example.transaction.service.TransactionServiceImpl;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快照 + 日志尾部恢复，以及重启后的就绪耗时
+ */
+class SnapshotRecoveryTest {
+
+    /** 默认规模适合常规构建；评估 1000 万条时用 -Drecovery.records=10000000 并调大堆内存 */
+    private static final int RECORDS = Integer.getInteger("recovery.records", 200_000);
+    private static final int BATCH = 1000;
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(WriteAheadLog::close);
+    }
+
+    /**
+     * 快照期间写入不停顿：并发写入与快照重叠，恢复结果应与关闭前完全一致，且被覆盖的日志段已删除
+     */
+    @Test
+    void testFuzzySnapshotPlusLogTailRecoversExactState() throws Exception {
+        TransactionServiceImpl service = open();
+        for (int i = 0; i < 5_000; i++) {
+            service.createTransaction(deposit("acct-" + (i % 10)));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            long i = 0;
+            while (!stop.get()) {
+                Transaction created = service.createTransaction(deposit("acct-w"));
+                if (i++ % 3 == 0) {
+                    service.deleteTransaction(created.getId() - 1);
+                }
+            }
+        });
+        writer.start();
+        service.snapshot();
+        service.snapshot();
+        stop.set(true);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        for (int i = 0; i < 100; i++) {
+            service.createTransaction(deposit("acct-tail"));
+        }
+        Map<Long, String> before = contents(service);
+        BigDecimal balance = service.getAccountBalance("acct-w");
+        reopen();
+
+        assertEquals(1, files(".snap"));
+        assertTrue(files(".wal") <= 2, "Segments covered by the snapshot should be removed");
+        TransactionServiceImpl recovered = open();
+        assertEquals(before, contents(recovered));
+        assertEquals(0, balance.compareTo(recovered.getAccountBalance("acct-w")));
+    }
+
+    @Test
+    void testTimeToReadyAfterRestart() {
+        TransactionServiceImpl service = open();
+        List<Transaction> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < RECORDS; i += BATCH) {
+            batch.clear();
+            for (int j = 0; j < BATCH; j++) {
+                batch.add(deposit("acct-" + (j % 100)));
+            }
+            for (BatchItemResult result : service.createTransactions(batch)) {
+                assertTrue(result.isSuccess());
+            }
+        }
+        reopen();
+
+        long replayStart = System.nanoTime();
+        service = open();
+        long replayMillis = (System.nanoTime() - replayStart) / 1_000_000;
+        assertEquals(RECORDS, service.getAllTransactions(0, 1).getTotalElements());
+        service.snapshot();
+        reopen();
+
+        long snapshotStart = System.nanoTime();
+        service = open();
+        long snapshotMillis = (System.nanoTime() - snapshotStart) / 1_000_000;
+        assertEquals(RECORDS, service.getAllTransactions(0, 1).getTotalElements());
+
+        System.out.printf("Time to ready with %,d transactions: full log replay %d ms, snapshot %d ms%n",
+                RECORDS, replayMillis, snapshotMillis);
+    }
+
+    private TransactionServiceImpl open() {
+        WriteAheadLog wal = new WriteAheadLog(true, directory, Duration.ZERO, 1024, DataSize.ofMegabytes(4));
+        opened.add(wal);
+        TransactionServiceImpl service = new TransactionServiceImpl(new InMemoryTransactionStore(),
+                new BalanceLedger(), new TransactionIndex(), new TimeBucketIndex(Duration.ofMinutes(1)),
+                new TransactionRollups(), new RefundIndex(), wal,
+                new SnapshotStore(directory), IngestionSequencer.direct(),
+                List.of(), new TransactionMetrics(new SimpleMeterRegistry()),
+                ClusterTopology.standalone());
+        service.recover();
+        return service;
+    }
+
+    private void reopen() {
+        opened.forEach(WriteAheadLog::close);
+        opened.clear();
+    }
+
+    private long files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.toString().endsWith(suffix)).count();
+        }
+    }
+
+    private static Map<Long, String> contents(TransactionServiceImpl service) {
+        Map<Long, String> contents = new TreeMap<>();
+        service.exportTransactions(null, null, null).forEachRemaining(t ->
+                contents.put(t.getId(), t.getType() + " " + t.getAmount() + " " + t.getSourceAccount()
+                        + " " + t.getTimestamp()));
+        return contents;
+    }
+
+    private static Transaction deposit(String account) {
+        Transaction transaction = new Transaction();
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setSourceAccount(account);
+        return transaction;
+    }
+}
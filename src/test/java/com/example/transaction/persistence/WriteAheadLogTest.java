@@ -0,0 +1,191 @@
+package com.example.transaction.persistence;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.BatchItemResult;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.service.BalanceLedger;
+import com.example.transaction.service.IngestionSequencer;
+import com.example.transaction.service.RefundIndex;
+import com.example.transaction.service.TransactionMetrics;
+import com.example.transaction.service.TransactionRollups;
+import com.example.transaction.service.TransactionServiceImpl;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预写日志的重放正确性与组提交吞吐基准；吞吐基准依赖机器性能，只在 load-test profile 下运行
+ */
+class WriteAheadLogTest {
+
+    /** 与 Tomcat 默认的最大工作线程数一致 */
+    private static final int WRITERS = 200;
+    private static final int WRITES_PER_WRITER = 100;
+    private static final int ROUNDS = 3;
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(WriteAheadLog::close);
+    }
+
+    @Test
+    void testReplayRebuildsStoreLedgerAndIdCounter() {
+        TransactionServiceImpl service = open(directory);
+        service.createTransaction(transaction(TransactionType.DEPOSIT, "100.00", "acct-a"));
+        Transaction withdrawal = service.createTransaction(transaction(TransactionType.WITHDRAWAL, "30.00", "acct-a"));
+        List<BatchItemResult> batch = service.createTransactions(List.of(
+                transaction(TransactionType.DEPOSIT, "5.00", "acct-b"),
+                transaction(TransactionType.DEPOSIT, "7.00", "acct-b")));
+        Transaction updated = transaction(TransactionType.WITHDRAWAL, "20.00", "acct-a");
+        updated.setStatus(TransactionStatus.COMPLETED);
+        service.updateTransaction(withdrawal.getId(), updated);
+        service.deleteTransaction(batch.get(1).getId());
+        reopen();
+
+        TransactionServiceImpl recovered = open(directory);
+        assertEquals(3, recovered.getAllTransactions(0, 10).getTotalElements());
+        assertEquals(TransactionStatus.COMPLETED,
+                recovered.getTransactionById(withdrawal.getId()).orElseThrow().getStatus());
+        assertFalse(recovered.getTransactionById(batch.get(1).getId()).isPresent());
+        assertEquals(0, new BigDecimal("80.00").compareTo(recovered.getAccountBalance("acct-a")));
+        assertEquals(0, new BigDecimal("5.00").compareTo(recovered.getAccountBalance("acct-b")));
+        // 被删除的最大ID也不会再次分配
+        Transaction next = recovered.createTransaction(transaction(TransactionType.DEPOSIT, "1.00", "acct-c"));
+        assertEquals(batch.get(1).getId() + 1, next.getId());
+    }
+
+    @Test
+    void testTornTailIsTruncatedOnRecovery() throws IOException {
+        TransactionServiceImpl service = open(directory);
+        for (int i = 0; i < 10; i++) {
+            service.createTransaction(transaction(TransactionType.DEPOSIT, "10.00", "acct-a"));
+        }
+        reopen();
+
+        // 模拟崩溃时写了一半的记录
+        Path segment = segments().get(segments().size() - 1);
+        Files.write(segment, new byte[]{0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        TransactionServiceImpl recovered = open(directory);
+        assertEquals(10, recovered.getAllTransactions(0, 100).getTotalElements());
+        recovered.createTransaction(transaction(TransactionType.DEPOSIT, "10.00", "acct-a"));
+        reopen();
+
+        assertEquals(11, open(directory).getAllTransactions(0, 100).getTotalElements());
+    }
+
+    /**
+     * 多个并发写入方共享 fsync，开启持久化后的吞吐应与纯内存处于同一量级
+     */
+    @Test
+    @Tag("load")
+    void testGroupCommitThroughputStaysCloseToInMemory() throws Exception {
+        double[] inMemory = new double[ROUNDS];
+        double[] durable = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            inMemory[round] = throughput(service(WriteAheadLog.disabled(), directory));
+            durable[round] = throughput(open(Files.createTempDirectory(directory, "bench")));
+        }
+        Arrays.sort(inMemory);
+        Arrays.sort(durable);
+        double ratio = inMemory[ROUNDS / 2] / durable[ROUNDS / 2];
+        System.out.printf("Writes/s with %d writers: in-memory %,.0f, write-ahead log %,.0f (%.1fx)%n",
+                WRITERS, inMemory[ROUNDS / 2], durable[ROUNDS / 2], ratio);
+        assertTrue(ratio < 10, "Durable write throughput fell too far behind the in-memory path");
+    }
+
+    private double throughput(TransactionServiceImpl service) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < WRITERS; w++) {
+            String account = "acct-" + w;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                    service.createTransaction(transaction(TransactionType.DEPOSIT, "10.00", account));
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        assertEquals(WRITERS * WRITES_PER_WRITER, service.getAllTransactions(0, 1).getTotalElements());
+        return WRITERS * WRITES_PER_WRITER / seconds;
+    }
+
+    private TransactionServiceImpl open(Path dir) {
+        WriteAheadLog wal = new WriteAheadLog(true, dir, Duration.ZERO, 1024, DataSize.ofMegabytes(1));
+        opened.add(wal);
+        TransactionServiceImpl service = service(wal, dir);
+        service.recover();
+        return service;
+    }
+
+    private static TransactionServiceImpl service(WriteAheadLog wal, Path dir) {
+        return new TransactionServiceImpl(new InMemoryTransactionStore(), new BalanceLedger(),
+                new TransactionIndex(), new TimeBucketIndex(Duration.ofMinutes(1)),
+                new TransactionRollups(), new RefundIndex(), wal,
+                new SnapshotStore(dir), IngestionSequencer.direct(),
+                List.of(), new TransactionMetrics(new SimpleMeterRegistry()),
+                ClusterTopology.standalone());
+    }
+
+    private void reopen() {
+        opened.forEach(WriteAheadLog::close);
+        opened.clear();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static Transaction transaction(TransactionType type, String amount, String account) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setSourceAccount(account);
+        transaction.setDescription("WAL test");
+        return transaction;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.model.TransactionRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 复制日志的读写，以及长轮询的从库和等待读己之写的请求在虚拟线程上等待时不占住载体线程
+ */
+class ReplicationLogTest {
+
+    private static final int WAITERS = 64;
+
+    @Test
+    void testReadsContiguousEntriesAndDetectsOverwrittenPositions() throws InterruptedException {
+        ReplicationLog log = new ReplicationLog(ReplicationRole.LEADER, 4, new SimpleMeterRegistry());
+        for (long id = 1; id <= 3; id++) {
+            log.reset();
+            log.removed(new TransactionRecord(id, null, 1, null, null, null, null, null, TransactionRecord.NONE,
+                    null, TransactionRecord.FIRST_VERSION));
+        }
+        assertEquals(6, log.lastSequence());
+        ReplicationLog.Segment segment = log.read(3, 10, 0);
+        assertArrayEquals(new long[]{2, ReplicationLog.RESET, 3}, segment.ids());
+        assertEquals(6, segment.sequence());
+        assertEquals(6, segment.head());
+        ReplicationLog.Segment partial = log.read(3, 2, 0);
+        assertEquals(5, partial.sequence());
+        assertEquals(6, partial.head(), "A batch cut short by max must not count as caught up");
+        assertEquals(0, log.read(6, 10, 0).ids().length);
+        assertNull(log.read(1, 10, 0), "Position 1 has been overwritten");
+        assertNull(log.read(7, 10, 0), "Position 7 has not been written yet");
+    }
+
+    @Test
+    void testWaitersDoNotPinCarrierThreads() throws Exception {
+        ReplicationLog log = new ReplicationLog(ReplicationRole.LEADER, 16, new SimpleMeterRegistry());
+        Replicator replicator = new Replicator(ReplicationRole.NONE, "", 1, Duration.ofSeconds(1), null, null,
+                new SimpleMeterRegistry());
+        int carriersBefore = carriers();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<ReplicationLog.Segment>> polls = new ArrayList<>();
+            List<Future<Boolean>> reads = new ArrayList<>();
+            for (int i = 0; i < WAITERS; i++) {
+                polls.add(executor.submit(() -> log.read(0, 10, TimeUnit.SECONDS.toMillis(30))));
+                reads.add(executor.submit(() -> replicator.await(1, Duration.ofSeconds(2))));
+            }
+            await().atMost(Duration.ofSeconds(10)).until(() -> log.waiting() == WAITERS);
+            // 等待中的虚拟线程已卸载，载体线程数不应随等待者增加
+            int carriers = carriers();
+            assertTrue(carriers <= Math.max(carriersBefore, Runtime.getRuntime().availableProcessors()),
+                    WAITERS * 2 + " waiting virtual threads occupy " + carriers + " carrier threads");
+
+            log.reset();
+            for (Future<ReplicationLog.Segment> poll : polls) {
+                assertArrayEquals(new long[]{ReplicationLog.RESET}, poll.get(5, TimeUnit.SECONDS).ids());
+            }
+            for (Future<Boolean> read : reads) {
+                assertFalse(read.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertFalse(replicator.await(0, Duration.ZERO), "No token is satisfied before the snapshot is loaded");
+    }
+
+    /** 虚拟线程调度器当前的载体线程数 */
+    private static int carriers() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getClass().getName().equals("jdk.internal.misc.CarrierThread"))
+                .count();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.transaction.replication;
+
+import com.example.transaction.TransactionManagementApplication;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.store.TransactionStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一个 JVM 内启动一主两从：主库上已有的数据通过快照同步，之后的写入无论发往哪个节点都经主库复制到从库，
+ * 带序号令牌的读请求在从库上能读到自己的写入，最终各节点的数据（含版本号）一致
+ */
+class ReplicationTest {
+
+    private static final int FOLLOWERS = 2;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static final List<TestRestTemplate> clients = new ArrayList<>();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        int leaderPort = freePort();
+        contexts.add(new SpringApplicationBuilder(TransactionManagementApplication.class).run(
+                "--server.port=" + leaderPort,
+                "--transaction.replication.role=leader",
+                "--spring.main.banner-mode=off"));
+        clients.add(client(leaderPort));
+        // 从库启动前写入的数据只能通过快照获得
+        for (int i = 0; i < 20; i++) {
+            create(0, "DEPOSIT", "seed-" + i, "50.00");
+        }
+        for (int i = 0; i < FOLLOWERS; i++) {
+            int port = freePort();
+            contexts.add(new SpringApplicationBuilder(TransactionManagementApplication.class).run(
+                    "--server.port=" + port,
+                    "--transaction.replication.role=follower",
+                    "--transaction.replication.leader=http://localhost:" + leaderPort,
+                    "--transaction.replication.poll-wait=PT0.2S",
+                    "--spring.main.banner-mode=off"));
+            clients.add(client(port));
+        }
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            contexts.get(i).close();
+        }
+    }
+
+    @Test
+    void testFollowersConvergeWithLeader() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            // 从库收到的写请求转发给主库
+            ids.add(create(i % (FOLLOWERS + 1), "DEPOSIT", "acct-" + (i % 5), "10.00").get("id").asLong());
+        }
+        for (int i = 0; i < 10; i++) {
+            long id = ids.get(i);
+            ObjectNode current = (ObjectNode) JSON.readTree(
+                    clients.get(0).getForObject("/api/transactions/" + id, String.class));
+            current.put("description", "updated-" + i);
+            ResponseEntity<String> updated = clients.get(1 + i % FOLLOWERS).exchange("/api/transactions/" + id,
+                    HttpMethod.PUT, entity(current.toString(), null), String.class);
+            assertEquals(HttpStatus.OK, updated.getStatusCode(), updated.getBody());
+        }
+        for (int i = 10; i < 15; i++) {
+            clients.get(1).delete("/api/transactions/" + ids.get(i));
+        }
+
+        await().atMost(Duration.ofSeconds(20)).untilAsserted(() -> {
+            Map<Long, TransactionRecord> leader = contents(contexts.get(0));
+            for (int i = 1; i <= FOLLOWERS; i++) {
+                assertEquals(leader, contents(contexts.get(i)));
+            }
+        });
+        Map<Long, TransactionRecord> leader = contents(contexts.get(0));
+        assertTrue(leader.keySet().containsAll(ids.subList(0, 10)));
+        assertTrue(ids.subList(10, 15).stream().noneMatch(leader::containsKey));
+        assertEquals("updated-0", leader.get(ids.get(0)).description());
+        for (int i = 1; i <= FOLLOWERS; i++) {
+            MeterRegistry registry = contexts.get(i).getBean(MeterRegistry.class);
+            assertEquals(0.0, registry.get("transaction.replication.lag").gauge().value());
+            assertEquals(0, new BigDecimal("50.00").compareTo(
+                    clients.get(i).getForObject("/api/transactions/accounts/seed-3/balance", BigDecimal.class)));
+            // acct-0 的六笔存款中 ids[10] 已被删除
+            assertEquals(0, new BigDecimal("50.00").compareTo(
+                    clients.get(i).getForObject("/api/transactions/accounts/acct-0/balance", BigDecimal.class)));
+        }
+    }
+
+    @Test
+    void testReadYourWritesThroughFollower() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            int follower = 1 + i % FOLLOWERS;
+            ResponseEntity<String> created = post(follower, "{\"type\":\"DEPOSIT\",\"amount\":5.00,"
+                    + "\"sourceAccount\":\"ryw-" + i + "\"}");
+            assertEquals(HttpStatus.CREATED, created.getStatusCode(), created.getBody());
+            String token = created.getHeaders().getFirst(ReplicationController.SEQUENCE_HEADER);
+            assertTrue(token != null && Long.parseLong(token) > 0, "Writes should return a sequence token");
+            long id = JSON.readTree(created.getBody()).get("id").asLong();
+
+            // 另一个从库可能尚未应用，带上令牌后仍能读到
+            int other = 1 + (i + 1) % FOLLOWERS;
+            ResponseEntity<String> read = clients.get(other).exchange("/api/transactions/" + id, HttpMethod.GET,
+                    entity(null, token), String.class);
+            assertEquals(HttpStatus.OK, read.getStatusCode(), read.getBody());
+            assertEquals(id, JSON.readTree(read.getBody()).get("id").asLong());
+            assertTrue(Long.parseLong(read.getHeaders().getFirst(ReplicationController.SEQUENCE_HEADER))
+                    >= Long.parseLong(token));
+        }
+    }
+
+    /**
+     * 从库不中转导入和导出，以 307 重定向到主库：写入性质的导入总是重定向，导出在本地无法满足令牌时重定向
+     */
+    @Test
+    void testImportAndExportRedirectToLeader() throws Exception {
+        String leader = "http://localhost:" + port(contexts.get(0));
+        String follower = "http://localhost:" + port(contexts.get(1));
+        try (HttpClient http = HttpClient.newHttpClient()) {
+            HttpResponse<Void> imported = http.send(HttpRequest.newBuilder(URI.create(follower + "/api/transactions/import"))
+                            .header("Content-Type", "application/x-ndjson")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"DEPOSIT\",\"amount\":1.00}\n"))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(HttpStatus.TEMPORARY_REDIRECT.value(), imported.statusCode());
+            assertEquals(leader + "/api/transactions/import", imported.headers().firstValue("Location").orElseThrow());
+
+            HttpResponse<Void> exported = http.send(HttpRequest.newBuilder(
+                                    URI.create(follower + "/api/transactions/export?fromId=1"))
+                            .header(ReplicationController.SEQUENCE_HEADER, Long.toString(Long.MAX_VALUE))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(HttpStatus.TEMPORARY_REDIRECT.value(), exported.statusCode());
+            assertEquals(leader + "/api/transactions/export?fromId=1",
+                    exported.headers().firstValue("Location").orElseThrow());
+        }
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static Map<Long, TransactionRecord> contents(ConfigurableApplicationContext context) {
+        Map<Long, TransactionRecord> contents = new TreeMap<>();
+        Iterator<TransactionRecord> all = context.getBean(TransactionStore.class).iterateAfter(0);
+        all.forEachRemaining(record -> contents.put(record.id(), record));
+        return contents;
+    }
+
+    private static JsonNode create(int node, String type, String account, String amount) throws IOException {
+        ResponseEntity<String> response = post(node, "{\"type\":\"" + type + "\",\"amount\":" + amount
+                + ",\"sourceAccount\":\"" + account + "\"}");
+        assertEquals(HttpStatus.CREATED, response.getStatusCode(), response.getBody());
+        return JSON.readTree(response.getBody());
+    }
+
+    private static ResponseEntity<String> post(int node, String body) {
+        return clients.get(node).postForEntity("/api/transactions", entity(body, null), String.class);
+    }
+
+    private static HttpEntity<String> entity(String body, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (token != null) {
+            headers.set(ReplicationController.SEQUENCE_HEADER, token);
+        }
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static TestRestTemplate client(int port) {
+        return new TestRestTemplate(new RestTemplateBuilder().rootUri("http://localhost:" + port));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
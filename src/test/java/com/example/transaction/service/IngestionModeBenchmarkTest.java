@@ -0,0 +1,135 @@
+package com.example.transaction.service;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.exception.InvalidTransactionException;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.persistence.SnapshotStore;
+import com.example.transaction.persistence.WriteAheadLog;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 单笔创建在两种模式下的吞吐和延迟对比：调用方线程直接创建与经定序线程创建，
+ * 分别在不落盘和开启预写日志时测量。同时校验两种模式下取款都不会透支、ID 连续。
+ */
+class IngestionModeBenchmarkTest {
+
+    private static final int WRITERS = 64;
+    private static final int WRITES_PER_WRITER = 500;
+    private static final int ACCOUNTS = 8;
+
+    @TempDir
+    Path directory;
+
+    private final List<Runnable> closers = new ArrayList<>();
+
+    @Test
+    void testCompareConcurrentAndSequencedIngestion() throws Exception {
+        System.out.printf("%d writers x %d creates%n", WRITERS, WRITES_PER_WRITER);
+        System.out.printf("%-11s %-4s %12s %10s %10s %10s%n", "mode", "wal", "creates/s", "p50 us", "p99 us", "max us");
+        try {
+            for (boolean wal : new boolean[]{false, true}) {
+                for (IngestionSequencer.Mode mode : IngestionSequencer.Mode.values()) {
+                    run(mode, wal);
+                }
+            }
+        } finally {
+            closers.forEach(Runnable::run);
+        }
+    }
+
+    private void run(IngestionSequencer.Mode mode, boolean walEnabled) throws Exception {
+        Path data = directory.resolve(mode + "-" + walEnabled);
+        WriteAheadLog wal = walEnabled
+                ? new WriteAheadLog(true, data, Duration.ZERO, 1024, DataSize.ofMegabytes(64))
+                : WriteAheadLog.disabled();
+        IngestionSequencer sequencer = new IngestionSequencer(mode, 4096, 256);
+        closers.add(sequencer::close);
+        closers.add(wal::close);
+        TransactionServiceImpl service = new TransactionServiceImpl(new InMemoryTransactionStore(),
+                new BalanceLedger(), new TransactionIndex(), new TimeBucketIndex(Duration.ofMinutes(1)),
+                new TransactionRollups(), new RefundIndex(), wal, new SnapshotStore(data), sequencer,
+                List.of(), new TransactionMetrics(new SimpleMeterRegistry()),
+                ClusterTopology.standalone());
+        service.start();
+
+        // 每个账户的初始余额只够一半取款成功
+        for (int a = 0; a < ACCOUNTS; a++) {
+            service.createTransaction(transaction(TransactionType.DEPOSIT, "acct-" + a,
+                    BigDecimal.valueOf(WRITERS * WRITES_PER_WRITER / 2 / ACCOUNTS / 2)));
+        }
+
+        long[] latencies = new long[WRITERS * WRITES_PER_WRITER];
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(WRITERS);
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        String account = "acct-" + ((writer + i) % ACCOUNTS);
+                        TransactionType type = i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAWAL;
+                        long begin = System.nanoTime();
+                        try {
+                            service.createTransaction(transaction(type, account, BigDecimal.ONE));
+                        } catch (InvalidTransactionException e) {
+                            rejected.incrementAndGet();
+                        }
+                        latencies[writer * WRITES_PER_WRITER + i] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-11s %-4s %,12.0f %10.1f %10.1f %10.1f%n", mode, walEnabled ? "on" : "off",
+                latencies.length / (elapsed / 1e9), latencies[latencies.length / 2] / 1e3,
+                latencies[latencies.length * 99 / 100] / 1e3, latencies[latencies.length - 1] / 1e3);
+
+        // 取款失败的笔数与余额守恒，且没有账户透支
+        long created = service.getAllTransactions(0, 1).getTotalElements();
+        assertEquals(ACCOUNTS + latencies.length - rejected.get(), created);
+        for (int a = 0; a < ACCOUNTS; a++) {
+            assertTrue(service.getAccountBalance("acct-" + a).signum() >= 0);
+        }
+        // 被拒绝的取款不占用ID
+        assertEquals(created, service.getTransactionsAfter(created - 1, 1).getContent().get(0).getId());
+    }
+
+    private static Transaction transaction(TransactionType type, String account, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setSourceAccount(account);
+        transaction.setAmount(amount);
+        return transaction;
+    }
+}
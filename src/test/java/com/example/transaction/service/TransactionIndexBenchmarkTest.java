@@ -0,0 +1,108 @@
+package com.example.transaction.service;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.Page;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.persistence.SnapshotStore;
+import com.example.transaction.persistence.WriteAheadLog;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二级索引过滤查询基准
+ * 命中数固定时，随着总记录数增长，过滤查询耗时应基本保持不变；依赖机器性能，只在 load-test profile 下运行
+ */
+@Tag("load")
+class TransactionIndexBenchmarkTest {
+
+    private static final int MATCHING = 100;
+    private static final int[] STORE_SIZES = {10_000, 50_000, 250_000};
+    private static final int QUERY_ROUNDS = 200;
+    private static final int BATCHES = 10;
+
+    private final TransactionFilter filter =
+            new TransactionFilter(TransactionType.TRANSFER, TransactionStatus.PENDING, "acct-x");
+
+    @Test
+    void testFilteredQueryStaysFlatAsStoreGrows() {
+        double[] micros = new double[STORE_SIZES.length];
+        for (int i = 0; i < STORE_SIZES.length; i++) {
+            TransactionService service = populate(STORE_SIZES[i]);
+
+            // 预热
+            for (int j = 0; j < QUERY_ROUNDS; j++) {
+                service.findTransactions(filter, null, 0, MATCHING);
+            }
+            // 分批计时取中位数，减少单核环境下 GC 停顿带来的抖动
+            System.gc();
+            double[] batches = new double[BATCHES];
+            for (int b = 0; b < BATCHES; b++) {
+                long start = System.nanoTime();
+                for (int j = 0; j < QUERY_ROUNDS / BATCHES; j++) {
+                    Page<Transaction> page = service.findTransactions(filter, null, 0, MATCHING);
+                    assertEquals(MATCHING, page.getContent().size());
+                }
+                batches[b] = (System.nanoTime() - start) / 1000.0 / (QUERY_ROUNDS / BATCHES);
+            }
+            Arrays.sort(batches);
+            micros[i] = batches[BATCHES / 2];
+
+            long scanStart = System.nanoTime();
+            long scanned = service.getAllTransactions(0, Integer.MAX_VALUE).getContent().stream()
+                    .filter(filter::matches).count();
+            double scanMicros = (System.nanoTime() - scanStart) / 1000.0;
+            assertEquals(MATCHING, scanned);
+
+            System.out.printf("Store size %,d: indexed query %.1f us, full scan %.1f us%n",
+                    STORE_SIZES[i], micros[i], scanMicros);
+        }
+
+        // 总量增长 25 倍，索引查询耗时不应随之线性增长
+        assertTrue(micros[micros.length - 1] < micros[0] * 5 + 500,
+                "Indexed query latency grew with store size");
+    }
+
+    private TransactionService populate(int size) {
+        TransactionServiceImpl service = new TransactionServiceImpl(
+                new InMemoryTransactionStore(), new BalanceLedger(), new TransactionIndex(),
+                new TimeBucketIndex(Duration.ofMinutes(1)), new TransactionRollups(), new RefundIndex(),
+                WriteAheadLog.disabled(), new SnapshotStore(Path.of("unused")), IngestionSequencer.direct(),
+                List.of(), new TransactionMetrics(new SimpleMeterRegistry()),
+                ClusterTopology.standalone());
+        TransactionType[] types = {TransactionType.DEPOSIT, TransactionType.TRANSFER, TransactionType.FEE_INCOME};
+        TransactionStatus[] statuses = {TransactionStatus.PENDING, TransactionStatus.COMPLETED};
+        int stride = size / MATCHING;
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(new BigDecimal("10.00"));
+            if (i % stride == 0) {
+                transaction.setType(TransactionType.TRANSFER);
+                transaction.setStatus(TransactionStatus.PENDING);
+                transaction.setTargetAccount("acct-x");
+            } else {
+                // 其余记录与条件部分重合，使单个索引都很大，只有交集很小
+                transaction.setType(types[i % types.length]);
+                transaction.setStatus(i % 7 == 0 ? TransactionStatus.COMPLETED : statuses[i % statuses.length]);
+                transaction.setTargetAccount(i % 2 == 0 ? "acct-" + (i % 1000) : "acct-y");
+            }
+            service.createTransaction(transaction);
+        }
+        return service;
+    }
+}
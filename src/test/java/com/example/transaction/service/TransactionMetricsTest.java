@@ -0,0 +1,80 @@
+package com.example.transaction.service;
+
+import com.example.transaction.model.TransactionType;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 服务层指标：热路径上的记录不应分配对象，指标按操作、类型和拒绝原因分别可见。
+ * 分配量受 JIT 编译时机影响，只在 load-test profile 下检查
+ */
+class TransactionMetricsTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int CALLS = 1_000_000;
+    /** 容许的总分配量，留给 JIT 编译、TLAB 统计误差等与调用次数无关的开销 */
+    private static final long ALLOWED_BYTES = 64 * 1024;
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private final TransactionMetrics metrics = new TransactionMetrics(registry);
+
+    @Test
+    @Tag("load")
+    void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        recordMany(WARMUP);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        recordMany(CALLS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        System.out.printf("Metrics recording: %,d bytes allocated over %,d calls%n", allocated, CALLS);
+        assertTrue(allocated < ALLOWED_BYTES,
+                "Recording allocated " + allocated + " bytes over " + CALLS + " calls");
+    }
+
+    @Test
+    void testMetersAreTaggedByOperationTypeAndReason() {
+        long start = System.nanoTime();
+        metrics.record(TransactionMetrics.Operation.CREATE, TransactionType.TRANSFER, start);
+        metrics.record(TransactionMetrics.Operation.CREATE, null, start);
+        metrics.record(TransactionMetrics.Operation.GET, start);
+        metrics.reject(TransactionMetrics.Rejection.INSUFFICIENT_BALANCE);
+
+        assertEquals(1, registry.get("transaction.service")
+                .tags("operation", "create", "type", "TRANSFER").timer().count());
+        assertEquals(1, registry.get("transaction.service")
+                .tags("operation", "create", "type", "none").timer().count());
+        assertEquals(1, registry.get("transaction.service")
+                .tags("operation", "get", "type", "none").timer().count());
+        assertEquals(1, registry.get("transaction.rejections")
+                .tag("reason", "insufficient_balance").counter().count());
+        // 按类型计时的操作预先注册了所有类型，未发生的组合计数为 0
+        assertEquals(0, registry.get("transaction.service")
+                .tags("operation", "delete", "type", "DEPOSIT").timer().count());
+        assertNotNull(registry.find("transaction.balance").tag("source", "ledger").timer());
+        assertTrue(registry.scrape().contains("transaction_service_seconds_bucket"));
+    }
+
+    private void recordMany(int calls) {
+        TransactionType[] types = TransactionType.values();
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            metrics.record(TransactionMetrics.Operation.CREATE, types[i % types.length], start);
+            metrics.record(TransactionMetrics.Operation.GET, start);
+            metrics.recordLedgerBalance(start);
+            if ((i & 1023) == 0) {
+                metrics.reject(TransactionMetrics.Rejection.INVALID_AMOUNT);
+            }
+        }
+    }
+}
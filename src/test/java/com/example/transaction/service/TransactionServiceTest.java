@@ -1,10 +1,17 @@
 package com.example.transaction.service;
 
+import com.example.transaction.model.BatchItemResult;
 import com.example.transaction.model.Page;
 import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionFilter;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStats;
+import com.example.transaction.model.TransactionStatus;
 import com.example.transaction.model.TransactionType;
 import com.example.transaction.exception.InvalidTransactionException;
+import com.example.transaction.exception.TransactionConflictException;
 import com.example.transaction.exception.TransactionNotFoundException;
+import com.example.transaction.store.TransactionStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +19,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cache.CacheManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -27,6 +38,12 @@ class TransactionServiceTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Autowired
+    private TransactionStore transactionStore;
+
     @BeforeEach
     void clearCacheAndTransactions() {
         cacheManager.getCache("transactions").clear();
@@ -181,6 +198,26 @@ class TransactionServiceTest {
             () -> transactionService.deleteTransaction(999L));
     }
 
+    /**
+     * 测试按版本号的条件更新
+     * 每次更新版本号加一，使用过期版本号的更新被拒绝且不修改记录
+     */
+    @Test
+    void testConditionalUpdateRejectsStaleVersion() {
+        Transaction created = transactionService.createTransaction(createTestTransaction());
+        assertEquals(1L, created.getVersion());
+
+        created.setAmount(new BigDecimal("150.00"));
+        Transaction updated = transactionService.updateTransaction(created.getId(), created, 1);
+        assertEquals(2L, updated.getVersion());
+
+        created.setAmount(new BigDecimal("999.00"));
+        assertThrows(TransactionConflictException.class,
+            () -> transactionService.updateTransaction(created.getId(), created, 1));
+        assertEquals(new BigDecimal("150.00"),
+            transactionService.getTransactionById(created.getId()).orElseThrow().getAmount());
+    }
+
     /**
      * 测试更新交易后的缓存失效
      * 验证缓存更新机制的正确性
@@ -203,6 +240,509 @@ class TransactionServiceTest {
         assertEquals(new BigDecimal("200.00"), updated.getAmount());
     }
 
+    /**
+     * 测试金额以固定两位小数存储
+     * 超过两位小数的金额被拒绝，调用方修改返回对象不影响已存储的记录
+     */
+    @Test
+    void testAmountsAreStoredAsFixedPointMinorUnits() {
+        Transaction transaction = createTestTransaction();
+        transaction.setAmount(new BigDecimal("12.5"));
+        Transaction created = transactionService.createTransaction(transaction);
+        created.setAmount(new BigDecimal("999.00"));
+        assertEquals(new BigDecimal("12.50"),
+                transactionService.getTransactionById(created.getId()).orElseThrow().getAmount());
+
+        Transaction tooPrecise = createTestTransaction();
+        tooPrecise.setAmount(new BigDecimal("1.001"));
+        assertThrows(InvalidTransactionException.class, () -> transactionService.createTransaction(tooPrecise));
+    }
+
+    /**
+     * 测试余额台账随创建、更新、删除增量维护
+     * 验证台账与全量重算结果一致
+     */
+    @Test
+    void testBalanceLedgerTracksMutations() {
+        Transaction deposit = createTestTransaction();
+        deposit.setAmount(new BigDecimal("300.00"));
+        Transaction created = transactionService.createTransaction(deposit);
+
+        Transaction withdrawal = createTestTransaction();
+        withdrawal.setType(TransactionType.WITHDRAWAL);
+        withdrawal.setAmount(new BigDecimal("50.00"));
+        transactionService.createTransaction(withdrawal);
+        assertEquals(25000, balanceLedger.getBalance(null));
+
+        created.setAmount(new BigDecimal("100.00"));
+        transactionService.updateTransaction(created.getId(), created);
+        assertEquals(5000, balanceLedger.getBalance(null));
+
+        transactionService.deleteTransaction(created.getId());
+        assertEquals(-5000, balanceLedger.getBalance(null));
+
+        Transaction overdraft = createTestTransaction();
+        overdraft.setType(TransactionType.WITHDRAW);
+        overdraft.setAmount(new BigDecimal("10.00"));
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(overdraft));
+    }
+
+    /**
+     * 测试更新不能绕过余额校验
+     * 把存款改成取款、调高取款金额导致透支时拒绝，余额和记录保持不变
+     */
+    @Test
+    void testUpdateCannotOverdraw() {
+        Transaction deposit = transactionService.createTransaction(createTestTransaction());
+        Transaction withdrawal = transactionService.createTransaction(withdrawal(null, "40.00"));
+        assertEquals(6000, balanceLedger.getBalance(null));
+
+        Transaction raised = withdrawal(null, "200.00");
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.updateTransaction(withdrawal.getId(), raised));
+        Transaction flipped = withdrawal(null, "50.00");
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.updateTransaction(deposit.getId(), flipped));
+        assertEquals(6000, balanceLedger.getBalance(null));
+        assertEquals(TransactionType.DEPOSIT, transactionService.getTransactionById(deposit.getId()).orElseThrow().getType());
+
+        transactionService.updateTransaction(withdrawal.getId(), withdrawal(null, "90.00"));
+        assertEquals(1000, balanceLedger.getBalance(null));
+    }
+
+    /**
+     * 测试游标分页
+     * 验证按 ID 升序返回且 nextAfterId 可以连续翻页，删除的记录不影响后续页
+     */
+    @Test
+    void testKeysetPagination() {
+        for (int i = 0; i < 25; i++) {
+            transactionService.createTransaction(createTestTransaction());
+        }
+        transactionService.deleteTransaction(12L);
+
+        Page<Transaction> first = transactionService.getTransactionsAfter(0, 10);
+        assertEquals(10, first.getContent().size());
+        assertEquals(1L, first.getContent().get(0).getId());
+        assertEquals(10L, first.getNextAfterId());
+
+        Page<Transaction> second = transactionService.getTransactionsAfter(first.getNextAfterId(), 10);
+        assertEquals(11L, second.getContent().get(0).getId());
+        assertEquals(13L, second.getContent().get(1).getId());
+
+        Page<Transaction> last = transactionService.getTransactionsAfter(second.getNextAfterId(), 10);
+        assertEquals(4, last.getContent().size());
+        assertNull(last.getNextAfterId());
+        assertEquals(24, last.getTotalElements());
+    }
+
+    /**
+     * 测试按类型、状态和目标账户过滤
+     * 验证更新和删除后索引随之变化
+     */
+    @Test
+    void testFilteredQueryFollowsUpdatesAndDeletes() {
+        Transaction transfer = createTestTransaction();
+        transfer.setType(TransactionType.TRANSFER);
+        transfer.setTargetAccount("acct-x");
+        Transaction created = transactionService.createTransaction(transfer);
+        transactionService.createTransaction(createTestTransaction());
+
+        TransactionFilter filter = new TransactionFilter(TransactionType.TRANSFER, TransactionStatus.PENDING, "acct-x");
+        assertEquals(1, transactionService.findTransactions(filter, null, 0, 10).getContent().size());
+
+        created.setStatus(TransactionStatus.COMPLETED);
+        transactionService.updateTransaction(created.getId(), created);
+        assertTrue(transactionService.findTransactions(filter, null, 0, 10).getContent().isEmpty());
+
+        filter.setStatus(TransactionStatus.COMPLETED);
+        assertEquals(created.getId(),
+            transactionService.findTransactions(filter, null, 0, 10).getContent().get(0).getId());
+
+        transactionService.deleteTransaction(created.getId());
+        assertTrue(transactionService.findTransactions(filter, null, 0, 10).getContent().isEmpty());
+    }
+
+    /**
+     * 测试按时间范围查询和过期清除
+     */
+    @Test
+    void testTimeRangeQueryAndPurge() {
+        Transaction old = transactionService.createTransaction(createTestTransaction());
+        transactionService.createTransaction(createTestTransaction());
+        transactionService.createTransaction(createTestTransaction());
+
+        LocalDateTime now = LocalDateTime.now();
+        old.setTimestamp(now.minusDays(1));
+        transactionService.updateTransaction(old.getId(), old);
+
+        TransactionFilter recent = new TransactionFilter(null, null, null, now.minusMinutes(15), null);
+        assertEquals(2, transactionService.findTransactions(recent, null, 0, 10).getContent().size());
+
+        TransactionFilter yesterday = new TransactionFilter(null, null, null, now.minusDays(2), now.minusHours(1));
+        assertEquals(old.getId(),
+            transactionService.findTransactions(yesterday, null, 0, 10).getContent().get(0).getId());
+
+        assertEquals(1, transactionService.purgeTransactionsBefore(now.minusHours(1)));
+        assertTrue(transactionService.findTransactions(yesterday, null, 0, 10).getContent().isEmpty());
+        // 剩余两笔加一笔结转交易
+        assertEquals(3, transactionService.getAllTransactions(0, 10).getTotalElements());
+    }
+
+    /**
+     * 测试创建时分配的ID已被占用（并发导入的显式ID）时换用新ID，不会以他人的ID报告成功
+     */
+    @Test
+    void testCreateSkipsIdsTakenByImports() {
+        long taken = transactionService.createTransaction(depositTo("acct-taken", "100.00")).getId() + 1;
+        transactionStore.insert(TransactionRecord.from(depositTo("acct-import", "1.00")).withId(taken));
+
+        Transaction created = transactionService.createTransaction(withdrawal("acct-taken", "40.00"));
+        assertNotEquals(taken, created.getId());
+        assertEquals(TransactionType.WITHDRAWAL,
+            transactionService.getTransactionById(created.getId()).orElseThrow().getType());
+        assertEquals(0, new BigDecimal("60.00").compareTo(transactionService.getAccountBalance("acct-taken")));
+
+        List<BatchItemResult> results = transactionService.createTransactions(List.of(
+            withdrawal("acct-taken", "10.00"), withdrawal("acct-taken", "10.00")));
+        transactionStore.insert(TransactionRecord.from(depositTo("acct-import", "1.00"))
+            .withId(results.get(1).getId() + 1));
+        results = transactionService.createTransactions(List.of(withdrawal("acct-taken", "10.00")));
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(TransactionType.WITHDRAWAL,
+            transactionService.getTransactionById(results.get(0).getId()).orElseThrow().getType());
+        assertEquals(0, new BigDecimal("30.00").compareTo(transactionService.getAccountBalance("acct-taken")));
+    }
+
+    /**
+     * 测试过期清除不改动余额：被清除的明细结转为一笔交易，清除后仍不能透支
+     */
+    @Test
+    void testPurgeCarriesBalancesForward() {
+        LocalDateTime now = LocalDateTime.now();
+        Transaction deposit = transactionService.createTransaction(depositTo("acct-purge", "100.00"));
+        Transaction withdrawal = transactionService.createTransaction(withdrawal("acct-purge", "30.00"));
+        for (Transaction old : List.of(deposit, withdrawal)) {
+            old.setTimestamp(now.minusDays(1));
+            transactionService.updateTransaction(old.getId(), old);
+        }
+
+        assertEquals(2, transactionService.purgeTransactionsBefore(now.minusHours(1)));
+        assertEquals(0, new BigDecimal("70.00").compareTo(transactionService.getAccountBalance("acct-purge")));
+        Transaction carried = transactionService.getAllTransactions(0, 10).getContent().get(0);
+        assertEquals(TransactionType.DEPOSIT, carried.getType());
+        assertEquals(0, new BigDecimal("70.00").compareTo(carried.getAmount()));
+        assertEquals("acct-purge", carried.getSourceAccount());
+
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(withdrawal("acct-purge", "70.01")));
+        transactionService.createTransaction(withdrawal("acct-purge", "70.00"));
+    }
+
+    /**
+     * 测试批量创建
+     * 批内存款先入账，取款按账户累计校验，逐条报告结果且ID按请求顺序连续分配
+     */
+    @Test
+    void testBatchCreateWithCumulativeWithdrawals() {
+        Transaction deposit = createTestTransaction();
+        deposit.setSourceAccount("acct-a");
+        Transaction invalidTransfer = createTestTransaction();
+        invalidTransfer.setType(TransactionType.TRANSFER);
+        List<Transaction> batch = List.of(
+            withdrawal("acct-a", "60.00"),
+            deposit,
+            invalidTransfer,
+            withdrawal("acct-a", "30.00"),
+            withdrawal("acct-a", "20.00"));
+
+        List<BatchItemResult> results = transactionService.createTransactions(batch);
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals("Insufficient balance for withdrawal", results.get(4).getError());
+        assertEquals(List.of(1L, 2L, 3L), List.of(results.get(0).getId(), results.get(1).getId(), results.get(3).getId()));
+        assertEquals(0, new BigDecimal("10.00").compareTo(transactionService.getAccountBalance("acct-a")));
+        assertEquals(3, transactionService.getAllTransactions(0, 10).getTotalElements());
+    }
+
+    /**
+     * 测试批内取款合计超出 long 范围
+     * 不应抛出 ArithmeticException，而是逐笔扣减，余额不够的条目单独失败
+     */
+    @Test
+    void testBatchWithdrawalTotalOverflowFailsPerItem() {
+        Transaction deposit = createTestTransaction();
+        deposit.setSourceAccount("acct-big");
+        deposit.setAmount(new BigDecimal("90000000000000000.00"));
+        transactionService.createTransaction(deposit);
+
+        List<BatchItemResult> results = transactionService.createTransactions(List.of(
+            withdrawal("acct-big", "60000000000000000.00"),
+            withdrawal("acct-big", "60000000000000000.00")));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("Insufficient balance for withdrawal", results.get(1).getError());
+        assertEquals(0, new BigDecimal("30000000000000000.00").compareTo(transactionService.getAccountBalance("acct-big")));
+    }
+
+    /**
+     * 测试流式导出的ID区间和过滤条件
+     */
+    @Test
+    void testExportIteratesIdRangeInOrder() {
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = createTestTransaction();
+            transaction.setStatus(i % 2 == 0 ? TransactionStatus.COMPLETED : TransactionStatus.PENDING);
+            transactionService.createTransaction(transaction);
+        }
+
+        List<Long> ids = new ArrayList<>();
+        transactionService.exportTransactions(null, 3L, 7L).forEachRemaining(t -> ids.add(t.getId()));
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L), ids);
+
+        ids.clear();
+        TransactionFilter completed = new TransactionFilter(null, TransactionStatus.COMPLETED, null);
+        transactionService.exportTransactions(completed, null, 8L).forEachRemaining(t -> ids.add(t.getId()));
+        assertEquals(List.of(1L, 3L, 5L, 7L), ids);
+    }
+
+    /**
+     * 测试导入历史交易
+     * 保留原始ID和时间戳，重复ID逐条报错，之后新建的交易ID越过已导入的最大ID
+     */
+    @Test
+    void testImportKeepsOriginalIdsAndTimestamps() {
+        Transaction historical = createTestTransaction();
+        historical.setId(500L);
+        historical.setTimestamp(LocalDateTime.of(2020, 1, 1, 10, 0));
+        Transaction duplicate = createTestTransaction();
+        duplicate.setId(500L);
+
+        List<BatchItemResult> results = transactionService.importTransactions(List.of(historical, duplicate));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        Transaction stored = transactionService.getTransactionById(500L).orElseThrow();
+        assertEquals(LocalDateTime.of(2020, 1, 1, 10, 0), stored.getTimestamp());
+        assertEquals(501L, transactionService.createTransaction(createTestTransaction()).getId());
+    }
+
+    /**
+     * 测试预聚合统计
+     * 按小时和按天汇总，更新和删除后统计随之调整
+     */
+    @Test
+    void testStatisticsFollowCreatesUpdatesAndDeletes() {
+        LocalDateTime day = LocalDateTime.of(2024, 3, 1, 0, 0);
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Transaction transaction = createTestTransaction();
+            transaction.setId(100L + i);
+            transaction.setStatus(TransactionStatus.COMPLETED);
+            transaction.setTimestamp(day.plusHours(i % 2 == 0 ? 9 : 15).plusMinutes(i));
+            batch.add(transaction);
+        }
+        transactionService.importTransactions(batch);
+
+        List<TransactionStats> hourly = transactionService.getStatistics(
+            null, null, TransactionStats.Granularity.HOUR, null, null);
+        assertEquals(2, hourly.size());
+        assertEquals(day.plusHours(9), hourly.get(0).getWindowStart());
+        assertEquals(2, hourly.get(0).getCount());
+        assertEquals(0, new BigDecimal("200.00").compareTo(hourly.get(0).getTotalAmount()));
+
+        // 改状态和金额，再删除一笔
+        Transaction moved = transactionService.getTransactionById(100L).orElseThrow();
+        moved.setStatus(TransactionStatus.FAILED);
+        moved.setAmount(new BigDecimal("5.50"));
+        transactionService.updateTransaction(100L, moved);
+        transactionService.deleteTransaction(101L);
+
+        List<TransactionStats> daily = transactionService.getStatistics(
+            day, day.plusDays(1), TransactionStats.Granularity.DAY, TransactionType.DEPOSIT, null);
+        assertEquals(2, daily.size());
+        assertEquals(day, daily.get(0).getWindowStart());
+        assertEquals(TransactionStatus.COMPLETED, daily.get(0).getStatus());
+        assertEquals(2, daily.get(0).getCount());
+        assertEquals(0, new BigDecimal("200.00").compareTo(daily.get(0).getTotalAmount()));
+        assertEquals(TransactionStatus.FAILED, daily.get(1).getStatus());
+        assertEquals(0, new BigDecimal("5.50").compareTo(daily.get(1).getTotalAmount()));
+
+        assertTrue(transactionService.getStatistics(
+            day.plusDays(1), null, TransactionStats.Granularity.DAY, null, null).isEmpty());
+        assertTrue(transactionService.getStatistics(
+            null, null, TransactionStats.Granularity.DAY, TransactionType.TRANSFER, null).isEmpty());
+    }
+
+    /**
+     * 测试退款额度与原始交易状态
+     * 累计退款不能超过原始金额，全部退款后原始交易变为已退款，删除一笔退款后恢复为已完成
+     */
+    @Test
+    void testRefundsAreLimitedToOriginalAmount() {
+        Transaction original = createTestTransaction();
+        original.setStatus(TransactionStatus.COMPLETED);
+        long originalId = transactionService.createTransaction(original).getId();
+
+        long first = transactionService.createTransaction(refund(originalId, "60.00")).getId();
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(refund(originalId, "50.00")));
+        assertEquals(TransactionStatus.COMPLETED,
+            transactionService.getTransactionById(originalId).orElseThrow().getStatus());
+
+        List<BatchItemResult> results = transactionService.createTransactions(
+            List.of(refund(originalId, "40.00"), refund(originalId, "0.01")));
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        Transaction refunded = transactionService.getTransactionById(originalId).orElseThrow();
+        assertEquals(TransactionStatus.REFUNDED, refunded.getStatus());
+        assertEquals(2L, refunded.getVersion());
+
+        transactionService.deleteTransaction(first);
+        assertEquals(TransactionStatus.COMPLETED,
+            transactionService.getTransactionById(originalId).orElseThrow().getStatus());
+        transactionService.createTransaction(refund(originalId, "60.00"));
+    }
+
+    /**
+     * 测试退款的原始交易校验
+     * 原始交易不存在、未完成或本身是退款时拒绝
+     */
+    @Test
+    void testRefundRequiresCompletedOriginal() {
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(refund(999L, "1.00")));
+
+        Transaction pending = createTestTransaction();
+        pending.setStatus(TransactionStatus.PENDING);
+        long pendingId = transactionService.createTransaction(pending).getId();
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(refund(pendingId, "1.00")));
+
+        Transaction completed = createTestTransaction();
+        completed.setStatus(TransactionStatus.COMPLETED);
+        long completedId = transactionService.createTransaction(completed).getId();
+        Transaction refund = refund(completedId, "1.00");
+        refund.setStatus(TransactionStatus.COMPLETED);
+        long refundId = transactionService.createTransaction(refund).getId();
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(refund(refundId, "1.00")));
+    }
+
+    /**
+     * 测试并发退款同一笔交易
+     * 所有线程合计退款不超过原始金额，成功的笔数正好用完额度
+     */
+    @Test
+    void testConcurrentRefundsNeverExceedOriginal() throws InterruptedException {
+        Transaction original = createTestTransaction();
+        original.setStatus(TransactionStatus.COMPLETED);
+        long originalId = transactionService.createTransaction(original).getId();
+
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        List<Long> accepted = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threadCount; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        try {
+                            accepted.add(transactionService.createTransaction(refund(originalId, "1.00")).getId());
+                        } catch (InvalidTransactionException e) {
+                            // 额度已用完
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(100, accepted.size());
+        assertEquals(TransactionStatus.REFUNDED,
+            transactionService.getTransactionById(originalId).orElseThrow().getStatus());
+    }
+
+    /**
+     * 测试退款记入原始交易的账户
+     * 未指定账户时沿用原始交易的账户，指定其他账户时拒绝
+     */
+    @Test
+    void testRefundCreditsTheOriginalAccount() {
+        Transaction original = transactionService.createTransaction(depositTo("acct-r", "100.00"));
+        transactionService.createTransaction(withdrawal("acct-r", "30.00"));
+
+        Transaction refund = transactionService.createTransaction(refund(original.getId(), "10.00"));
+        assertEquals("acct-r", refund.getSourceAccount());
+        assertEquals(0, new BigDecimal("80.00").compareTo(transactionService.getAccountBalance("acct-r")));
+
+        Transaction elsewhere = refund(original.getId(), "10.00");
+        elsewhere.setSourceAccount("acct-other");
+        assertThrows(InvalidTransactionException.class, () -> transactionService.createTransaction(elsewhere));
+        assertEquals(0, BigDecimal.ZERO.compareTo(transactionService.getAccountBalance("acct-other")));
+    }
+
+    /**
+     * 测试更新不能绕过退款额度
+     * 普通交易不能改成退款，退款不能提高金额，已退款的原始交易不能降低金额，其他字段照常修改
+     */
+    @Test
+    void testUpdatesCannotBypassRefundCap() {
+        Transaction original = transactionService.createTransaction(depositTo("acct-u", "100.00"));
+        Transaction refund = transactionService.createTransaction(refund(original.getId(), "60.00"));
+
+        Transaction other = transactionService.createTransaction(depositTo("acct-u", "10.00"));
+        Transaction toRefund = refund(original.getId(), "50.00");
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.updateTransaction(other.getId(), toRefund));
+
+        Transaction raised = refund(original.getId(), "90.00");
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.updateTransaction(refund.getId(), raised));
+
+        Transaction lowered = depositTo("acct-u", "50.00");
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.updateTransaction(original.getId(), lowered));
+
+        Transaction described = refund(original.getId(), "60.00");
+        described.setDescription("Partial refund");
+        assertEquals("acct-u", transactionService.updateTransaction(refund.getId(), described).getSourceAccount());
+        assertEquals(0, new BigDecimal("170.00").compareTo(transactionService.getAccountBalance("acct-u")));
+        assertThrows(InvalidTransactionException.class,
+            () -> transactionService.createTransaction(refund(original.getId(), "40.01")));
+    }
+
+    private Transaction depositTo(String account, String amount) {
+        Transaction transaction = createTestTransaction();
+        transaction.setSourceAccount(account);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        return transaction;
+    }
+
+    private Transaction refund(long originalId, String amount) {
+        Transaction transaction = createTestTransaction();
+        transaction.setType(TransactionType.REFUND);
+        transaction.setOriginalTransactionId(originalId);
+        transaction.setAmount(new BigDecimal(amount));
+        return transaction;
+    }
+
+    private Transaction withdrawal(String account, String amount) {
+        Transaction transaction = createTestTransaction();
+        transaction.setType(TransactionType.WITHDRAWAL);
+        transaction.setSourceAccount(account);
+        transaction.setAmount(new BigDecimal(amount));
+        return transaction;
+    }
+
     // @Test
     // void testTransactionRollbackOnFailure() {
     //     Transaction transaction1 = createTestTransaction();
@@ -0,0 +1,150 @@
+package com.example.transaction.service;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.exception.TransactionConflictException;
+import com.example.transaction.model.Transaction;
+import com.example.transaction.model.TransactionType;
+import com.example.transaction.persistence.SnapshotStore;
+import com.example.transaction.persistence.WriteAheadLog;
+import com.example.transaction.store.InMemoryTransactionStore;
+import com.example.transaction.store.TimeBucketIndex;
+import com.example.transaction.store.TransactionIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 更新争用：多个线程同时更新同一笔或少数几笔交易。
+ * 带版本号的读-改-写在冲突时重试，最终结果必须等于全部增量之和；
+ * 不带版本号的覆盖更新之后，台账余额必须与各记录的最终金额一致，版本号等于成功更新次数加一。
+ */
+class UpdateContentionBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int UPDATES_PER_THREAD = 1_000;
+    private static final String ACCOUNT = "acct-hot";
+
+    @Test
+    void testConditionalIncrementsLoseNoUpdates() throws Exception {
+        TransactionServiceImpl service = newService();
+        long id = service.createTransaction(deposit(new BigDecimal("1.00"))).getId();
+
+        AtomicLong conflicts = new AtomicLong();
+        double seconds = runConcurrently(() -> {
+            for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                while (true) {
+                    Transaction current = service.getTransactionById(id).orElseThrow();
+                    current.setAmount(current.getAmount().add(new BigDecimal("0.01")));
+                    try {
+                        service.updateTransaction(id, current, current.getVersion());
+                        break;
+                    } catch (TransactionConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        int updates = THREADS * UPDATES_PER_THREAD;
+        Transaction result = service.getTransactionById(id).orElseThrow();
+        System.out.printf("Conditional increments on one record: %,d updates in %.0f ms (%,.0f/s), %,d conflicts retried%n",
+                updates, seconds * 1000, updates / seconds, conflicts.get());
+        assertEquals(new BigDecimal("1.00").add(BigDecimal.valueOf(updates, 2)), result.getAmount());
+        assertEquals(1 + updates, result.getVersion());
+        assertEquals(result.getAmount(), service.getAccountBalance(ACCOUNT));
+    }
+
+    @Test
+    void testConcurrentOverwritesKeepLedgerConsistent() throws Exception {
+        for (int records : new int[]{1, 4, 64}) {
+            TransactionServiceImpl service = newService();
+            List<Long> ids = new ArrayList<>();
+            for (int r = 0; r < records; r++) {
+                ids.add(service.createTransaction(deposit(new BigDecimal("1.00"))).getId());
+            }
+
+            double seconds = runConcurrently(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    long id = ids.get(random.nextInt(ids.size()));
+                    service.updateTransaction(id, deposit(BigDecimal.valueOf(random.nextInt(1, 100_000), 2)));
+                }
+            });
+
+            int updates = THREADS * UPDATES_PER_THREAD;
+            BigDecimal total = BigDecimal.ZERO.setScale(2);
+            long versions = 0;
+            for (long id : ids) {
+                Transaction current = service.getTransactionById(id).orElseThrow();
+                total = total.add(current.getAmount());
+                versions += current.getVersion() - 1;
+            }
+            System.out.printf("Overwrites across %d record(s): %,d updates in %.0f ms (%,.0f/s)%n",
+                    records, updates, seconds * 1000, updates / seconds);
+            assertEquals(updates, versions);
+            assertEquals(total, service.getAccountBalance(ACCOUNT));
+        }
+    }
+
+    /**
+     * 所有线程同时开始执行 task，返回全部完成所用的秒数
+     */
+    private static double runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Update failed", failures.get(0));
+        }
+        return seconds;
+    }
+
+    private static TransactionServiceImpl newService() {
+        TransactionServiceImpl service = new TransactionServiceImpl(new InMemoryTransactionStore(),
+                new BalanceLedger(), new TransactionIndex(), new TimeBucketIndex(Duration.ofMinutes(1)),
+                new TransactionRollups(), new RefundIndex(), WriteAheadLog.disabled(),
+                new SnapshotStore(Path.of("unused")), IngestionSequencer.direct(), List.of(),
+                new TransactionMetrics(new SimpleMeterRegistry()),
+                ClusterTopology.standalone());
+        service.start();
+        return service;
+    }
+
+    private static Transaction deposit(BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setSourceAccount(ACCOUNT);
+        transaction.setAmount(amount);
+        return transaction;
+    }
+}
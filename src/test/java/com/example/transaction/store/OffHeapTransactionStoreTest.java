@@ -0,0 +1,296 @@
+package com.example.transaction.store;
+
+import com.example.transaction.cluster.ClusterTopology;
+import com.example.transaction.model.TransactionRecord;
+import com.example.transaction.model.TransactionStatus;
+import com.example.transaction.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 堆外存储的正确性，以及与堆内存储的每条占用和 GC 停顿对比
+ */
+class OffHeapTransactionStoreTest {
+
+    private static final int RECORDS = 500_000;
+    private static final int CHURN = 1_000_000;
+
+    @Test
+    void testRoundTripReplaceRemoveAndOrderedIteration() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(ClusterTopology.standalone());
+        TransactionRecord refund = new TransactionRecord(70_000, TransactionType.REFUND, 1234, null,
+                LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_789), TransactionStatus.COMPLETED,
+                "acct-70000", null, 3, null, 7);
+        assertTrue(store.insert(transaction(5, 1000)));
+        assertTrue(store.insert(refund));
+        assertTrue(store.insert(transaction(3, 150)));
+        assertFalse(store.insert(transaction(3, 200)));
+
+        assertEquals(refund, store.get(70_000));
+        assertEquals(transaction(3, 150), store.get(3));
+
+        TransactionRecord previous = store.replace(5, transaction(5, 9900));
+        assertEquals(1000, previous.amount());
+        assertNull(store.replace(6, transaction(6, 100)));
+        assertEquals(3, store.size());
+
+        // 按版本的条件替换：版本已变化时失败
+        TransactionRecord current = store.get(5);
+        TransactionRecord next = transaction(5, 500).withVersion(current.version() + 1);
+        assertTrue(store.replace(current, next));
+        assertFalse(store.replace(current, transaction(5, 600).withVersion(current.version() + 1)));
+        assertEquals(next, store.get(5));
+        // 版本号超过 int 范围后仍能写入和按版本替换
+        TransactionRecord wide = transaction(5, 700).withVersion(Integer.MAX_VALUE + 1L);
+        assertTrue(store.replace(next, wide));
+        assertTrue(store.replace(wide, transaction(5, 800).withVersion(wide.version() + 1)));
+        assertEquals(Integer.MAX_VALUE + 2L, store.get(5).version());
+
+        List<Long> ids = new ArrayList<>();
+        store.iterateAfter(3).forEachRemaining(t -> ids.add(t.id()));
+        assertEquals(List.of(5L, 70_000L), ids);
+
+        assertEquals(refund, store.remove(70_000));
+        assertNull(store.get(70_000));
+        assertFalse(store.contains(70_000));
+        // 段内已无存活行，段被释放；再次写入时重新分配
+        assertEquals(1, store.segmentCount());
+        assertTrue(store.insert(transaction(70_001, 100)));
+        assertEquals(2, store.segmentCount());
+    }
+
+    /**
+     * 并发改写同一行时，读取方不能看到新旧列混合的记录
+     */
+    @Test
+    void testReadersNeverObserveTornRows() throws InterruptedException {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(ClusterTopology.standalone());
+        store.insert(consistent(1, 0));
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger torn = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            for (int i = 1; !stop.get(); i++) {
+                store.replace(1, consistent(1, i));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            while (!stop.get()) {
+                TransactionRecord t = store.get(1);
+                if (!t.description().equals(Long.toString(t.amount()))
+                        || !t.sourceAccount().equals(t.description())) {
+                    torn.incrementAndGet();
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        Thread.sleep(1000);
+        stop.set(true);
+        writer.join();
+        reader.join();
+        assertEquals(0, torn.get());
+    }
+
+    /**
+     * 分片部署下本节点的ID间隔 1024，仍应连续填满段；混有其他节点编号的ID（如导入的历史数据）时按ID有序遍历
+     */
+    @Test
+    void testNodeEncodedIdsFillSegmentsAndIterateInOrder() {
+        ClusterTopology topology = new ClusterTopology(3, new String[]{"http://a", "http://b", "http://c", "http://d"});
+        OffHeapTransactionStore store = new OffHeapTransactionStore(topology);
+        long directBefore = usedDirect();
+        int records = 100_000;
+        for (int i = 1; i <= records; i++) {
+            assertTrue(store.insert(transaction(topology.id(i), 100)));
+        }
+        assertEquals((records + 16_383) / 16_384, store.segmentCount());
+        double directPerRecord = (usedDirect() - directBefore) / (double) records;
+        assertTrue(directPerRecord < OffHeapTransactionStore.bytesPerRow() * 1.5,
+                "Sharded ids should not leave segments mostly empty: " + directPerRecord + " direct bytes/record");
+        assertEquals(100, store.get(topology.id(500)).amount());
+        assertNull(store.get(topology.id(500) + 1));
+
+        long foreign = (500L << ClusterTopology.NODE_BITS) | 1;
+        assertTrue(store.insert(transaction(foreign, 200)));
+        List<Long> ids = new ArrayList<>();
+        store.iterateAfter(topology.id(499)).forEachRemaining(t -> {
+            if (ids.size() < 3) {
+                ids.add(t.id());
+            }
+        });
+        assertEquals(List.of(foreign, topology.id(500), topology.id(501)), ids);
+        assertEquals(records + 1, count(store.iterateAfter(0)));
+        assertEquals(200, store.remove(foreign).amount());
+        assertEquals(records - 500, count(store.iterateAfter(topology.id(500))));
+    }
+
+    /**
+     * 替换和删除后旧值的字符串归还给字典，字典大小只跟随存活记录
+     */
+    @Test
+    void testDictionaryReleasesReplacedAndRemovedStrings() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(ClusterTopology.standalone());
+        for (int i = 1; i <= 1000; i++) {
+            store.insert(consistent(i, i));
+        }
+        assertEquals(1000, store.stringCount());
+        for (int round = 1; round <= 10; round++) {
+            for (int i = 1; i <= 1000; i++) {
+                store.replace(i, consistent(i, round * 1000 + i));
+            }
+        }
+        TransactionRecord current = store.get(1);
+        assertFalse(store.replace(current.withVersion(current.version() + 1), consistent(1, -1)));
+        assertFalse(store.insert(consistent(1, -2)));
+        assertEquals(1000, store.stringCount());
+        assertEquals("10001", store.get(1).description());
+
+        for (int i = 1; i <= 500; i++) {
+            store.remove(i);
+        }
+        assertEquals(500, store.stringCount());
+        // 编码回收复用后，存活记录解码出的仍是各自的字符串
+        for (int i = 1; i <= 500; i++) {
+            store.insert(consistent(i, -i));
+        }
+        assertEquals("-1", store.get(1).description());
+        assertEquals("10501", store.get(501).description());
+    }
+
+    /**
+     * 每条记录的描述都不相同，字典不能靠去重掩盖字符串的堆占用；
+     * 改写期间写入的描述同样各不相同，改写后堆占用不能随改写次数增长
+     */
+    @Test
+    void testFootprintAndGcAgainstHeapStore() {
+        Report heap = measure(new InMemoryTransactionStore());
+        Report offHeap = measure(new OffHeapTransactionStore(ClusterTopology.standalone()));
+        String report = String.format("%,d records / %,d replace+read ops%n  heap:    %s%n  offheap: %s",
+                RECORDS, CHURN, heap, offHeap);
+        assertTrue(offHeap.heapBytesPerRecord < heap.heapBytesPerRecord / 2,
+                "Off-heap store should keep well under half the heap per record: " + report);
+        assertTrue(offHeap.heapBytesPerRecord + offHeap.directBytesPerRecord < heap.heapBytesPerRecord * 0.6,
+                "Off-heap store should need well under the memory per record of the heap store: " + report);
+        assertTrue(offHeap.retainedAfterChurnPerRecord < 16,
+                "Replaced strings should not stay on the heap: " + report);
+    }
+
+    private Report measure(TransactionStore store) {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        for (int i = 1; i <= RECORDS; i++) {
+            store.insert(transaction(i, (i % 10_000) * 100 + 25));
+        }
+        Report report = new Report();
+        report.heapBytesPerRecord = (usedHeap() - heapBefore) / (double) RECORDS;
+        report.directBytesPerRecord = (usedDirect() - directBefore) / (double) RECORDS;
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < CHURN; i++) {
+            long id = 1 + random.nextInt(RECORDS);
+            store.replace(id, transaction(id, random.nextInt(10_000) * 100 + 75, RECORDS + i));
+            store.get(1 + random.nextInt(RECORDS));
+        }
+        Iterator<TransactionRecord> all = store.iterateAfter(0);
+        while (all.hasNext()) {
+            all.next();
+        }
+        report.churnMillis = (System.nanoTime() - start) / 1_000_000;
+        report.gcCount = gcCount() - gcCount;
+        report.gcMillis = gcMillis() - gcMillis;
+        report.retainedAfterChurnPerRecord = (usedHeap() - heapBefore) / (double) RECORDS - report.heapBytesPerRecord;
+        assertEquals(RECORDS, store.size());
+        store.clear();
+        return report;
+    }
+
+    private static TransactionRecord transaction(long id, long amount) {
+        return transaction(id, amount, id);
+    }
+
+    /**
+     * @param serial 描述的唯一编号，不同编号的描述互不相同
+     */
+    private static TransactionRecord transaction(long id, long amount, long serial) {
+        return new TransactionRecord(id, TransactionType.values()[(int) (id % 4)], amount,
+                "Payment reference " + serial,
+                LocalDateTime.of(2024, 1, 1, 0, 0).plusNanos(id * 1_000_123L),
+                id % 3 == 0 ? TransactionStatus.COMPLETED : TransactionStatus.PENDING,
+                "acct-" + id % 1000, "acct-" + (id + 1) % 1000, TransactionRecord.NONE,
+                id % 5 == 0 ? "SYSTEM" : null, TransactionRecord.FIRST_VERSION);
+    }
+
+    private static int count(Iterator<TransactionRecord> iterator) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    private static TransactionRecord consistent(long id, int value) {
+        return new TransactionRecord(id, TransactionType.DEPOSIT, value, Integer.toString(value), null,
+                TransactionStatus.PENDING, Integer.toString(value), null, TransactionRecord.NONE, null,
+                TransactionRecord.FIRST_VERSION);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static final class Report {
+        double heapBytesPerRecord;
+        double directBytesPerRecord;
+        long churnMillis;
+        long gcCount;
+        long gcMillis;
+        double retainedAfterChurnPerRecord;
+
+        @Override
+        public String toString() {
+            return String.format("%.0f heap + %.0f direct bytes/record, %+.0f heap bytes/record after churn, "
+                            + "churn %d ms, %d GCs totalling %d ms (avg pause %.1f ms)",
+                    Math.max(0, heapBytesPerRecord), directBytesPerRecord, retainedAfterChurnPerRecord,
+                    churnMillis, gcCount, gcMillis,
+                    gcCount == 0 ? 0.0 : gcMillis / (double) gcCount);
+        }
+    }
+}